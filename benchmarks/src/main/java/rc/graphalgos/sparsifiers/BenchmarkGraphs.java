@@ -0,0 +1,63 @@
+package rc.graphalgos.sparsifiers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * resolves benchmark graph names to edge list files.
+ * "Wiki-Vote" and "facebook_combined" are the bundled SNAP graphs, read from the directory in system property
+ * graphs.dir (default ../src/main/resources/graphs). "erdos-renyi-M" and "power-law-M" are synthetic graphs with M
+ * edges, generated once per JVM into temporary files.
+ */
+public class BenchmarkGraphs {
+    private static final String GRAPHS_DIR = System.getProperty("graphs.dir", "../src/main/resources/graphs");
+    private static final long SEED = 1152L;
+    private static final Map<String, File> generated = new HashMap<>();
+
+    private BenchmarkGraphs() {
+    }
+
+    /***
+     * @param graph name of graph
+     * @return path of the graph's edge list file
+     */
+    public static synchronized String getEdgeFile(String graph) {
+        if(graph.startsWith("erdos-renyi-") || graph.startsWith("power-law-")) {
+            return generated.computeIfAbsent(graph, BenchmarkGraphs::generate).getPath();
+        }
+        File edgeFile = new File(GRAPHS_DIR, graph + ".txt");
+        if(!edgeFile.exists()) {
+            throw new IllegalArgumentException("Unknown benchmark graph " + graph + ", no file " + edgeFile);
+        }
+        return edgeFile.getPath();
+    }
+
+    /***
+     * @param graph name of graph
+     * @return graph loaded into a GraphStream
+     */
+    public static GraphStream load(String graph) {
+        GraphStream graphStream = new GraphStream(graph);
+        graphStream.buildGraph(getEdgeFile(graph));
+        return graphStream;
+    }
+
+    private static File generate(String graph) {
+        try {
+            File edgeFile = File.createTempFile(graph, ".txt");
+            edgeFile.deleteOnExit();
+            int numEdges = Integer.parseInt(graph.substring(graph.lastIndexOf('-') + 1));
+            if(graph.startsWith("erdos-renyi-")) {
+                GraphGenerators.erdosRenyi(numEdges, SEED, edgeFile);
+            } else {
+                GraphGenerators.powerLaw(numEdges, SEED, edgeFile);
+            }
+            return edgeFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package rc.graphalgos.sparsifiers;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * entry point of the benchmark jar. Accepts the regular JMH command line (benchmark regex, -p graph=..., -f, -wi, -i,
+ * ...) and always attaches the GC profiler, so each result comes with its allocation rate (gc.alloc.rate.norm is
+ * bytes allocated per operation)
+ */
+public class BenchmarkRunner {
+
+    public static void main(String args[]) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
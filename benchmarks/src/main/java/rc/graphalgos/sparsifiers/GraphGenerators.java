@@ -0,0 +1,75 @@
+package rc.graphalgos.sparsifiers;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * synthetic edge list generators for benchmarks. Graphs are written in the same "u v" format as the bundled SNAP
+ * files, so they go through the regular loaders.
+ */
+public class GraphGenerators {
+    private static final int AVERAGE_DEGREE = 10;
+
+    private GraphGenerators() {
+    }
+
+    /***
+     * Erdos-Renyi G(n, m) graph with average degree 10
+     * @param numEdges # of edges m
+     * @param seed random seed
+     * @param edgeFile file to write
+     */
+    public static void erdosRenyi(int numEdges, long seed, File edgeFile) throws IOException {
+        int numNodes = Math.max(2, 2 * numEdges / AVERAGE_DEGREE);
+        Random random = new Random(seed);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(edgeFile), 1 << 20)) {
+            for(int edge=0; edge<numEdges; edge++) {
+                int source = random.nextInt(numNodes);
+                int target = random.nextInt(numNodes - 1);
+                writeEdge(writer, source, target >= source ? target + 1 : target);
+            }
+        }
+    }
+
+    /***
+     * Chung-Lu power-law graph with degree exponent 2.5 and average degree 10; endpoints are drawn with probability
+     * proportional to their expected degree
+     * @param numEdges # of edges m
+     * @param seed random seed
+     * @param edgeFile file to write
+     */
+    public static void powerLaw(int numEdges, long seed, File edgeFile) throws IOException {
+        int numNodes = Math.max(2, 2 * numEdges / AVERAGE_DEGREE);
+        double exponent = -1.0 / (2.5 - 1.0);
+        double[] cumulativeWeights = new double[numNodes];
+        double total = 0;
+        for(int node=0; node<numNodes; node++) {
+            total += Math.pow(node + 1, exponent);
+            cumulativeWeights[node] = total;
+        }
+        Random random = new Random(seed);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(edgeFile), 1 << 20)) {
+            for(int edge=0; edge<numEdges; ) {
+                int source = drawNode(cumulativeWeights, random.nextDouble() * total);
+                int target = drawNode(cumulativeWeights, random.nextDouble() * total);
+                if(source != target) {
+                    writeEdge(writer, source, target);
+                    edge++;
+                }
+            }
+        }
+    }
+
+    private static int drawNode(double[] cumulativeWeights, double weight) {
+        int position = Arrays.binarySearch(cumulativeWeights, weight);
+        return Math.min(position >= 0 ? position : -position - 1, cumulativeWeights.length - 1);
+    }
+
+    private static void writeEdge(Writer writer, int source, int target) throws IOException {
+        writer.write(Integer.toString(source));
+        writer.write(' ');
+        writer.write(Integer.toString(target));
+        writer.write('\n');
+    }
+}
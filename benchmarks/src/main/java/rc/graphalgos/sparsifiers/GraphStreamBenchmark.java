@@ -0,0 +1,42 @@
+package rc.graphalgos.sparsifiers;
+
+import org.openjdk.jmh.annotations.*;
+import rc.graphalgos.sparsifiers.utils.LongSparseVector;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * ingest benchmarks: loading an edge list and building the signed incidence node vectors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class GraphStreamBenchmark {
+    @Param({"Wiki-Vote", "facebook_combined", "erdos-renyi-1000", "erdos-renyi-100000", "erdos-renyi-10000000",
+            "power-law-1000", "power-law-100000", "power-law-10000000"})
+    private String graph;
+    private String edgeFile;
+    private GraphStream graphStream;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        edgeFile = BenchmarkGraphs.getEdgeFile(graph);
+        graphStream = BenchmarkGraphs.load(graph);
+    }
+
+    @Benchmark
+    public GraphStream buildGraph() {
+        GraphStream loaded = new GraphStream(graph);
+        loaded.buildGraph(edgeFile);
+        return loaded;
+    }
+
+    @Benchmark
+    public List<LongSparseVector> buildGraphMatrix() {
+        return graphStream.buildGraphMatrix();
+    }
+}
@@ -0,0 +1,68 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * L0 sampler benchmarks: sketching a node vector, sampling from a sketch, merging two sketches and single updates.
+ * Node vectors live in the edge space of a 100k node graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SketchBenchmark {
+    private static final int NUM_NODES = 100000;
+    @Param({"16", "1024", "65536"})
+    private int nonZeros;
+    private LzeroSampler sampler;
+    private LongSparseVector nodeVector;
+    private long[] sketch;
+    private long[] mergedSketch;
+    private long[] indices;
+    private int nextIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LzeroSampler[] samplers = NodeSketches.createSamplers(NUM_NODES, 1152L);
+        sampler = samplers[0];
+        long numColumns = PairCodec.getPairCount(NUM_NODES);
+        Random random = new Random(1152L);
+        nodeVector = new LongSparseVector(numColumns, nonZeros);
+        indices = new long[nonZeros];
+        for(int i=0; i<nonZeros; i++) {
+            indices[i] = (long)(random.nextDouble() * numColumns);
+            nodeVector.addToEntry(indices[i], random.nextBoolean() ? 1 : -1);
+        }
+        sketch = sampler.buildSketch(nodeVector);
+        mergedSketch = new long[sampler.getSketchSize()];
+    }
+
+    @Benchmark
+    public long[] buildSketch() {
+        return sampler.buildSketch(nodeVector);
+    }
+
+    @Benchmark
+    public long sampleItem() {
+        return sampler.sampleItem(sketch);
+    }
+
+    @Benchmark
+    public long[] merge() {
+        sampler.merge(mergedSketch, 0, sketch, 0);
+        return mergedSketch;
+    }
+
+    @Benchmark
+    public long[] update() {
+        long index = indices[nextIndex];
+        nextIndex = nextIndex + 1 == indices.length ? 0 : nextIndex + 1;
+        sampler.update(mergedSketch, 0, index, 1);
+        return mergedSketch;
+    }
+}
@@ -0,0 +1,48 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.openjdk.jmh.annotations.*;
+import rc.graphalgos.sparsifiers.BenchmarkGraphs;
+import rc.graphalgos.sparsifiers.GraphStream;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * spanning forest benchmarks: streaming every edge into the node sketches, and the Boruvka rounds over finished
+ * sketches. Sketch memory grows as n log^2 n, so the synthetic graphs stop at 100k edges (20k nodes).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SpanningForestBenchmark {
+    private static final long SEED = 1152L;
+    @Param({"Wiki-Vote", "facebook_combined", "erdos-renyi-1000", "erdos-renyi-100000", "power-law-1000",
+            "power-law-100000"})
+    private String graph;
+    private GraphStream graphStream;
+    private NodeSketches nodeSketches;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        graphStream = BenchmarkGraphs.load(graph);
+        nodeSketches = sketchEdges();
+    }
+
+    @Benchmark
+    public NodeSketches sketchEdges() {
+        NodeSketches sketches = new NodeSketches(graphStream.getNodeCount(), SEED);
+        EdgeList edges = graphStream.getEdges();
+        for(int edge=0; edge<edges.size(); edge++) {
+            sketches.update(edges.getSource(edge), edges.getTarget(edge), 1);
+        }
+        return sketches;
+    }
+
+    @Benchmark
+    public List<List<Integer>> findSpanningForest() {
+        return new SpanningForest(graphStream.getNodeCount(), SEED).findSpanningForest(nodeSketches);
+    }
+}
@@ -0,0 +1,394 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.NodeIdMap;
+import rc.graphalgos.sparsifiers.utils.ParallelFor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * compact binary edge list. Nodes are numbered 1..n in order of first appearance in the text file, as GraphStream
+ * numbers them, and edges are grouped by source node number in ascending order, targets ascending within a source.
+ * Layout, little-endian:
+ *   header: magic, version (int), flags (int, bit 0: weighted), # nodes (int), # chunks (int), # edges (long),
+ *           index offset (long)
+ *   id map: the file id of every node number, as zigzag varints of the difference to the previous id
+ *   chunks: runs of source groups, each a varint of the source's difference to the previous source of the chunk (to
+ *           0 for the first), a varint # of targets, and the targets as a varint of the first target and then varints
+ *           of the differences to the previous target - each followed by its weight as a raw double if weighted
+ *   index:  per chunk its offset (long), # of bytes (int) and # of edges (int)
+ * Chunks hold about chunkEdges edges each and decode independently, so they can be decoded in parallel. A source with
+ * more edges than that is split over several chunks. Decoding calls the handler with primitives only - nothing is
+ * allocated per edge. Self loops are dropped by the converter, as every reader of text edge lists drops them.
+ */
+public class BinaryGraphFile implements Closeable {
+    static final long MAGIC = 0x4E49425241505347L;    //"GSPARBIN" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+    static final int DEFAULT_CHUNK_EDGES = 1 << 20;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int FLAG_WEIGHTED = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final long ID_MAP_PIECE_BYTES = 1L << 30;
+    private final FileChannel channel;
+    private final int numNodes;
+    private final long numEdges;
+    private final boolean weighted;
+    private final long[] nodeIds;
+    private final long[] chunkOffsets;
+    private final int[] chunkBytes;
+    private final int[] chunkEdges;
+
+    /***
+     * callback receiving each decoded edge, with node numbers
+     */
+    public interface NodeEdgeHandler {
+        void edge(int source, int target, double weight);
+    }
+
+    /***
+     * open a binary graph file and read its header, id map and chunk index
+     * @param binaryFile path of binary graph file
+     * @throws IOException if the file can't be read or isn't a binary graph file of this version
+     */
+    public BinaryGraphFile(String binaryFile) throws IOException {
+        channel = FileChannel.open(Paths.get(binaryFile), StandardOpenOption.READ);
+        try {
+            if(channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a binary graph file: " + binaryFile);
+            }
+            ByteBuffer header = map(0, HEADER_BYTES);
+            if(header.getLong() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a binary graph file of version " + VERSION + ": " + binaryFile);
+            }
+            weighted = (header.getInt() & FLAG_WEIGHTED) != 0;
+            numNodes = header.getInt();
+            int numChunks = header.getInt();
+            numEdges = header.getLong();
+            long indexOffset = header.getLong();
+            if(numNodes < 0 || numChunks < 0 || indexOffset + (long)numChunks * INDEX_ENTRY_BYTES != channel.size()) {
+                throw new IOException("Corrupt header in binary graph file " + binaryFile);
+            }
+            chunkOffsets = new long[numChunks];
+            chunkBytes = new int[numChunks];
+            chunkEdges = new int[numChunks];
+            ByteBuffer index = map(indexOffset, (long)numChunks * INDEX_ENTRY_BYTES);
+            for(int chunk=0; chunk<numChunks; chunk++) {
+                chunkOffsets[chunk] = index.getLong();
+                chunkBytes[chunk] = index.getInt();
+                chunkEdges[chunk] = index.getInt();
+            }
+            long idMapEnd = numChunks > 0 ? chunkOffsets[0] : indexOffset;
+            nodeIds = new long[numNodes];
+            long position = HEADER_BYTES;
+            ByteBuffer ids = map(position, Math.min(idMapEnd - position, ID_MAP_PIECE_BYTES));
+            long id = 0;
+            for(int node=0; node<numNodes; node++) {
+                //the id map is mapped in pieces; move on before a varint could straddle the end of a piece
+                if(ids.remaining() < MAX_VARINT_BYTES && position + ids.limit() < idMapEnd) {
+                    position += ids.position();
+                    ids = map(position, Math.min(idMapEnd - position, ID_MAP_PIECE_BYTES));
+                }
+                id += unzigzag(readVarint(ids));
+                nodeIds[node] = id;
+            }
+            if(position + ids.position() != idMapEnd) {
+                throw new IOException("Corrupt id map in binary graph file " + binaryFile);
+            }
+        } catch (BufferUnderflowException e) {
+            channel.close();
+            throw new IOException("Truncated binary graph file " + binaryFile, e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /***
+     * @return true if the file starts with the binary graph magic
+     */
+    public static boolean isBinary(String file) {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic);
+            return !magic.hasRemaining() && magic.getLong(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /***
+     * decode the edges of a chunk
+     * @param chunk chunk number, from 0 to getChunkCount()-1
+     * @param handler called once per edge, sources ascending
+     * @throws IOException if the chunk can't be read
+     */
+    public void readChunk(int chunk, NodeEdgeHandler handler) throws IOException {
+        ByteBuffer buffer = map(chunkOffsets[chunk], chunkBytes[chunk]);
+        int source = 0;
+        int numDecoded = 0;
+        try {
+            while(buffer.hasRemaining()) {
+                source += (int)readVarint(buffer);
+                int degree = (int)readVarint(buffer);
+                int target = 0;
+                for(int i=0; i<degree; i++) {
+                    target += (int)readVarint(buffer);
+                    handler.edge(source, target, weighted ? buffer.getDouble() : 1.0d);
+                }
+                numDecoded += degree;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated chunk " + chunk, e);
+        }
+        if(numDecoded != chunkEdges[chunk]) {
+            throw new IOException("Chunk " + chunk + " has " + numDecoded + " edges, expected " + chunkEdges[chunk]);
+        }
+    }
+
+    /***
+     * decode all edges, chunk by chunk
+     * @param handler called once per edge, sources ascending
+     * @return # of edges read
+     * @throws IOException if the file can't be read
+     */
+    public long read(NodeEdgeHandler handler) throws IOException {
+        for(int chunk=0; chunk<chunkOffsets.length; chunk++) {
+            readChunk(chunk, handler);
+        }
+        return numEdges;
+    }
+
+    /***
+     * decode all chunks in parallel; edges of a chunk arrive in order on one thread, chunks in any order
+     * @param handler called once per edge from several threads at once, so it must be thread-safe
+     * @param pool pool to decode on
+     * @throws IOException if the file can't be read
+     */
+    public void readParallel(NodeEdgeHandler handler, ForkJoinPool pool) throws IOException {
+        IOException[] failure = new IOException[1];
+        ParallelFor.forEach(pool, 0, chunkOffsets.length, chunk -> {
+            try {
+                readChunk(chunk, handler);
+            } catch (IOException e) {
+                synchronized(failure) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if(failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /***
+     * convert a text edge list, as read by EdgeListReader, to a binary graph file. Like GraphStream, self loops and
+     * edges without a positive weight are left out, so both number the nodes alike
+     * @param textFile path of text edge list
+     * @param binaryFile path of binary file, overwritten
+     * @param chunkEdges # of edges per chunk
+     * @return # of edges written
+     * @throws IOException if a file can't be read or written
+     */
+    public static long convert(String textFile, String binaryFile, int chunkEdges) throws IOException {
+        NodeIdMap ids = new NodeIdMap();
+        EdgeList edges = new EdgeList();
+        boolean[] weighted = new boolean[1];
+        new EdgeListReader().read(textFile, (long source, long target, double weight) -> {
+            if(source != target && weight > 0) {
+                edges.add(ids.getOrAdd(source), ids.getOrAdd(target), weight);
+                weighted[0] |= weight != 1.0d;
+            }
+        });
+        int numNodes = ids.size();
+        // counting sort by source, then targets ascending within each source
+        int[] offsets = new int[numNodes+2];
+        for(int edge=0; edge<edges.size(); edge++) {
+            offsets[edges.getSource(edge)+1]++;
+        }
+        for(int node=1; node<=numNodes; node++) {
+            offsets[node+1] += offsets[node];
+        }
+        long[] entries = new long[edges.size()];    //target << 32 | edge, sorted per source
+        int[] next = Arrays.copyOf(offsets, numNodes+1);
+        for(int edge=0; edge<edges.size(); edge++) {
+            entries[next[edges.getSource(edge)]++] = (long)edges.getTarget(edge) << 32 | edge;
+        }
+        for(int node=1; node<=numNodes; node++) {
+            Arrays.sort(entries, offsets[node], offsets[node+1]);
+        }
+        try(FileChannel channel = FileChannel.open(Paths.get(binaryFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            long previousId = 0;
+            for(int node=1; node<=numNodes; node++) {
+                ensureRemaining(channel, buffer, 10);
+                writeVarint(buffer, zigzag(ids.getId(node) - previousId));
+                previousId = ids.getId(node);
+            }
+            int numChunks = (edges.size() + chunkEdges - 1) / chunkEdges;
+            long[] chunkOffsets = new long[numChunks];
+            int[] chunkBytes = new int[numChunks];
+            int[] chunkSizes = new int[numChunks];
+            int source = 1;
+            for(int chunk=0; chunk<numChunks; chunk++) {
+                chunkOffsets[chunk] = channel.position() + buffer.position();
+                int end = Math.min(edges.size(), (chunk + 1) * chunkEdges);
+                int previousSource = 0;
+                for(int entry=chunk*chunkEdges; entry<end; ) {
+                    while(offsets[source+1] <= entry) {
+                        source++;
+                    }
+                    int groupEnd = Math.min(end, offsets[source+1]);
+                    ensureRemaining(channel, buffer, 20);
+                    writeVarint(buffer, source - previousSource);
+                    writeVarint(buffer, groupEnd - entry);
+                    previousSource = source;
+                    int previousTarget = 0;
+                    for(; entry<groupEnd; entry++) {
+                        int target = (int)(entries[entry] >>> 32);
+                        ensureRemaining(channel, buffer, 18);
+                        writeVarint(buffer, target - previousTarget);
+                        previousTarget = target;
+                        if(weighted[0]) {
+                            buffer.putDouble(edges.getWeight((int)entries[entry]));
+                        }
+                    }
+                }
+                chunkBytes[chunk] = (int)(channel.position() + buffer.position() - chunkOffsets[chunk]);
+                chunkSizes[chunk] = end - chunk*chunkEdges;
+            }
+            long indexOffset = channel.position() + buffer.position();
+            for(int chunk=0; chunk<numChunks; chunk++) {
+                ensureRemaining(channel, buffer, INDEX_ENTRY_BYTES);
+                buffer.putLong(chunkOffsets[chunk]).putInt(chunkBytes[chunk]).putInt(chunkSizes[chunk]);
+            }
+            flush(channel, buffer);
+            buffer.putLong(MAGIC).putInt(VERSION).putInt(weighted[0] ? FLAG_WEIGHTED : 0).putInt(numNodes)
+                    .putInt(numChunks).putLong(edges.size()).putLong(indexOffset);
+            buffer.flip();
+            for(long written=0; buffer.hasRemaining(); ) {
+                written += channel.write(buffer, written);
+            }
+        }
+        return edges.size();
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if(buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /***
+     * write an unsigned LEB128 varint, 7 bits per byte, low bits first
+     */
+    static void writeVarint(ByteBuffer buffer, long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for(int shift=0; ; shift+=7) {
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    public long getEdgeCount() {
+        return numEdges;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    public int getChunkCount() {
+        return chunkOffsets.length;
+    }
+
+    /***
+     * @param nodeNum node number, starting at 1
+     * @return id of node in the text file
+     */
+    public long getNodeId(int nodeNum) {
+        return nodeIds[nodeNum-1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String args[]) {
+        try {
+            if(args.length >= 3 && args[0].equals("convert")) {
+                long startTime = System.nanoTime();
+                long numEdges = convert(args[1], args[2], args.length > 3 ? Integer.parseInt(args[3]) :
+                        DEFAULT_CHUNK_EDGES);
+                System.out.format("Converted %d edges in %.3f s%n", numEdges, (System.nanoTime() - startTime) / 1e9);
+            } else if(args.length == 2 && args[0].equals("info")) {
+                try(BinaryGraphFile graphFile = new BinaryGraphFile(args[1])) {
+                    long startTime = System.nanoTime();
+                    long[] checksum = new long[1];
+                    graphFile.read((source, target, weight) -> checksum[0] += source ^ target);
+                    System.out.format("%d nodes, %d edges, %d chunks, weighted: %b, decoded in %.3f s%n",
+                            graphFile.getNodeCount(), graphFile.getEdgeCount(), graphFile.getChunkCount(),
+                            graphFile.isWeighted(), (System.nanoTime() - startTime) / 1e9);
+                }
+            } else {
+                System.err.println("Usage: convert textFile binaryFile [chunkEdges] | info binaryFile");
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            System.out.println("IO error accessing graph file");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
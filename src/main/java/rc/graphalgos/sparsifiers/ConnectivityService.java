@@ -0,0 +1,128 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.DisjointSet;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.PairCodec;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+/***
+ * long-lived connectivity queries over a dynamic edge stream. Node sketches are kept up to date under insertions and
+ * deletions, while component labels are cached in a disjoint-set:
+ * an insertion can only merge components, so it is applied to the cache directly and the cache stays exact;
+ * a deletion may split a component, which only a new spanning forest can tell, so deletions are counted and the
+ * spanning forest is recomputed from the sketches by the first query that finds more than maxStaleDeletions of them.
+ * Queries on a fresh cache cost O(alpha(n)). Nodes are numbered from 1 to numNodes, as in NodeSketches.
+ * All methods are synchronized, so updates and queries may come from different threads.
+ */
+public class ConnectivityService {
+    private int numNodes;
+    private NodeSketches nodeSketches;
+    private DisjointSet components;
+    private long maxStaleDeletions;
+    private long pendingDeletions;
+    private long numRecomputes;
+    private static final long DEFAULT_SEED = 1152L;
+
+    /***
+     * default constructor - every query after a deletion recomputes the components
+     * @param numNodes # of nodes in graph
+     */
+    public ConnectivityService(int numNodes) {
+        this(numNodes, DEFAULT_SEED, 1, 0);
+    }
+
+    /***
+     * constructor with sketch parameters and a staleness bound
+     * @param numNodes # of nodes in graph
+     * @param seed seed of the node sketches
+     * @param numRepetitions # of repetitions per sketch, see SpanningForest.setErrorProbability
+     * @param maxStaleDeletions # of deletions queries may ignore before the components are recomputed; 0 keeps
+     *                          answers exact (with high probability)
+     */
+    public ConnectivityService(int numNodes, long seed, int numRepetitions, long maxStaleDeletions) {
+        this.numNodes = numNodes;
+        this.maxStaleDeletions = maxStaleDeletions;
+        nodeSketches = new NodeSketches(numNodes, seed, numRepetitions);
+        components = new DisjointSet(numNodes);
+    }
+
+    /***
+     * insert edge (node1, node2)
+     */
+    public synchronized void insert(int node1, int node2) {
+        if(node1 == node2) {
+            return;
+        }
+        nodeSketches.update(node1, node2, 1);
+        components.union(node1-1, node2-1);
+    }
+
+    /***
+     * delete edge (node1, node2), which must have been inserted before
+     */
+    public synchronized void delete(int node1, int node2) {
+        if(node1 == node2) {
+            return;
+        }
+        nodeSketches.update(node1, node2, -1);
+        pendingDeletions++;
+    }
+
+    /***
+     * @return true if node1 and node2 are in the same component
+     */
+    public synchronized boolean isConnected(int node1, int node2) {
+        refresh();
+        return components.isConnected(node1-1, node2-1);
+    }
+
+    /***
+     * @return # of connected components, isolated nodes included
+     */
+    public synchronized int getComponentCount() {
+        refresh();
+        return components.getSetCount();
+    }
+
+    /***
+     * @return label of the component of node - a node number that is equal for all nodes of the component, and stays
+     * valid until the next update
+     */
+    public synchronized int getComponentLabel(int node) {
+        refresh();
+        return components.find(node-1) + 1;
+    }
+
+    /***
+     * recompute the components from the sketches if too many deletions are pending
+     */
+    private void refresh() {
+        if(pendingDeletions <= maxStaleDeletions) {
+            return;
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, nodeSketches.getSeed());
+        spanningForest.findSpanningForest(nodeSketches);
+        DisjointSet forestComponents = new DisjointSet(numNodes);
+        for(long edgeIndex: spanningForest.getForestEdges()) {
+            int[] edge = PairCodec.decode(edgeIndex, numNodes);
+            forestComponents.union(edge[0]-1, edge[1]-1);
+        }
+        components = forestComponents;
+        pendingDeletions = 0;
+        numRecomputes++;
+    }
+
+    /***
+     * @return # of deletions not yet reflected in the cached components
+     */
+    public synchronized long getPendingDeletionCount() {
+        return pendingDeletions;
+    }
+
+    /***
+     * @return # of spanning forest recomputations so far
+     */
+    public synchronized long getRecomputeCount() {
+        return numRecomputes;
+    }
+}
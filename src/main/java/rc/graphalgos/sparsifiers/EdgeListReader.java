@@ -0,0 +1,218 @@
+package rc.graphalgos.sparsifiers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * fast reader for edge list files in SNAP format. The file is memory-mapped in large chunks and numbers are parsed
+ * straight from the mapped bytes, so no line strings or split arrays are allocated per edge.
+ * Fields are separated by spaces or tabs; everything from '#' to the end of a line is a comment. Lines with fewer
+ * than two fields are skipped. An optional third field is the edge weight, a signed decimal number such as 3, 0.25,
+ * -2 or 1.5e-3, and defaults to 1; further fields are ignored. Vertex ids are unsigned, a file with a signed id is
+ * rejected.
+ */
+public class EdgeListReader {
+    private static final long CHUNK_SIZE = 64L * 1024L * 1024L;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private long numEdges;
+    private long numBytes;
+    private long elapsedNanos;
+
+    /***
+     * callback receiving each parsed edge
+     */
+    public interface EdgeHandler {
+        void edge(long source, long target);
+    }
+
+    /***
+     * callback receiving each parsed edge with its weight
+     */
+    public interface WeightedEdgeHandler {
+        void edge(long source, long target, double weight);
+    }
+
+    /***
+     * read all edges of given file
+     * @param edgeFile path of edge list file
+     * @param handler called once per edge, in file order, with the ids as they appear in the file
+     * @return # of edges read
+     * @throws IOException if the file can't be read, or has a signed vertex id
+     */
+    public long read(String edgeFile, EdgeHandler handler) throws IOException {
+        return read(edgeFile, (source, target, weight) -> handler.edge(source, target));
+    }
+
+    /***
+     * read all edges of given file together with their weights
+     * @param edgeFile path of edge list file
+     * @param handler called once per edge, in file order, with the ids as they appear in the file
+     * @return # of edges read
+     * @throws IOException if the file can't be read, or has a signed vertex id
+     */
+    public long read(String edgeFile, WeightedEdgeHandler handler) throws IOException {
+        long startTime = System.nanoTime();
+        numEdges = 0;
+        try(FileChannel channel = FileChannel.open(Paths.get(edgeFile), StandardOpenOption.READ)) {
+            numBytes = channel.size();
+            // parser state is kept across chunks, so a number may straddle a chunk boundary
+            long[] fields = new long[2];
+            int numFields = 0;
+            long value = 0;
+            boolean inNumber = false;
+            boolean inComment = false;
+            double weight = 1.0d;
+            WeightParser weightParser = new WeightParser();
+            for(long position=0; position<numBytes; position+=CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(CHUNK_SIZE, numBytes - position));
+                while(buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if(b == '\n' || b == '\r') {
+                        if(inNumber && numFields < 2) {
+                            fields[numFields++] = value;
+                        } else if(inNumber && numFields == 2) {
+                            weight = weightParser.finish();
+                            numFields++;
+                        }
+                        if(numFields >= 2) {
+                            handler.edge(fields[0], fields[1], weight);
+                            numEdges++;
+                        }
+                        numFields = 0;
+                        weight = 1.0d;
+                        inNumber = false;
+                        inComment = false;
+                    } else if(inComment) {
+                        continue;
+                    } else if(b >= '0' && b <= '9' && numFields < 2) {
+                        value = inNumber ? value * 10 + (b - '0') : b - '0';
+                        inNumber = true;
+                    } else if((b == '-' || b == '+') && numFields < 2) {
+                        // ids are unsigned; taking the sign for a separator would turn "-3 4" into edge (3, 4)
+                        throw new IOException("Signed vertex id at byte " + (position + buffer.position() - 1) +
+                                " of " + edgeFile);
+                    } else if(numFields == 2 && (b >= '0' && b <= '9' || b == '.' || inNumber && (b == 'e' ||
+                            b == 'E') || (b == '-' || b == '+') && (!inNumber || weightParser.inExponent))) {
+                        // a sign is taken before the weight or its exponent only
+                        if(!inNumber) {
+                            weightParser.start();
+                            inNumber = true;
+                        }
+                        weightParser.accept(b);
+                    } else if(b == '#') {
+                        inComment = true;
+                        if(inNumber && numFields < 2) {
+                            fields[numFields++] = value;
+                        } else if(inNumber && numFields == 2) {
+                            weight = weightParser.finish();
+                            numFields++;
+                        }
+                        inNumber = false;
+                    } else if(inNumber) {
+                        if(numFields < 2) {
+                            fields[numFields++] = value;
+                        } else if(numFields == 2) {
+                            weight = weightParser.finish();
+                            numFields++;
+                        }
+                        inNumber = false;
+                    }
+                }
+            }
+            // last line may lack a line break
+            if(inNumber && numFields < 2) {
+                fields[numFields++] = value;
+            } else if(inNumber && numFields == 2) {
+                weight = weightParser.finish();
+                numFields++;
+            }
+            if(numFields >= 2) {
+                handler.edge(fields[0], fields[1], weight);
+                numEdges++;
+            }
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        return numEdges;
+    }
+
+    /***
+     * state of the weight field being parsed, which is kept as mantissa * 10^(scale + exponent)
+     */
+    private static class WeightParser {
+        private long mantissa;
+        private int mantissaDigits;
+        private int scale;
+        private int exponent;
+        private boolean inFraction;
+        private boolean inExponent;
+        private boolean negativeExponent;
+        private boolean negativeWeight;
+
+        void start() {
+            mantissa = 0;
+            mantissaDigits = 0;
+            scale = 0;
+            exponent = 0;
+            inFraction = false;
+            inExponent = false;
+            negativeExponent = false;
+            negativeWeight = false;
+        }
+
+        /***
+         * take the next byte of the weight: a digit, '.', 'e', 'E' or a sign
+         */
+        void accept(byte b) {
+            if(b == '.') {
+                inFraction = true;
+            } else if(b == 'e' || b == 'E') {
+                inExponent = true;
+            } else if((b == '-' || b == '+') && inExponent) {
+                negativeExponent = b == '-';
+            } else if(b == '-' || b == '+') {
+                negativeWeight = b == '-';
+            } else if(inExponent) {
+                exponent = Math.min(exponent * 10 + (b - '0'), 1000);
+            } else if(mantissaDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+                mantissaDigits += mantissa == 0 ? 0 : 1;
+                scale -= inFraction ? 1 : 0;
+            } else if(!inFraction) {
+                // digits beyond a long's precision only scale the integer part
+                scale++;
+            }
+        }
+
+        /***
+         * @return the weight parsed, dividing for negative powers of 10 so that e.g. 0.1 is exact to the last bit
+         */
+        double finish() {
+            long signedMantissa = negativeWeight ? -mantissa : mantissa;
+            int power = scale + (negativeExponent ? -exponent : exponent);
+            return power >= 0 ? signedMantissa * Math.pow(10, power) : signedMantissa / Math.pow(10, -power);
+        }
+    }
+
+    public long getEdgeCount() {
+        return numEdges;
+    }
+
+    public long getByteCount() {
+        return numBytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /***
+     * @return load throughput of the last read
+     */
+    public double getEdgesPerSecond() {
+        return elapsedNanos == 0 ? 0 : numEdges * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,282 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SketchCheckpoint;
+
+import java.io.*;
+
+/***
+ * single pass edge stream over an edge list file. Each line is an update that is applied straight to the node
+ * sketches - the graph itself is never held in memory.
+ * Accepted line formats: "u v" or "+u v" inserts edge (u, v), "-u v" deletes it. Lines starting with '#' are
+ * comments. Vertex ids in the file are 0-based and must be below numNodes; they map to node numbers id+1.
+ * Optionally the sketches are checkpointed every so many lines, and a restarted stream resumes from the last one.
+ */
+public class EdgeStream {
+    private int numNodes;
+    private long numInsertions;
+    private long numDeletions;
+    private long numLines;
+    private String checkpointFile;
+    private long checkpointInterval;
+    private Metrics metrics = new Metrics();
+    private static final long MiB = 1024L * 1024L;
+    private static final long CHECKPOINT_INTERVAL = 10000000L;
+
+    /***
+     * default constructor
+     * @param numNodes # of vertex ids in the stream
+     */
+    public EdgeStream(int numNodes) {
+        this.numNodes = numNodes;
+    }
+
+    /***
+     * read the whole stream and apply every update to the given sketches. The line, insertion and deletion counters
+     * start over with the new stream
+     * @param edgeFile path of file containing the edge stream
+     * @param nodeSketches sketches to update, sized for numNodes
+     * @throws IOException if the edge file can't be read, or a checkpoint can't be written
+     */
+    public void streamEdges(String edgeFile, NodeSketches nodeSketches) throws IOException {
+        numLines = 0;
+        numInsertions = 0;
+        numDeletions = 0;
+        streamEdges(edgeFile, nodeSketches, 0);
+    }
+
+    /***
+     * checkpoint the sketches while streaming
+     * @param checkpointFile path of checkpoint file, overwritten by every checkpoint
+     * @param checkpointInterval # of lines between checkpoints, at least 1
+     * @throws IllegalArgumentException if the interval isn't positive
+     */
+    public void setCheckpoint(String checkpointFile, long checkpointInterval) {
+        if(checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive, got " + checkpointInterval);
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /***
+     * record the ingest phase - wall time, allocation, ingest.edges and ingest.sketch_updates - into the given metrics
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * restore the sketches and counters of a checkpoint, to continue with resumeStream
+     * @param checkpointFile path of checkpoint file
+     * @return sketches as of the checkpoint
+     * @throws IOException if the checkpoint can't be read
+     */
+    public NodeSketches loadCheckpoint(String checkpointFile) throws IOException {
+        SketchCheckpoint checkpoint = SketchCheckpoint.read(checkpointFile);
+        if(checkpoint.getNodeSketches().getNodeCount() != numNodes) {
+            throw new IOException("Checkpoint has " + checkpoint.getNodeSketches().getNodeCount() + " nodes, expected "
+                    + numNodes);
+        }
+        numLines = checkpoint.getPosition();
+        numInsertions = checkpoint.getInsertionCount();
+        numDeletions = checkpoint.getDeletionCount();
+        return checkpoint.getNodeSketches();
+    }
+
+    /***
+     * continue the stream after the lines already covered by the sketches, e.g. those of a loaded checkpoint
+     * @param edgeFile path of file containing the edge stream
+     * @param nodeSketches sketches to update
+     * @throws IOException if the edge file can't be read, or a checkpoint can't be written
+     */
+    public void resumeStream(String edgeFile, NodeSketches nodeSketches) throws IOException {
+        streamEdges(edgeFile, nodeSketches, numLines);
+    }
+
+    /***
+     * read one shard of the stream: the file is split into numShards byte ranges of equal size and a line belongs to
+     * the range holding its first byte, so shards read disjoint parts of the file and together cover every line
+     * @param edgeFile path of file containing the edge stream
+     * @param nodeSketches sketches to update
+     * @param shard shard number, from 0 to numShards-1
+     * @param numShards # of shards
+     * @throws IOException if the edge file can't be read; the sketches then hold part of the shard at most
+     */
+    public void streamShard(String edgeFile, NodeSketches nodeSketches, int shard, int numShards)
+            throws IOException {
+        long startLines = numLines;
+        long startUpdates = numInsertions + numDeletions;
+        try(Metrics.Phase phase = metrics.startPhase("ingest");
+            RandomAccessFile file = new RandomAccessFile(edgeFile, "r")) {
+            long start = file.length() * shard / numShards;
+            long end = file.length() * (shard + 1) / numShards;
+            long position = start;
+            //a line straddling start belongs to the previous shard
+            if(start > 0) {
+                file.seek(start - 1);
+                if(file.read() != '\n') {
+                    file.readLine();
+                    position = file.getFilePointer();
+                }
+            }
+            InputStream input = new BufferedInputStream(new FileInputStream(file.getFD()));
+            StringBuilder line = new StringBuilder();
+            int b = 0;
+            while(position < end && b != -1) {
+                line.setLength(0);
+                while((b = input.read()) != -1 && b != '\n') {
+                    line.append((char)b);
+                    position++;
+                }
+                if(b == -1 && line.length() == 0) {
+                    break;
+                }
+                position++;
+                applyUpdate(line.toString(), nodeSketches);
+                numLines++;
+            }
+            countIngest(phase, startLines, startUpdates);
+        }
+    }
+
+    private void streamEdges(String edgeFile, NodeSketches nodeSketches, long skipLines) throws IOException {
+        long startLines = numLines;
+        long startUpdates = numInsertions + numDeletions;
+        try(Metrics.Phase phase = metrics.startPhase("ingest");
+            BufferedReader reader= new BufferedReader(new FileReader(new File(edgeFile)))){
+            String line;
+            //lines up to skipLines are already applied
+            long skipped = 0;
+            while(skipped < skipLines && reader.readLine() != null) {
+                skipped++;
+            }
+            while((line=reader.readLine()) !=null) {
+                applyUpdate(line, nodeSketches);
+                numLines++;
+                if(checkpointFile != null && numLines % checkpointInterval == 0) {
+                    writeCheckpoint(nodeSketches);
+                }
+            }
+            if(checkpointFile != null) {
+                writeCheckpoint(nodeSketches);
+            }
+            countIngest(phase, startLines, startUpdates);
+        }
+    }
+
+    /***
+     * parse a single stream line and apply it to the sketches
+     * @param line update of the form "u v", "+u v" or "-u v"
+     * @param nodeSketches sketches to update
+     */
+    void applyUpdate(String line, NodeSketches nodeSketches) {
+        line = line.trim();
+        if(line.isEmpty() || line.charAt(0) == '#') {
+            return;
+        }
+        long value = 1;
+        if(line.charAt(0) == '+' || line.charAt(0) == '-') {
+            value = line.charAt(0) == '-' ? -1 : 1;
+            line = line.substring(1).trim();
+        }
+        String[] edge = line.split("\\s+");
+        if(edge.length < 2) {
+            throw new IllegalArgumentException("Invalid edge update: " + line);
+        }
+        int firstNode = toNodeNumber(edge[0]);
+        int secondNode = toNodeNumber(edge[1]);
+        //drop self loops
+        if(firstNode == secondNode) {
+            return;
+        }
+        nodeSketches.update(firstNode, secondNode, value);
+        if(value > 0) {
+            numInsertions++;
+        } else {
+            numDeletions++;
+        }
+    }
+
+    /***
+     * count the lines and sketch updates since the given totals; an edge update touches the sketches of both ends
+     */
+    private void countIngest(Metrics.Phase phase, long startLines, long startUpdates) {
+        phase.count("edges", numLines - startLines);
+        phase.count("sketch_updates", 2 * (numInsertions + numDeletions - startUpdates));
+    }
+
+    private void writeCheckpoint(NodeSketches nodeSketches) throws IOException {
+        new SketchCheckpoint(nodeSketches, numLines, numInsertions, numDeletions).write(checkpointFile);
+    }
+
+    private int toNodeNumber(String vertexId) {
+        int id = Integer.parseInt(vertexId);
+        if(id < 0 || id >= numNodes) {
+            throw new IllegalArgumentException("Vertex id " + id + " out of range [0, " + numNodes + ")");
+        }
+        return id + 1;
+    }
+
+    public long getInsertionCount() {
+        return numInsertions;
+    }
+
+    public long getDeletionCount() {
+        return numDeletions;
+    }
+
+    /***
+     * @return # of stream lines consumed, comments included
+     */
+    public long getLineCount() {
+        return numLines;
+    }
+
+    private static long bytesToMegabytes(long bytes) {
+        return bytes / MiB;
+    }
+
+    public static void main(String args[]) {
+        if(args.length < 2 || args.length > 3) {
+            System.err.println("Invalid number of arguments - required 2 (edge file, # vertex ids) and an optional " +
+                    "checkpoint file, got " + args.length);
+            return;
+        }
+        int numNodes = Integer.parseInt(args[1]);
+        EdgeStream edgeStream = new EdgeStream(numNodes);
+        try {
+            if(args.length == 3) {
+                edgeStream.setCheckpoint(args[2], CHECKPOINT_INTERVAL);
+                if(new File(args[2]).exists()) {
+                    NodeSketches nodeSketches = edgeStream.loadCheckpoint(args[2]);
+                    System.out.println("Resuming after line " + edgeStream.getLineCount());
+                    edgeStream.resumeStream(args[0], nodeSketches);
+                } else {
+                    edgeStream.streamEdges(args[0], new NodeSketches(numNodes, 1152L));
+                }
+            } else {
+                edgeStream.streamEdges(args[0], new NodeSketches(numNodes, 1152L));
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Invalid input file path - doesn't exist");
+            e.printStackTrace();
+            return;
+        } catch (IOException e) {
+            System.out.println("IO error accessing input or checkpoint file");
+            e.printStackTrace();
+            return;
+        }
+        System.out.println("Insertions: " + edgeStream.getInsertionCount() + ", deletions: " +
+                edgeStream.getDeletionCount());
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long memUsage = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
+    }
+}
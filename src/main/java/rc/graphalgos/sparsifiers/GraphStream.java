@@ -1,25 +1,50 @@
 package rc.graphalgos.sparsifiers;
 
-import org.apache.commons.math3.linear.OpenMapRealVector;
-import org.graphstream.graph.Edge;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
-import org.graphstream.graph.implementations.*;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.LongSparseVector;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeIdMap;
+import rc.graphalgos.sparsifiers.utils.PairCodec;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /***
- * wrapper class to represent Graph as a dynamic stream. Reads an input graph file and wraps it in a GraphStream API
- * object. contains additional transformation and representation functions, as well as utility display functions
+ * wrapper class to represent Graph as a dynamic stream. Reads an input graph file and keeps it as primitive edge
+ * arrays, with node ids remapped densely to node numbers 1..n in order of first appearance. contains additional
+ * transformation and representation functions, as well as utility display functions
  * author: Ramji Chandrasekaran
  * date: 21-Oct-2017
  */
 public class GraphStream {
-    Graph graph;
+    private String graphName;
+    EdgeList edges = new EdgeList();
+    NodeIdMap nodeIds = new NodeIdMap();
+    private EdgeListReader edgeListReader = new EdgeListReader();
+    private Metrics metrics = new Metrics();
 
     public int getNodeCount() {
-        return graph.getNodeCount();
+        return nodeIds.size();
+    }
+
+    public int getEdgeCount() {
+        return edges.size();
+    }
+
+    /***
+     * @return edges of graph, endpoints given as node numbers
+     */
+    public EdgeList getEdges() {
+        return edges;
+    }
+
+    /***
+     * @param nodeNum node number, starting at 1
+     * @return id of node in the input file
+     */
+    public long getNodeId(int nodeNum) {
+        return nodeIds.getId(nodeNum);
     }
 
     /***
@@ -27,30 +52,29 @@ public class GraphStream {
      * @param graph_name name of input graph
      */
     public GraphStream(String graph_name) {
-        graph = new MultiGraph(graph_name);
-        graph.setAutoCreate(true);
-        graph.setStrict(false);
+        graphName = graph_name;
     }
 
     /***
-     * build graph from input file. Input should be an edge list of the graph
+     * record the load phase - wall time, allocation and load.edges - into the given metrics
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * build graph from input file. Input should be an edge list of the graph, with an optional weight column, or a
+     * BinaryGraphFile, which is recognized by its magic
      * @param graph_file path of file containing graph
      */
     public void buildGraph(String graph_file) {
-        try(BufferedReader reader= new BufferedReader(new FileReader(new File(graph_file)))){
-            String line;
-            String[] edges;
-            while((line=reader.readLine()) !=null) {
-                edges = line.split(" ");
-                //drop self loops
-                if(edges[0].equals(edges[1])) {
-                    continue;
-                }
-                graph.addEdge(edges[0] + "to" + edges[1], edges[0], edges[1]);
-            }
-            // add nodeId to each node
-            addNodeNumbers();
-        } catch (FileNotFoundException e) {
+        try {
+            loadGraph(graph_file);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             System.out.println("Invalid input file path - doesn't exist");
             e.printStackTrace();
         } catch (IOException e) {
@@ -60,81 +84,105 @@ public class GraphStream {
     }
 
     /***
-     * build a matrix representation of graph by streaming edges
-     * edge stream here is simulated by iterating over edgeset of GraphStream object
+     * build graph from input file as buildGraph does, failing if the file can't be read
+     * @param graph_file path of file containing graph
+     * @throws IOException if the file doesn't exist or can't be read; edges read before the error are kept
      */
-    public List<OpenMapRealVector> buildGraphMatrix() {
-        List<OpenMapRealVector> nodeVectors = new ArrayList<>();
-        for(int i=1; i<=getNodeCount(); i++) {
-            nodeVectors.add(new OpenMapRealVector((getNodeCount() * getNodeCount()-1)/2));
+    public void loadGraph(String graph_file) throws IOException {
+        int startEdges = edges.size();
+        try(Metrics.Phase phase = metrics.startPhase("load")) {
+            if(BinaryGraphFile.isBinary(graph_file)) {
+                buildGraphFromBinary(graph_file);
+                phase.count("bytes", new File(graph_file).length());
+            } else {
+                edgeListReader.read(graph_file, (long source, long target, double weight) -> {
+                    //drop self loops, and edges that can't contribute to a cut
+                    if(source == target || !(weight > 0)) {
+                        return;
+                    }
+                    edges.add(nodeIds.getOrAdd(source), nodeIds.getOrAdd(target), weight);
+                });
+                phase.count("bytes", edgeListReader.getByteCount());
+            }
+            phase.count("edges", edges.size() - startEdges);
         }
-        //fill edge value list and construct the graphMatrix
-        for(Edge edge: graph.getEdgeSet()) {
-           int firstNode = edge.getNode0().getAttribute("nodeNum");
-           int secondNode = edge.getNode1().getAttribute("nodeNum");
-
-//           System.out.println(firstNode + " " + secondNode);
-           // add this edge value to all node vectors
-           for(int nodeNum=1; nodeNum<=getNodeCount(); nodeNum++) {
-               //check if either of the nodes of edge are the current node
-               //and set the correct edge value
-               int edgeValue;
-               if(nodeNum == firstNode) {
-                   //set edge value
-                   edgeValue = 1;
-               } else if (nodeNum == secondNode){
-                   edgeValue = -1;
-               } else {
-                   edgeValue = 0;
-               }
-               //insert the current edge value
-               nodeVectors.get(nodeNum-1).addToEntry(computeEdgeIndex(firstNode, secondNode, getNodeCount()),
-                       edgeValue);
-           }
-       }
-       return nodeVectors;
     }
 
     /***
-     * given an edge, compute an index in the node vector to store its value
-     * @param node1 first node of given edge
-     * @param node2 second node of given edge
-     * @param numNodes # nodes in given graph
-     * @return integer index
+     * load a binary graph file; its node numbers carry over as they are unless the graph already had nodes
      */
-    int computeEdgeIndex(int node1, int node2, int numNodes) {
-        int index = 0;
-        int limit = node1>node2?(numNodes-node2):(numNodes-node1);
-        for(long i=numNodes-1; i>limit; i--) {
-            index+=i;
+    private void buildGraphFromBinary(String graph_file) throws IOException {
+        try(BinaryGraphFile graphFile = new BinaryGraphFile(graph_file)) {
+            int[] nodeNums = new int[graphFile.getNodeCount()+1];
+            for(int node=1; node<=graphFile.getNodeCount(); node++) {
+                nodeNums[node] = nodeIds.getOrAdd(graphFile.getNodeId(node));
+            }
+            graphFile.read((source, target, weight) -> edges.add(nodeNums[source], nodeNums[target], weight));
         }
-        return node1==0||node2==0?index+Math.abs(node1-node2):index+Math.abs(node1-node2)-1;
     }
 
     /***
-     * assign an integer id to each node in graph
+     * build a matrix representation of graph by streaming edges
+     * edge stream here is simulated by iterating over the edge arrays
+     * each node vector is the signed incidence vector of the node: edge (u, v), u < v, is +1 in u's vector and -1 in
+     * v's vector at the edge's index, so an edge touches exactly two vectors and the build is O(m)
      */
-    private void addNodeNumbers() {
-        int nodeId = 1;
-        for(Node node: graph.getNodeSet()) {
-            node.setAttribute("nodeNum", nodeId++);
+    public List<LongSparseVector> buildGraphMatrix() {
+        int numNodes = getNodeCount();
+        long numColumns = PairCodec.getPairCount(numNodes);
+        int[] degrees = new int[numNodes+1];
+        for(int edge=0; edge<edges.size(); edge++) {
+            degrees[edges.getSource(edge)]++;
+            degrees[edges.getTarget(edge)]++;
+        }
+        List<LongSparseVector> nodeVectors = new ArrayList<>(numNodes);
+        for(int node=1; node<=numNodes; node++) {
+            nodeVectors.add(new LongSparseVector(numColumns, degrees[node]));
         }
+        //fill edge value list and construct the graphMatrix
+        for(int edge=0; edge<edges.size(); edge++) {
+            int firstNode = Math.min(edges.getSource(edge), edges.getTarget(edge));
+            int secondNode = Math.max(edges.getSource(edge), edges.getTarget(edge));
+            long edgeIndex = computeEdgeIndex(firstNode, secondNode, numNodes);
+            nodeVectors.get(firstNode-1).addToEntry(edgeIndex, 1);
+            nodeVectors.get(secondNode-1).addToEntry(edgeIndex, -1);
+        }
+        return nodeVectors;
+    }
+
+    /***
+     * given an edge, compute an index in the node vector to store its value
+     * @param node1 first node of given edge
+     * @param node2 second node of given edge
+     * @param numNodes # nodes in given graph
+     * @return index in the n choose 2 space
+     */
+    long computeEdgeIndex(int node1, int node2, int numNodes) {
+        return PairCodec.encode(node1, node2, numNodes);
     }
 
     public void printGraphStats() {
         System.out.println("=============Graph Statistics==============");
-        System.out.println("Number of Nodes: " + graph.getNodeCount());
-        System.out.println("Number of Edges: " + graph.getEdgeCount());
-        System.out.println("Edge Attributes count: " + graph.getEdge(100).getAttributeCount());
-        System.out.println("Edge Attributes: ");
-        for(String attr : graph.getEdge(0).getAttributeKeySet()) {
-            System.out.println(attr + ": " + graph.getEdge(0).getAttribute(attr));
-        }
+        System.out.println("Graph: " + graphName);
+        System.out.println("Number of Nodes: " + getNodeCount());
+        System.out.println("Number of Edges: " + getEdgeCount());
+        double seconds = metrics.getPhaseNanos("load") / 1e9;
+        System.out.format("Load time: %.3f s, %.0f edges/sec, %.1f MiB/sec%n", seconds,
+                metrics.getCounter("load.edges") / seconds,
+                metrics.getCounter("load.bytes") / (1024.0 * 1024.0) / seconds);
     }
 
     public static void main(String args[]) {
         GraphStream graphStream = new GraphStream("Graph");
         graphStream.buildGraph(args[0]);
         graphStream.printGraphStats();
+        if(args.length > 1) {
+            try {
+                graphStream.getMetrics().write(args[1]);
+            } catch (IOException e) {
+                System.out.println("IO error writing metrics file");
+                e.printStackTrace();
+            }
+        }
     }
 }
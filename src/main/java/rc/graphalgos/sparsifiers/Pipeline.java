@@ -0,0 +1,438 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * command-line runner of the whole pipeline as a list of stages that share this object's state:
+ *   components: ingest -> sketch -> forest -> write, writing a "node label" record per node
+ *   sparsify:   ingest -> sparsify -> write, writing a "source target weight" record per cut sparsifier edge
+ *   spectral:   ingest -> spectral -> write, the same for a spectral sparsifier
+ * Input is either an edge list with an optional weight column or a BinaryGraphFile (format edges, node ids are kept as
+ * in the file), or an update stream of "u v", "+u v" and "-u v" lines over 0-based ids below --nodes (format stream),
+ * which is sketched while it is read, so ingest and sketch are one stage - sparsify reads it as an edge list with an
+ * optional weight column instead, in one pass into the certificate sketches - or a timestamped stream of "u v t" lines
+ * (format window), of which a SlidingWindow keeps the last --window time units in --slices slices; components and
+ * sparsify then answer for the window at the end of the stream. Results go through a buffered ResultWriter.
+ * Usage: components|sparsify|spectral inputFile [--format edges|stream|window] [--nodes n] [--window w]
+ *        [--slices s] [--seed s] [--repetitions r] [--threads t] [--epsilon e] [--output file|-]
+ *        [--output-format text|binary] [--metrics file.json|file.csv]
+ */
+public class Pipeline {
+    private static final long DEFAULT_SEED = 1152L;
+    private String mode;
+    private String inputFile;
+    private boolean streamInput;
+    private boolean windowInput;
+    private int numNodes;
+    private long windowLength;
+    private int numSlices = 8;
+    private long seed = DEFAULT_SEED;
+    private int numRepetitions = 1;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private double epsilon = 1.0d;
+    private String outputFile = "-";
+    private boolean binaryOutput;
+    private String metricsFile;
+    private ForkJoinPool forkJoinPool;
+    private Metrics metrics = new Metrics();
+    // state passed from stage to stage
+    private GraphStream graphStream;
+    private NodeSketches nodeSketches;
+    private SlidingWindow slidingWindow;
+    private SimpleSparsifier simpleSparsifier;
+    private List<List<Integer>> components;
+    private EdgeList sparsifier;
+
+    /***
+     * a step of the pipeline, reading and writing the pipeline's state
+     */
+    interface Stage {
+        String getName();
+
+        void run(Pipeline pipeline) throws IOException;
+    }
+
+    /***
+     * parse command-line arguments
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    static Pipeline parse(String[] args) {
+        if(args.length < 2 || !(args[0].equals("components") || args[0].equals("sparsify") ||
+                args[0].equals("spectral"))) {
+            throw new IllegalArgumentException("Expected components|sparsify|spectral inputFile [options]");
+        }
+        Pipeline pipeline = new Pipeline();
+        pipeline.mode = args[0];
+        pipeline.inputFile = args[1];
+        for(int i=2; i<args.length; i+=2) {
+            if(i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            String value = args[i+1];
+            switch(args[i]) {
+                case "--format":
+                    if(!value.equals("edges") && !value.equals("stream") && !value.equals("window")) {
+                        throw new IllegalArgumentException("Unknown input format " + value);
+                    }
+                    pipeline.streamInput = !value.equals("edges");
+                    pipeline.windowInput = value.equals("window");
+                    break;
+                case "--nodes":
+                    pipeline.numNodes = Integer.parseInt(value);
+                    break;
+                case "--window":
+                    pipeline.windowLength = Long.parseLong(value);
+                    break;
+                case "--slices":
+                    pipeline.numSlices = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    pipeline.seed = Long.parseLong(value);
+                    break;
+                case "--repetitions":
+                    pipeline.numRepetitions = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    pipeline.numThreads = Integer.parseInt(value);
+                    break;
+                case "--epsilon":
+                    pipeline.epsilon = Double.parseDouble(value);
+                    break;
+                case "--output":
+                    pipeline.outputFile = value;
+                    break;
+                case "--output-format":
+                    if(!value.equals("text") && !value.equals("binary")) {
+                        throw new IllegalArgumentException("Unknown output format " + value);
+                    }
+                    pipeline.binaryOutput = value.equals("binary");
+                    break;
+                case "--metrics":
+                    pipeline.metricsFile = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(pipeline.streamInput && pipeline.numNodes <= 0) {
+            throw new IllegalArgumentException("Stream input needs --nodes");
+        }
+        if(pipeline.windowInput && (pipeline.numSlices < 1 || pipeline.windowLength < pipeline.numSlices ||
+                pipeline.windowLength % pipeline.numSlices != 0)) {
+            throw new IllegalArgumentException("Window input needs --window to be a positive multiple of --slices");
+        }
+        if(pipeline.streamInput && pipeline.mode.equals("spectral")) {
+            throw new IllegalArgumentException(pipeline.mode + " can't run on this input format");
+        }
+        if(pipeline.numRepetitions < 1 || pipeline.numThreads < 1) {
+            throw new IllegalArgumentException("Repetitions and threads must be at least 1");
+        }
+        return pipeline;
+    }
+
+    /***
+     * @return stages of the configured mode and input format, in order
+     */
+    List<Stage> getStages() {
+        List<Stage> stages = new ArrayList<>();
+        if(windowInput) {
+            stages.add(new WindowIngestStage());
+            stages.add(new WindowQueryStage());
+            stages.add(new WriteStage());
+            return stages;
+        }
+        if(!streamInput) {
+            stages.add(new LoadStage());
+        } else if(mode.equals("sparsify")) {
+            stages.add(new StreamSparsifyIngestStage());
+        } else {
+            stages.add(new StreamIngestStage());
+        }
+        if(mode.equals("sparsify")) {
+            stages.add(new SparsifyStage());
+        } else if(mode.equals("spectral")) {
+            stages.add(new SpectralStage());
+        } else {
+            if(!streamInput) {
+                stages.add(new SketchStage());
+            }
+            stages.add(new ForestStage());
+        }
+        stages.add(new WriteStage());
+        return stages;
+    }
+
+    /***
+     * run all stages, then write the metrics if asked to
+     * @throws IOException if the input can't be read or the results can't be written; the message names the stage
+     */
+    void run() throws IOException {
+        forkJoinPool = new ForkJoinPool(numThreads);
+        try {
+            for(Stage stage: getStages()) {
+                try {
+                    stage.run(this);
+                } catch (IOException e) {
+                    throw new IOException("Stage " + stage.getName() + " failed: " + e, e);
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        if(metricsFile != null) {
+            metrics.write(metricsFile);
+        }
+    }
+
+    /***
+     * read an edge list into memory
+     */
+    static class LoadStage implements Stage {
+        public String getName() {
+            return "ingest";
+        }
+
+        public void run(Pipeline pipeline) throws IOException {
+            pipeline.graphStream = new GraphStream(pipeline.inputFile);
+            pipeline.graphStream.setMetrics(pipeline.metrics);
+            pipeline.graphStream.loadGraph(pipeline.inputFile);
+            pipeline.numNodes = pipeline.graphStream.getNodeCount();
+        }
+    }
+
+    /***
+     * sketch an update stream as it is read; with several threads, reading, parsing and sketch updates are pipelined,
+     * a quarter of the threads parsing and the rest updating
+     */
+    static class StreamIngestStage implements Stage {
+        public String getName() {
+            return "ingest";
+        }
+
+        public void run(Pipeline pipeline) throws IOException {
+            pipeline.nodeSketches = new NodeSketches(pipeline.numNodes, pipeline.seed, pipeline.numRepetitions);
+            if(pipeline.numThreads > 1) {
+                int numParsers = Math.max(1, pipeline.numThreads / 4);
+                PipelinedIngest ingest = new PipelinedIngest(pipeline.numNodes, numParsers,
+                        pipeline.numThreads - numParsers);
+                ingest.setMetrics(pipeline.metrics);
+                ingest.streamEdges(pipeline.inputFile, pipeline.nodeSketches);
+            } else {
+                EdgeStream edgeStream = new EdgeStream(pipeline.numNodes);
+                edgeStream.setMetrics(pipeline.metrics);
+                edgeStream.streamEdges(pipeline.inputFile, pipeline.nodeSketches);
+            }
+        }
+    }
+
+    /***
+     * add a weighted edge stream to the certificate sketches of a one pass sparsifier
+     */
+    static class StreamSparsifyIngestStage implements Stage {
+        public String getName() {
+            return "ingest";
+        }
+
+        public void run(Pipeline pipeline) throws IOException {
+            pipeline.simpleSparsifier = new SimpleSparsifier(pipeline.numNodes, pipeline.epsilon, pipeline.seed);
+            pipeline.simpleSparsifier.setSketchOptions(pipeline.numRepetitions, pipeline.forkJoinPool);
+            pipeline.simpleSparsifier.setMetrics(pipeline.metrics);
+            pipeline.simpleSparsifier.streamEdges(pipeline.inputFile);
+        }
+    }
+
+    /***
+     * add a timestamped stream to a sliding window, with sparsifier sketches in sparsify mode
+     */
+    static class WindowIngestStage implements Stage {
+        public String getName() {
+            return "ingest";
+        }
+
+        public void run(Pipeline pipeline) throws IOException {
+            pipeline.slidingWindow = new SlidingWindow(pipeline.numNodes, pipeline.windowLength, pipeline.numSlices,
+                    pipeline.seed);
+            pipeline.slidingWindow.setSketchOptions(pipeline.numRepetitions, pipeline.forkJoinPool);
+            pipeline.slidingWindow.setMetrics(pipeline.metrics);
+            if(pipeline.mode.equals("sparsify")) {
+                pipeline.slidingWindow.enableSparsifier(pipeline.epsilon);
+            }
+            pipeline.slidingWindow.streamEdges(pipeline.inputFile);
+        }
+    }
+
+    /***
+     * find the components or the sparsifier of the window
+     */
+    static class WindowQueryStage implements Stage {
+        public String getName() {
+            return "query";
+        }
+
+        public void run(Pipeline pipeline) {
+            if(pipeline.mode.equals("sparsify")) {
+                pipeline.sparsifier = pipeline.slidingWindow.sparsify();
+            } else {
+                pipeline.components = pipeline.slidingWindow.findComponents();
+            }
+            pipeline.slidingWindow = null;
+        }
+    }
+
+    /***
+     * sketch the edges of a loaded graph
+     */
+    static class SketchStage implements Stage {
+        public String getName() {
+            return "sketch";
+        }
+
+        public void run(Pipeline pipeline) {
+            try(Metrics.Phase phase = pipeline.metrics.startPhase("sketch")) {
+                EdgeList edges = pipeline.graphStream.getEdges();
+                pipeline.nodeSketches = new NodeSketches(pipeline.numNodes, pipeline.seed, pipeline.numRepetitions);
+                for(int edge=0; edge<edges.size(); edge++) {
+                    pipeline.nodeSketches.update(edges.getSource(edge), edges.getTarget(edge), 1);
+                }
+                phase.count("sketch_updates", 2L * edges.size());
+            }
+        }
+    }
+
+    /***
+     * find the connected components from the sketches
+     */
+    static class ForestStage implements Stage {
+        public String getName() {
+            return "forest";
+        }
+
+        public void run(Pipeline pipeline) {
+            SpanningForest spanningForest = new SpanningForest(pipeline.numNodes, pipeline.seed,
+                    pipeline.forkJoinPool);
+            spanningForest.setMetrics(pipeline.metrics);
+            pipeline.components = spanningForest.findSpanningForest(pipeline.nodeSketches);
+            pipeline.nodeSketches.close();
+            pipeline.nodeSketches = null;
+        }
+    }
+
+    /***
+     * sparsify a loaded graph, or a streamed one from its sketches
+     */
+    static class SparsifyStage implements Stage {
+        public String getName() {
+            return "sparsify";
+        }
+
+        public void run(Pipeline pipeline) {
+            if(pipeline.simpleSparsifier != null) {
+                pipeline.sparsifier = pipeline.simpleSparsifier.sparsify();
+                pipeline.simpleSparsifier = null;
+                return;
+            }
+            SimpleSparsifier simpleSparsifier = new SimpleSparsifier(pipeline.graphStream, pipeline.seed);
+            simpleSparsifier.setSketchOptions(pipeline.numRepetitions, pipeline.forkJoinPool);
+            simpleSparsifier.sparsify(pipeline.epsilon);
+            pipeline.sparsifier = simpleSparsifier.getSparsifier();
+        }
+    }
+
+    /***
+     * spectrally sparsify a loaded graph
+     */
+    static class SpectralStage implements Stage {
+        public String getName() {
+            return "spectral";
+        }
+
+        public void run(Pipeline pipeline) {
+            SpectralSparsifier spectralSparsifier = new SpectralSparsifier(pipeline.graphStream, pipeline.seed,
+                    pipeline.forkJoinPool);
+            spectralSparsifier.sparsify(pipeline.epsilon);
+            pipeline.sparsifier = spectralSparsifier.getSparsifier();
+        }
+    }
+
+    /***
+     * write the sparsifier edges or the component labels, with node ids as in the input;
+     * the label of a component is the id of its lowest numbered node
+     */
+    static class WriteStage implements Stage {
+        public String getName() {
+            return "write";
+        }
+
+        public void run(Pipeline pipeline) throws IOException {
+            long numRecords = 0;
+            try(Metrics.Phase phase = pipeline.metrics.startPhase("write");
+                ResultWriter writer = ResultWriter.open(pipeline.outputFile, pipeline.binaryOutput)) {
+                if(pipeline.sparsifier != null) {
+                    EdgeList edges = pipeline.sparsifier;
+                    for(int edge=0; edge<edges.size(); edge++) {
+                        writer.writeEdge(pipeline.getNodeId(edges.getSource(edge)),
+                                pipeline.getNodeId(edges.getTarget(edge)), edges.getWeight(edge));
+                    }
+                    numRecords = edges.size();
+                } else {
+                    for(List<Integer> component: pipeline.components) {
+                        long label = pipeline.getNodeId(component.get(0));
+                        for(int node: component) {
+                            writer.writeLabel(pipeline.getNodeId(node), label);
+                        }
+                        numRecords += component.size();
+                    }
+                }
+                phase.count("records", numRecords);
+            }
+        }
+    }
+
+    /***
+     * @return id of a node number in the input: remapped ids for edge lists, id = node-1 for streams
+     */
+    private long getNodeId(int node) {
+        return streamInput ? node - 1 : graphStream.getNodeId(node);
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    List<List<Integer>> getComponents() {
+        return components;
+    }
+
+    EdgeList getSparsifier() {
+        return sparsifier;
+    }
+
+    public static void main(String args[]) {
+        Pipeline pipeline;
+        try {
+            pipeline = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: components|sparsify|spectral inputFile [--format edges|stream|window] " +
+                    "[--nodes n] [--window w] [--slices s] [--seed s] [--repetitions r] [--threads t] " +
+                    "[--epsilon e] [--output file|-] [--output-format text|binary] [--metrics file.json|file.csv]");
+            System.exit(2);
+            return;
+        }
+        try {
+            pipeline.run();
+        } catch (IOException e) {
+            System.out.println("IO error running pipeline");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.RingBuffer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ * pipelined ingest of an edge stream into node sketches, so that disk and cores are busy at the same time:
+ *   reader:   one thread reads the file into large byte chunks cut at line ends
+ *   parsers:  each turns chunks into batches of packed edges, one batch per updater
+ *   updaters: each owns a contiguous range of nodes and applies the halves of edge updates that fall on its nodes,
+ *             so no two threads ever write the same sketch and no update needs a lock
+ * Every pair of adjacent threads is linked by a channel: a RingBuffer of filled buffers and one of free buffers,
+ * holding a fixed set of buffers between them. A producer that finds no free buffer waits for its consumer, which is
+ * the backpressure, and nothing is allocated per chunk or batch.
+ * Lines are those of EdgeStream: "u v" or "+u v" inserts edge (u, v), "-u v" deletes it, '#' starts a comment, and
+ * vertex ids are 0-based and below numNodes. Updates commute, so the sketches equal those of EdgeStream exactly.
+ * The sketches must be on the heap, since a spilled store takes updates from one thread at a time.
+ */
+public class PipelinedIngest {
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_PARSER = 4;
+    private static final int BATCH_EDGES = 1 << 12;
+    private static final int BATCHES_PER_CHANNEL = 4;
+    // packed edge: first node in bits 32..62, second node in bits 0..31, bit 63 set for a deletion
+    private static final long DELETION = Long.MIN_VALUE;
+    private static final long MiB = 1024L * 1024L;
+    private int numNodes;
+    private int numParsers;
+    private int numUpdaters;
+    private Metrics metrics = new Metrics();
+    private List<Channel<Chunk>> parserInputs;
+    private List<List<Channel<Batch>>> updaterInputs;     //[parser][updater]
+    private AtomicReference<Throwable> failure;
+    private long numLines;
+    private long numInsertions;
+    private long numDeletions;
+
+    /***
+     * buffers passed between two threads
+     */
+    private static class Channel<T> {
+        final RingBuffer<T> full;
+        final RingBuffer<T> free;
+        volatile boolean closed;
+
+        Channel(List<T> buffers) {
+            full = new RingBuffer<>(buffers.size());
+            free = new RingBuffer<>(buffers.size());
+            for(T buffer: buffers) {
+                free.offer(buffer);
+            }
+        }
+    }
+
+    private static class Chunk {
+        final byte[] bytes = new byte[CHUNK_BYTES];
+        int length;
+    }
+
+    private static class Batch {
+        final long[] edges = new long[BATCH_EDGES];
+        int size;
+    }
+
+    /***
+     * time a thread spent waiting on its channels, and samples of the depth of its input queues
+     */
+    private static class StageStats {
+        long waitNanos;
+        long stalls;
+        long queueDepth;
+        long queueSamples;
+    }
+
+    /***
+     * thrown in a worker to stop it once another worker failed
+     */
+    private static class Aborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    private interface Worker {
+        void run(StageStats stats) throws IOException;
+    }
+
+    /***
+     * default constructor
+     * @param numNodes # of vertex ids in the stream
+     * @param numParsers # of parser threads
+     * @param numUpdaters # of sketch updater threads, each owning numNodes / numUpdaters nodes
+     */
+    public PipelinedIngest(int numNodes, int numParsers, int numUpdaters) {
+        if(numParsers < 1 || numUpdaters < 1) {
+            throw new IllegalArgumentException("At least 1 parser and 1 updater needed");
+        }
+        this.numNodes = numNodes;
+        this.numParsers = numParsers;
+        this.numUpdaters = numUpdaters;
+    }
+
+    /***
+     * record into the given metrics the ingest phase, and per stage - read, parse and update - a phase of the busy time
+     * of its threads with the throughput over it, the # of stalls on a full next stage and the sampled depth of its
+     * input queues
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * read the whole stream and apply every update to the given sketches
+     * @param edgeFile path of file containing the edge stream
+     * @param nodeSketches heap sketches to update, sized for numNodes
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a line isn't a valid update
+     */
+    public void streamEdges(String edgeFile, NodeSketches nodeSketches) throws IOException {
+        failure = new AtomicReference<>();
+        parserInputs = new ArrayList<>();
+        updaterInputs = new ArrayList<>();
+        for(int parser=0; parser<numParsers; parser++) {
+            List<Chunk> chunks = new ArrayList<>();
+            for(int i=0; i<CHUNKS_PER_PARSER; i++) {
+                chunks.add(new Chunk());
+            }
+            parserInputs.add(new Channel<>(chunks));
+            List<Channel<Batch>> channels = new ArrayList<>();
+            for(int updater=0; updater<numUpdaters; updater++) {
+                List<Batch> batches = new ArrayList<>();
+                for(int i=0; i<BATCHES_PER_CHANNEL; i++) {
+                    batches.add(new Batch());
+                }
+                channels.add(new Channel<>(batches));
+            }
+            updaterInputs.add(channels);
+        }
+        long[][] parserCounts = new long[numParsers][];
+        long[] updaterCounts = new long[numUpdaters];
+        try(Metrics.Phase phase = metrics.startPhase("ingest")) {
+            List<Thread> threads = new ArrayList<>();
+            threads.add(startWorker("ingest-reader", "read", stats -> read(edgeFile, stats)));
+            for(int parser=0; parser<numParsers; parser++) {
+                int id = parser;
+                threads.add(startWorker("ingest-parser-" + parser, "parse", stats ->
+                        parserCounts[id] = parse(id, stats)));
+            }
+            for(int updater=0; updater<numUpdaters; updater++) {
+                int id = updater;
+                threads.add(startWorker("ingest-updater-" + updater, "update", stats ->
+                        updaterCounts[id] = update(id, nodeSketches, stats)));
+            }
+            for(Thread thread: threads) {
+                joinUninterruptibly(thread);
+            }
+            Throwable error = failure.get();
+            if(error instanceof IOException) {
+                throw (IOException)error;
+            } else if(error instanceof RuntimeException) {
+                throw (RuntimeException)error;
+            } else if(error != null) {
+                throw new IllegalStateException("Ingest worker failed", error);
+            }
+            long startLines = numLines;
+            long startUpdates = numInsertions + numDeletions;
+            for(long[] counts: parserCounts) {
+                numLines += counts[0];
+                numInsertions += counts[1];
+                numDeletions += counts[2];
+            }
+            long numSketchUpdates = 0;
+            for(long count: updaterCounts) {
+                numSketchUpdates += count;
+            }
+            phase.count("edges", numLines - startLines);
+            phase.count("sketch_updates", numSketchUpdates);
+            metrics.count("parse.edges", numInsertions + numDeletions - startUpdates);
+            metrics.count("update.sketch_updates", numSketchUpdates);
+        }
+    }
+
+    /***
+     * start a worker thread that records its busy time - wall time less waits - as a phase of its stage
+     */
+    private Thread startWorker(String name, String stage, Worker worker) {
+        Thread thread = new Thread(() -> {
+            StageStats stats = new StageStats();
+            long startTime = System.nanoTime();
+            try {
+                worker.run(stats);
+            } catch (Aborted e) {
+                return;
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                return;
+            }
+            metrics.recordPhase(stage, System.nanoTime() - startTime - stats.waitNanos);
+            metrics.count(stage + ".stalls", stats.stalls);
+            if(stats.queueSamples > 0) {
+                // under queue., which is no phase, so the sums get no rates; their ratio is the mean depth
+                metrics.count("queue." + stage + "_depth", stats.queueDepth);
+                metrics.count("queue." + stage + "_samples", stats.queueSamples);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while(thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /***
+     * read the file into chunks that end at a line end, handing each to the first parser with a free chunk
+     */
+    private void read(String edgeFile, StageStats stats) throws IOException {
+        byte[] carry = new byte[CHUNK_BYTES];
+        int carryLength = 0;
+        long numBytes = 0;
+        int nextParser = 0;
+        try(InputStream input = new FileInputStream(edgeFile)) {
+            boolean end = false;
+            while(!end) {
+                if(failure.get() != null) {
+                    throw new Aborted();
+                }
+                // the first parser with a free chunk, trying them in turn from the one after the last
+                Chunk chunk = null;
+                int parser = nextParser;
+                for(int spins=0; chunk == null; spins++) {
+                    for(int i=0; i<numParsers && chunk == null; i++) {
+                        parser = (nextParser + i) % numParsers;
+                        chunk = parserInputs.get(parser).free.poll();
+                    }
+                    if(chunk == null) {
+                        stats.stalls += spins == 0 ? 1 : 0;
+                        waitFor(spins, stats);
+                    }
+                }
+                nextParser = (parser + 1) % numParsers;
+                System.arraycopy(carry, 0, chunk.bytes, 0, carryLength);
+                int length = carryLength;
+                int read;
+                while(length < CHUNK_BYTES && (read = input.read(chunk.bytes, length, CHUNK_BYTES - length)) > 0) {
+                    length += read;
+                }
+                numBytes += length - carryLength;
+                end = length < CHUNK_BYTES;
+                // the chunk ends after its last line end, the rest goes to the next chunk
+                int lineEnd = length;
+                if(!end) {
+                    while(lineEnd > 0 && chunk.bytes[lineEnd-1] != '\n') {
+                        lineEnd--;
+                    }
+                    if(lineEnd == 0) {
+                        throw new IOException("Line longer than " + CHUNK_BYTES + " bytes in " + edgeFile);
+                    }
+                }
+                carryLength = length - lineEnd;
+                System.arraycopy(chunk.bytes, lineEnd, carry, 0, carryLength);
+                chunk.length = lineEnd;
+                parserInputs.get(parser).full.offer(chunk);
+            }
+        } finally {
+            for(Channel<Chunk> channel: parserInputs) {
+                channel.closed = true;
+            }
+        }
+        metrics.count("read.bytes", numBytes);
+        metrics.count("ingest.bytes", numBytes);
+    }
+
+    /***
+     * parse the chunks of one parser into per-updater batches
+     * @return # of lines, insertions and deletions parsed
+     */
+    private long[] parse(int parser, StageStats stats) {
+        Channel<Chunk> input = parserInputs.get(parser);
+        List<Channel<Batch>> outputs = updaterInputs.get(parser);
+        Batch[] batches = new Batch[numUpdaters];
+        for(int updater=0; updater<numUpdaters; updater++) {
+            batches[updater] = takeFree(outputs.get(updater), stats);
+        }
+        long[] counts = new long[3];
+        try {
+            for(Chunk chunk; (chunk = takeFull(input, stats)) != null; ) {
+                if(failure.get() != null) {
+                    throw new Aborted();
+                }
+                for(int start=0; start<chunk.length; ) {
+                    int end = start;
+                    while(end < chunk.length && chunk.bytes[end] != '\n') {
+                        end++;
+                    }
+                    long edge = parseLine(chunk.bytes, start, end);
+                    counts[0]++;
+                    if(edge != -1) {
+                        counts[edge < 0 ? 2 : 1]++;
+                        int first = (int)(edge >>> 32) & Integer.MAX_VALUE;
+                        int second = (int)edge;
+                        int firstOwner = getOwner(first);
+                        int secondOwner = getOwner(second);
+                        addToBatch(batches, outputs, firstOwner, edge, stats);
+                        if(secondOwner != firstOwner) {
+                            addToBatch(batches, outputs, secondOwner, edge, stats);
+                        }
+                    }
+                    start = end + 1;
+                }
+                input.free.offer(chunk);
+            }
+            for(int updater=0; updater<numUpdaters; updater++) {
+                if(batches[updater].size > 0) {
+                    outputs.get(updater).full.offer(batches[updater]);
+                }
+            }
+        } finally {
+            for(Channel<Batch> channel: outputs) {
+                channel.closed = true;
+            }
+        }
+        return counts;
+    }
+
+    private void addToBatch(Batch[] batches, List<Channel<Batch>> outputs, int updater, long edge, StageStats stats) {
+        Batch batch = batches[updater];
+        batch.edges[batch.size++] = edge;
+        if(batch.size == BATCH_EDGES) {
+            outputs.get(updater).full.offer(batch);
+            batches[updater] = takeFree(outputs.get(updater), stats);
+        }
+    }
+
+    /***
+     * parse one line of a chunk
+     * @return packed edge between node numbers, or -1 for a comment, a blank line or a self loop
+     * @throws IllegalArgumentException if the line isn't a valid update
+     */
+    long parseLine(byte[] bytes, int start, int end) {
+        int position = skipSpaces(bytes, start, end);
+        if(position == end || bytes[position] == '#') {
+            return -1;
+        }
+        long sign = 0;
+        if(bytes[position] == '+' || bytes[position] == '-') {
+            sign = bytes[position] == '-' ? DELETION : 0;
+            position = skipSpaces(bytes, position + 1, end);
+        }
+        int firstEnd = skipDigits(bytes, position, end);
+        int secondStart = skipSpaces(bytes, firstEnd, end);
+        int secondEnd = skipDigits(bytes, secondStart, end);
+        if(firstEnd == position || secondStart == firstEnd || secondEnd == secondStart ||
+                (secondEnd < end && !isSpace(bytes[secondEnd]))) {
+            throw new IllegalArgumentException("Invalid edge update: " + new String(bytes, start, end - start,
+                    StandardCharsets.US_ASCII).trim());
+        }
+        long first = parseId(bytes, position, firstEnd);
+        long second = parseId(bytes, secondStart, secondEnd);
+        //drop self loops
+        if(first == second) {
+            return -1;
+        }
+        return sign | (first + 1) << 32 | (second + 1);
+    }
+
+    /***
+     * @return vertex id of a run of digits
+     * @throws IllegalArgumentException if it isn't below numNodes
+     */
+    private long parseId(byte[] bytes, int start, int end) {
+        long id = 0;
+        for(int position=start; position<end && id<numNodes; position++) {
+            id = id * 10 + bytes[position] - '0';
+        }
+        if(id >= numNodes) {
+            throw new IllegalArgumentException("Vertex id " + new String(bytes, start, end - start,
+                    StandardCharsets.US_ASCII) + " out of range [0, " + numNodes + ")");
+        }
+        return id;
+    }
+
+    private static int skipDigits(byte[] bytes, int position, int end) {
+        while(position < end && bytes[position] >= '0' && bytes[position] <= '9') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipSpaces(byte[] bytes, int position, int end) {
+        while(position < end && isSpace(bytes[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /***
+     * apply the edge halves that fall on one updater's nodes
+     * @return # of sketch updates, one per endpoint
+     */
+    private long update(int updater, NodeSketches nodeSketches, StageStats stats) {
+        long numSketchUpdates = 0;
+        boolean[] closed = new boolean[numParsers];
+        int numOpen = numParsers;
+        for(int spins=0; numOpen>0; ) {
+            boolean applied = false;
+            for(int parser=0; parser<numParsers; parser++) {
+                if(closed[parser]) {
+                    continue;
+                }
+                Channel<Batch> input = updaterInputs.get(parser).get(updater);
+                boolean wasClosed = input.closed;
+                Batch batch = input.full.poll();
+                if(batch == null) {
+                    // the parser closes its channels after its last batch, so a closed and empty channel is done
+                    if(wasClosed) {
+                        closed[parser] = true;
+                        numOpen--;
+                    }
+                    continue;
+                }
+                stats.queueDepth += input.full.size() + 1;
+                stats.queueSamples++;
+                for(int i=0; i<batch.size; i++) {
+                    long edge = batch.edges[i];
+                    int first = (int)(edge >>> 32) & Integer.MAX_VALUE;
+                    int second = (int)edge;
+                    long value = edge < 0 ? -1 : 1;
+                    if(getOwner(first) == updater) {
+                        nodeSketches.updateEndpoint(first, second, value);
+                        numSketchUpdates++;
+                    }
+                    if(getOwner(second) == updater) {
+                        nodeSketches.updateEndpoint(second, first, value);
+                        numSketchUpdates++;
+                    }
+                }
+                batch.size = 0;
+                input.free.offer(batch);
+                applied = true;
+            }
+            if(applied) {
+                spins = 0;
+            } else if(numOpen > 0) {
+                waitFor(spins++, stats);
+            }
+        }
+        return numSketchUpdates;
+    }
+
+    /***
+     * @return updater owning a node number; updaters own contiguous ranges of nodes
+     */
+    private int getOwner(int node) {
+        return (int)((long)(node - 1) * numUpdaters / numNodes);
+    }
+
+    /***
+     * @return next filled buffer of a channel, or null once it is closed and drained
+     */
+    private <T> T takeFull(Channel<T> channel, StageStats stats) {
+        for(int spins=0; ; spins++) {
+            boolean wasClosed = channel.closed;
+            T buffer = channel.full.poll();
+            if(buffer != null) {
+                stats.queueDepth += channel.full.size() + 1;
+                stats.queueSamples++;
+                return buffer;
+            }
+            if(wasClosed) {
+                return null;
+            }
+            waitFor(spins, stats);
+        }
+    }
+
+    /***
+     * @return a free buffer of a channel, waiting for its consumer to hand one back
+     */
+    private <T> T takeFree(Channel<T> channel, StageStats stats) {
+        T buffer = channel.free.poll();
+        if(buffer == null) {
+            stats.stalls++;
+            for(int spins=0; (buffer = channel.free.poll()) == null; spins++) {
+                waitFor(spins, stats);
+            }
+        }
+        return buffer;
+    }
+
+    /***
+     * back off while waiting on a channel: spin briefly, then yield, then park
+     * @throws Aborted if another worker failed
+     */
+    private void waitFor(int spins, StageStats stats) {
+        if(failure.get() != null) {
+            throw new Aborted();
+        }
+        long startTime = System.nanoTime();
+        if(spins < 16) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(spins < 64 ? 1000L : 50000L);
+        }
+        stats.waitNanos += System.nanoTime() - startTime;
+    }
+
+    /***
+     * @return # of filled buffers waiting right now - chunks for the parsers and batches for the updaters - e.g. for a
+     * monitor thread sampling the pipeline while it runs
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[2];
+        if(parserInputs != null) {
+            for(int parser=0; parser<numParsers; parser++) {
+                depths[0] += parserInputs.get(parser).full.size();
+                for(Channel<Batch> channel: updaterInputs.get(parser)) {
+                    depths[1] += channel.full.size();
+                }
+            }
+        }
+        return depths;
+    }
+
+    public long getInsertionCount() {
+        return numInsertions;
+    }
+
+    public long getDeletionCount() {
+        return numDeletions;
+    }
+
+    /***
+     * @return # of stream lines consumed, comments included
+     */
+    public long getLineCount() {
+        return numLines;
+    }
+
+    private static long bytesToMegabytes(long bytes) {
+        return bytes / MiB;
+    }
+
+    public static void main(String args[]) {
+        if(args.length < 2 || args.length > 5) {
+            System.err.println("Invalid number of arguments - required 2 (edge file, # vertex ids), an optional # " +
+                    "of parsers and updaters and an optional metrics file (.json or .csv), got " + args.length);
+            return;
+        }
+        int numNodes = Integer.parseInt(args[1]);
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int numParsers = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(1, numThreads / 4);
+        int numUpdaters = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(1, numThreads - numParsers);
+        PipelinedIngest ingest = new PipelinedIngest(numNodes, numParsers, numUpdaters);
+        NodeSketches nodeSketches = new NodeSketches(numNodes, 1152L);
+        try {
+            ingest.streamEdges(args[0], nodeSketches);
+        } catch (IOException e) {
+            System.out.println("IO error accessing input file");
+            e.printStackTrace();
+            return;
+        }
+        Metrics metrics = ingest.getMetrics();
+        System.out.println("Insertions: " + ingest.getInsertionCount() + ", deletions: " +
+                ingest.getDeletionCount());
+        System.out.format("Ingest: %.3f s with %d parsers and %d updaters%n", metrics.getPhaseNanos("ingest") / 1e9,
+                numParsers, numUpdaters);
+        for(String stage: new String[]{"read", "parse", "update"}) {
+            long samples = metrics.getCounter("queue." + stage + "_samples");
+            System.out.format("  %s: busy %.3f s, %d stalls, mean queue depth %.2f%n", stage,
+                    metrics.getPhaseNanos(stage) / 1e9, metrics.getCounter(stage + ".stalls"),
+                    samples == 0 ? 0 : (double)metrics.getCounter("queue." + stage + "_depth") / samples);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long memUsage = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
+        if(args.length > 4) {
+            try {
+                metrics.write(args[4]);
+            } catch (IOException e) {
+                System.out.println("IO error writing metrics file");
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package rc.graphalgos.sparsifiers;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * buffered writer of pipeline results - weighted edges and component labels.
+ * text: one "source target weight" or "node label" line per record, whole weights without a fraction;
+ * binary: fixed size big-endian records as written by DataOutputStream, (long source, long target, double weight)
+ * per edge and (long node, long label) per label, with no header.
+ */
+abstract class ResultWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final OutputStream output;
+    private final boolean closeOutput;
+
+    private ResultWriter(OutputStream output, boolean closeOutput) {
+        this.output = output;
+        this.closeOutput = closeOutput;
+    }
+
+    abstract void writeEdge(long source, long target, double weight) throws IOException;
+
+    abstract void writeLabel(long node, long label) throws IOException;
+
+    /***
+     * flush any buffered output, leaving stdout open
+     */
+    abstract void flush() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if(closeOutput) {
+            output.close();
+        }
+    }
+
+    /***
+     * open a result file
+     * @param file path of file, or - for stdout
+     * @param binary true for binary records, false for text lines
+     * @throws IOException if the file can't be created
+     */
+    static ResultWriter open(String file, boolean binary) throws IOException {
+        boolean isStdout = file.equals("-");
+        OutputStream output = isStdout ? System.out : new FileOutputStream(file);
+        return binary ? new BinaryWriter(output, !isStdout) : new TextWriter(output, !isStdout);
+    }
+
+    private static class TextWriter extends ResultWriter {
+        private final Writer writer;
+
+        TextWriter(OutputStream output, boolean closeOutput) {
+            super(output, closeOutput);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII), BUFFER_SIZE);
+        }
+
+        @Override
+        void writeEdge(long source, long target, double weight) throws IOException {
+            writer.write(Long.toString(source));
+            writer.write(' ');
+            writer.write(Long.toString(target));
+            writer.write(' ');
+            writer.write(weight == Math.rint(weight) && Math.abs(weight) < 1e15 ? Long.toString((long)weight) :
+                    Double.toString(weight));
+            writer.write('\n');
+        }
+
+        @Override
+        void writeLabel(long node, long label) throws IOException {
+            writer.write(Long.toString(node));
+            writer.write(' ');
+            writer.write(Long.toString(label));
+            writer.write('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static class BinaryWriter extends ResultWriter {
+        private final DataOutputStream data;
+
+        BinaryWriter(OutputStream output, boolean closeOutput) {
+            super(output, closeOutput);
+            data = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        }
+
+        @Override
+        void writeEdge(long source, long target, double weight) throws IOException {
+            data.writeLong(source);
+            data.writeLong(target);
+            data.writeDouble(weight);
+        }
+
+        @Override
+        void writeLabel(long node, long label) throws IOException {
+            data.writeLong(node);
+            data.writeLong(label);
+        }
+
+        @Override
+        void flush() throws IOException {
+            data.flush();
+        }
+    }
+}
@@ -1,80 +1,537 @@
 package rc.graphalgos.sparsifiers;
 
 
-import org.graphstream.graph.Edge;
+import rc.graphalgos.sparsifiers.utils.DisjointSet;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.KWiseHash;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.PairCodec;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /***
  * implementation of simple sparsifier algorithm
+ * weighted graphs are split into geometric weight classes, class c holding the edges of weight in [2^c, 2^(c+1)).
+ * Each class is sparsified on its own, with its own family of certificate sketches, and a kept edge carries its
+ * weight times its inverse sampling probability; since weights within a class differ by less than a factor of 2,
+ * every class - and so their sum - keeps its cut values within (1 +- epsilon). Unweighted graphs form the single
+ * class 0.
+ * The certificates are built from the sketches alone, and edges are added to the sketches with their weight as the
+ * sketch value, so a sampled forest edge carries its weight. A streamed graph goes through the sketches in one pass and
+ * is never stored: every edge updates the sketches of each sub-graph of its class that it is in, then is dropped. That
+ * takes the sketches of all classes, sub-graphs and forests at once, up to k (2 log(n) + 1) NodeSketches per class. A
+ * graph already loaded into a GraphStream is instead sketched one sub-graph and forest at a time from its edge arrays,
+ * which keeps a single NodeSketches in memory; with the same node numbers and seed, both give the same sparsifier.
  */
 public class SimpleSparsifier {
     private GraphStream graphStream;
-    private Random randomNumber;
+    private int numNodes;
+    private KWiseHash levelHash;
+    private long[] subgraphSizes;
+    private long seed;
+    private EdgeList sparsifier;
+    private Metrics metrics;
+    private int numRepetitions = 1;
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private int weightBits;
+    // certificate sketches of a streamed graph, per weight class [level][forest]; a level once an edge reaches it
+    private Map<Integer, NodeSketches[][]> classSketches;
+    private long[] levelCounts;
+    private int numForests;
+    private long numUpdates;
+    private static final int LEVEL_INDEPENDENCE = 4;
+    // fraction bits of a weight in the sketches, and the bits a sketch value times an edge index may take up
+    private static final int MAX_WEIGHT_BITS = 30;
+    private static final int SKETCH_VALUE_BITS = 58;
+    private static final long DEFAULT_SEED = 1152L;
     private static final long MiB = 1024L * 1024L;
 
+    /***
+     * certificate sketches of one weight class, from the sketches a streamed graph filled or built from a loaded one
+     */
+    interface CertificateSketches {
+        /***
+         * @return sketches of forest j of sub-graph Gi, a copy the caller may change, or null past the deepest Gi
+         */
+        NodeSketches get(int level, int forest);
+    }
+
     /***
      * default constructor
      * @param graph_name name of input graph
      * @param graph_file file containing graph to be sparsified
      */
     protected SimpleSparsifier(String graph_name, String graph_file) {
-        graphStream = new GraphStream(graph_name);
+        this(graph_name, graph_file, DEFAULT_SEED);
+    }
+
+    /***
+     * constructor with an explicit seed for the edge level hash
+     * @param graph_name name of input graph
+     * @param graph_file file containing graph to be sparsified
+     * @param seed seed of the edge level hash; equal seeds give equal subgraphs on any machine
+     */
+    protected SimpleSparsifier(String graph_name, String graph_file, long seed) {
+        this(new GraphStream(graph_name), seed);
         graphStream.buildGraph(graph_file);
-        randomNumber = new Random(1152);
+        numNodes = graphStream.getNodeCount();
+        weightBits = getWeightBits(numNodes);
+    }
+
+    /***
+     * constructor for a graph that is already loaded; metrics are recorded into the graph's metrics
+     * @param graphStream graph to be sparsified
+     * @param seed seed of the edge level hash
+     */
+    SimpleSparsifier(GraphStream graphStream, long seed) {
+        this.graphStream = graphStream;
+        this.seed = seed;
+        metrics = graphStream.getMetrics();
+        levelHash = createLevelHash(seed);
+        numNodes = graphStream.getNodeCount();
+        weightBits = getWeightBits(numNodes);
+    }
+
+    /***
+     * constructor for a one pass sparsifier of an edge stream, fed by addEdge or streamEdges and built by sparsify()
+     * @param numNodes # of vertex ids in the stream
+     * @param epsilon approximation parameter; k = log(n) / epsilon^2
+     * @param seed seed of the edge level hash and the certificate sketches
+     */
+    public SimpleSparsifier(int numNodes, double epsilon, long seed) {
+        this.numNodes = numNodes;
+        this.seed = seed;
+        metrics = new Metrics();
+        levelHash = createLevelHash(seed);
+        weightBits = getWeightBits(numNodes);
+        numForests = getForestCount(numNodes, epsilon);
+        classSketches = new TreeMap<>();
+        levelCounts = new long[getLevelCount(numNodes)];
+    }
+
+    /***
+     * set the # of repetitions of the certificate sketches and the pool their spanning forests sample on
+     */
+    void setSketchOptions(int numRepetitions, ForkJoinPool forkJoinPool) {
+        if(classSketches != null && !classSketches.isEmpty()) {
+            throw new IllegalStateException("Sketch options can't change once the sketches hold edges");
+        }
+        this.numRepetitions = numRepetitions;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /***
+     * deepest sub-graph of an edge - the number of trailing ones in a seeded hash of the edge. Each bit of the hash
+     * acts as one of the uniform hash functions h: E -> {0, 1}, so the edge is in Gi, i.e. h_j(edge) = 1 for all j<=i,
+     * with probability 2^-i
+     * @param node1 first node of edge
+     * @param node2 second node of edge
+     * @return level of edge; the edge belongs to G0..G(level)
+     */
+    int getEdgeLevel(int node1, int node2) {
+        return getEdgeLevel(levelHash, node1, node2);
     }
 
     /***
-     * uniform hash function - h: E -> {0, 1}; map each edge to 0 or 1 uniformly
-     * @param edge edge whose hash value should be computed
-     * TODO compute hash value using the input edge
+     * level of an edge under a given level hash, e.g. one built like this sparsifier's from its seed
      */
-    private int getUniformHashValue(String edge) {
-        float prob = randomNumber.nextFloat();
-        // return 1 if random number is > 0.5, 0 otherwise
-        return prob>=0.5?1:0;
+    static int getEdgeLevel(KWiseHash levelHash, int node1, int node2) {
+        long pair = ((long)Math.min(node1, node2) << 32) | Math.max(node1, node2);
+        return Long.numberOfTrailingZeros(~levelHash.hash(pair));
+    }
+
+    /***
+     * @return hash whose trailing ones give the level of an edge, as used by a sparsifier with the given seed
+     */
+    static KWiseHash createLevelHash(long seed) {
+        return new KWiseHash(LEVEL_INDEPENDENCE, new Random(seed));
+    }
+
+    /***
+     * @return # of sub-graphs G0..G(maxIter) sparsified for a graph of numNodes nodes, with maxIter = 2 log(n)
+     */
+    static int getLevelCount(int numNodes) {
+        return 2 * (int)Math.ceil(Math.log(numNodes)/Math.log(2.0d)) + 1;
+    }
+
+    /***
+     * @return # of forests k = log(n) / epsilon^2 in the certificate of every sub-graph
+     */
+    static int getForestCount(int numNodes, double epsilon) {
+        return (int)Math.ceil(Math.log(numNodes)/Math.log(2.0d) / (epsilon * epsilon));
+    }
+
+    /***
+     * # of fraction bits a weight keeps in the sketches, as many as the index sums of the sketches leave room for: an
+     * isolated edge's value times its index must fit into a long, with room for a few parallel edges
+     */
+    static int getWeightBits(int numNodes) {
+        int indexBits = 64 - Long.numberOfLeadingZeros(PairCodec.getPairCount(numNodes));
+        return Math.max(0, Math.min(MAX_WEIGHT_BITS, SKETCH_VALUE_BITS - 1 - indexBits));
+    }
+
+    /***
+     * @return weight of class c as a sketch value, weight * 2^(weightBits - c), which is in [2^weightBits,
+     * 2^(weightBits+1)]
+     */
+    long toSketchValue(double weight, int weightClass) {
+        return Math.round(Math.scalb(weight, weightBits - weightClass));
+    }
+
+    private double toWeight(long value, int weightClass) {
+        return Math.scalb((double)value, weightClass - weightBits);
+    }
+
+    /***
+     * geometric weight class of an edge, the exponent of its weight: class c holds weights in [2^c, 2^(c+1))
+     */
+    static int getWeightClass(double weight) {
+        return Math.getExponent(weight);
+    }
+
+    /***
+     * check membership of an edge in sub-graph Gi in O(1)
+     */
+    boolean isInSubgraph(int node1, int node2, int subgraph) {
+        return getEdgeLevel(node1, node2) >= subgraph;
     }
 
     /***
      * find the minimum cut of given graph
+     * sub-graph membership is derived from each edge's level, nothing is stored per edge
      * @param maxIter total number of iterations
      */
     private void findMinCut(int maxIter) {
-        for(int iter=1; iter <=maxIter; iter++) {
-            for(Edge edge: graphStream.graph.getEdgeSet()) {
-                int hashProd = 1;
-                // add an attribute corresponding to hash value generated at each iteration
-                edge.setAttribute(Integer.toString(iter), getUniformHashValue(edge.getId()));
-                // add this edge to sub-graph Gi if for all j<=i, getHashValue(edge) = 1
-                // an edge attribute is added denoting membership in each sub-graph Gi
-                for(int i=1; i<=iter; i++) {
-                    hashProd *= (Integer)edge.getAttribute(Integer.toString(i));
+        long[] levelCounts = new long[maxIter+1];
+        EdgeList edges = graphStream.getEdges();
+        for(int edge=0; edge<edges.size(); edge++) {
+            levelCounts[Math.min(getEdgeLevel(edges.getSource(edge), edges.getTarget(edge)), maxIter)]++;
+        }
+        subgraphSizes = getSubgraphSizes(levelCounts);
+    }
+
+    /***
+     * @return # of edges in each sub-graph Gi, from the # of edges whose deepest sub-graph is Gi
+     */
+    private static long[] getSubgraphSizes(long[] levelCounts) {
+        // an edge of level l is in G0..Gl, so |Gi| is the count of edges with level >= i
+        long[] subgraphSizes = new long[levelCounts.length];
+        long size = 0;
+        for(int i=levelCounts.length-1; i>=0; i--) {
+            size += levelCounts[i];
+            subgraphSizes[i] = size;
+        }
+        return subgraphSizes;
+    }
+
+    /***
+     * @return # of edges in each sub-graph Gi, i = 0..maxIter, as of the last sparsify()
+     */
+    long[] getSubgraphSizes() {
+        return subgraphSizes;
+    }
+
+    /***
+     * determine k-edge connectivity of given graph
+     * builds a k-edge-connectivity certificate of sub-graph Gi from k spanning forests F1..Fk, where Fj spans Gi minus
+     * F1..F(j-1). Forest j is found from its own independent node sketches of Gi, from which the edges of the earlier
+     * forests are subtracted with their sketch values by linearity - the sub-graph itself is never materialized.
+     * @param subgraph index i of sub-graph Gi
+     * @param k # of forests in certificate
+     * @param certificateSketches sketches of the weight class Gi is taken from
+     * @param forestEdges filled with the edges of each forest; forests after an empty one are omitted
+     * @param forestValues filled with the sketch values of the forest edges
+     * @return connectivity of each forest, one disjoint-set per forest
+     */
+    DisjointSet[] findKEdgeConnectivity(int subgraph, int k, CertificateSketches certificateSketches,
+                                                List<long[]> forestEdges, List<long[]> forestValues) {
+        List<DisjointSet> forests = new ArrayList<>();
+        long numSubtracted = 0;
+        for(int forest=0; forest<k; forest++) {
+            NodeSketches residual = certificateSketches.get(subgraph, forest);
+            if(residual == null) {
+                break;
+            }
+            for(int earlier=0; earlier<forestEdges.size(); earlier++) {
+                long[] edges = forestEdges.get(earlier);
+                long[] values = forestValues.get(earlier);
+                for(int edge=0; edge<edges.length; edge++) {
+                    int[] nodes = PairCodec.decode(edges[edge], numNodes);
+                    residual.update(nodes[0], nodes[1], -values[edge]);
                 }
-                if(hashProd == 1) {
-                    edge.setAttribute("inG" + iter, true);
-                } else {
-                    edge.setAttribute("inG" + iter, false);
+                numSubtracted += edges.length;
+            }
+            SpanningForest spanningForest = new SpanningForest(numNodes, residual.getSeed(), forkJoinPool);
+            spanningForest.setMetrics(metrics);
+            spanningForest.findSpanningForest(residual);
+            residual.close();
+            long[] edges = spanningForest.getForestEdges();
+            if(edges.length == 0) {
+                // nothing left of Gi, later forests would be empty too
+                break;
+            }
+            DisjointSet components = new DisjointSet(numNodes);
+            for(long edgeIndex: edges) {
+                int[] nodes = PairCodec.decode(edgeIndex, numNodes);
+                components.union(nodes[0]-1, nodes[1]-1);
+            }
+            forests.add(components);
+            forestEdges.add(edges);
+            forestValues.add(spanningForest.getForestValues());
+        }
+        // an edge update touches the sketches of both ends
+        metrics.count("sparsify.sketch_updates", 2 * numSubtracted);
+        return forests.toArray(new DisjointSet[0]);
+    }
+
+    /***
+     * lower bound on the connectivity of an edge's endpoints in a certificate: the forests are edge disjoint, so
+     * being connected in each of the first c forests gives c edge disjoint paths
+     */
+    static int getConnectivity(DisjointSet[] forests, int firstNode, int secondNode) {
+        int connectivity = 0;
+        while(connectivity < forests.length && forests[connectivity].isConnected(firstNode-1, secondNode-1)) {
+            connectivity++;
+        }
+        return connectivity;
+    }
+
+    /***
+     * add a weighted edge of a streamed graph to the certificate sketches of its weight class, in every sub-graph it is
+     * in; the edge itself isn't kept
+     * @param node1 first node of edge, a node number starting at 1
+     * @param node2 second node of edge
+     * @param weight weight of edge; self loops and edges of weight <= 0 are dropped, as GraphStream drops them
+     */
+    public void addEdge(int node1, int node2, double weight) {
+        checkStreamed();
+        if(node1 == node2 || !(weight > 0)) {
+            return;
+        }
+        int weightClass = getWeightClass(weight);
+        // an edge of level l is in G0..Gl; edges deeper than the last sub-graph are sampled into it
+        int edgeLevel = Math.min(getEdgeLevel(node1, node2), levelCounts.length-1);
+        long value = toSketchValue(weight, weightClass);
+        NodeSketches[][] levels = classSketches.computeIfAbsent(weightClass,
+                c -> new NodeSketches[levelCounts.length][]);
+        for(int level=0; level<=edgeLevel; level++) {
+            if(levels[level] == null) {
+                long[] forestSeeds = getForestSeeds(level, weightClass, numForests);
+                levels[level] = new NodeSketches[numForests];
+                for(int forest=0; forest<numForests; forest++) {
+                    levels[level][forest] = new NodeSketches(numNodes, forestSeeds[forest], numRepetitions);
                 }
             }
+            for(NodeSketches nodeSketches: levels[level]) {
+                nodeSketches.update(node1, node2, value);
+            }
         }
+        levelCounts[edgeLevel]++;
+        numUpdates += (long)(edgeLevel + 1) * numForests;
     }
 
     /***
-     * determine k-edge connectivity of given graph
+     * read a weighted edge list in one pass and add every edge; vertex ids are 0-based and must be below numNodes, as
+     * in EdgeStream, and map to node numbers id+1
+     * @param edgeFile path of edge list file, with an optional weight column
+     * @throws IOException if the file can't be read
      */
-    private void findKEdgeConnectivity() {
+    public void streamEdges(String edgeFile) throws IOException {
+        checkStreamed();
+        long startUpdates = numUpdates;
+        EdgeListReader edgeListReader = new EdgeListReader();
+        try(Metrics.Phase phase = metrics.startPhase("ingest")) {
+            edgeListReader.read(edgeFile, (long source, long target, double weight) ->
+                    addEdge(toNodeNumber(source), toNodeNumber(target), weight));
+            phase.count("bytes", edgeListReader.getByteCount());
+            phase.count("edges", edgeListReader.getEdgeCount());
+            // an edge update touches the sketches of both ends
+            phase.count("sketch_updates", 2 * (numUpdates - startUpdates));
+        }
+    }
+
+    private int toNodeNumber(long vertexId) {
+        if(vertexId < 0 || vertexId >= numNodes) {
+            throw new IllegalArgumentException("Vertex id " + vertexId + " out of range [0, " + numNodes + ")");
+        }
+        return (int)vertexId + 1;
+    }
 
+    private void checkStreamed() {
+        if(classSketches == null) {
+            throw new IllegalStateException("Only a sparsifier of a streamed graph takes edges and sparsify()");
+        }
+    }
+
+    /***
+     * sparsify a streamed graph from its certificate sketches, as sparsify(epsilon) does for a loaded graph
+     * @return weighted edges of the sparsifier
+     */
+    public EdgeList sparsify() {
+        checkStreamed();
+        try(Metrics.Phase phase = metrics.startPhase("sparsify")) {
+            subgraphSizes = getSubgraphSizes(levelCounts);
+            sparsifier = new EdgeList();
+            for(Map.Entry<Integer, NodeSketches[][]> entry: classSketches.entrySet()) {
+                NodeSketches[][] levels = entry.getValue();
+                addClass(entry.getKey(), numForests, (level, forest) ->
+                        level >= levels.length || levels[level] == null ? null : levels[level][forest].copy(),
+                        sparsifier);
+            }
+            phase.count("kept_edges", sparsifier.size());
+        }
+        return sparsifier;
     }
 
     /***
      * sparsify given graph - return an approximate sparsification of input graph
+     * an edge is kept with its weight times 2^i, where Gi is the first sub-graph in which its connectivity within its
+     * weight class drops below k, if it was sampled into Gi; edges that are still well connected in every sub-graph
+     * they reach are dropped
+     * @param epsilon approximation parameter; k = log(n) / epsilon^2
      */
-    private void sparsify() {
+    void sparsify(double epsilon) {
+        if(graphStream == null) {
+            throw new IllegalStateException("A streamed graph is sparsified with the epsilon it was built for");
+        }
+        try(Metrics.Phase phase = metrics.startPhase("sparsify")) {
+            sparsifyClasses(epsilon);
+            phase.count("kept_edges", sparsifier.size());
+        }
+    }
+
+    private void sparsifyClasses(double epsilon) {
         // max iterations is set to 2*log(numNodes)
-        int numNodes = graphStream.graph.getNodeCount();
-        int maxIter = 2 * (int)Math.ceil(Math.log(numNodes)/Math.log(2.0d));
+        int maxIter = getLevelCount(numNodes) - 1;
+        int k = getForestCount(numNodes, epsilon);
         // run the MinCut algorithm
         findMinCut(maxIter);
+        sparsifier = new EdgeList();
+        EdgeList edges = graphStream.getEdges();
+        // weight classes present, each with the deepest sub-graph one of its edges reaches
+        Map<Integer, Integer> classLevels = new TreeMap<>();
+        for(int edge=0; edge<edges.size(); edge++) {
+            int level = Math.min(getEdgeLevel(edges.getSource(edge), edges.getTarget(edge)), maxIter);
+            classLevels.merge(getWeightClass(edges.getWeight(edge)), level, Math::max);
+        }
+        for(Map.Entry<Integer, Integer> classLevel: classLevels.entrySet()) {
+            int weightClass = classLevel.getKey();
+            int deepestLevel = classLevel.getValue();
+            addClass(weightClass, k, (level, forest) -> level > deepestLevel ? null :
+                    buildCertificateSketches(level, getForestSeeds(level, weightClass, k)[forest], weightClass),
+                    sparsifier);
+        }
+    }
+
+    /***
+     * sketches of sub-graph Gi of one weight class of the loaded graph, with the given seed
+     */
+    private NodeSketches buildCertificateSketches(int subgraph, long forestSeed, int weightClass) {
+        NodeSketches nodeSketches = new NodeSketches(numNodes, forestSeed, numRepetitions);
+        EdgeList edges = graphStream.getEdges();
+        long numUpdates = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            int firstNode = edges.getSource(edge);
+            int secondNode = edges.getTarget(edge);
+            double weight = edges.getWeight(edge);
+            if(isInSubgraph(firstNode, secondNode, subgraph) && getWeightClass(weight) == weightClass) {
+                nodeSketches.update(firstNode, secondNode, toSketchValue(weight, weightClass));
+                numUpdates++;
+            }
+        }
+        metrics.count("sparsify.sketch_updates", 2 * numUpdates);
+        return nodeSketches;
+    }
+
+    /***
+     * seeds of the k forests of sub-graph Gi of a weight class, the same for a streamed and a loaded graph
+     */
+    long[] getForestSeeds(int subgraph, int weightClass, int k) {
+        Random forestSeeds = new Random(seed + subgraph + ((long)weightClass << 32));
+        long[] seeds = new long[k];
+        for(int forest=0; forest<k; forest++) {
+            seeds[forest] = forestSeeds.nextLong();
+        }
+        return seeds;
+    }
+
+    /***
+     * add the sparsifier edges of one weight class, from its certificates alone: a certificate edge is kept at the
+     * first Gi in which it is connected in fewer than k forests. Every edge of Gi with connectivity below k is in Gi's
+     * certificate - otherwise each forest would connect its ends - so no other edge of the graph is needed, and the
+     * weight of a kept edge is read from its sketch value
+     * @param kept sparsifier the kept edges are added to
+     */
+    void addClass(int weightClass, int k, CertificateSketches certificateSketches, EdgeList kept) {
+        Set<Long> decided = new HashSet<>();
+        for(int subgraph=0; ; subgraph++) {
+            List<long[]> forestEdges = new ArrayList<>();
+            List<long[]> forestValues = new ArrayList<>();
+            DisjointSet[] forests = findKEdgeConnectivity(subgraph, k, certificateSketches, forestEdges,
+                    forestValues);
+            if(forests.length == 0) {
+                // deeper sub-graphs are contained in this one, so they are empty as well
+                return;
+            }
+            for(int forest=0; forest<forests.length; forest++) {
+                long[] edges = forestEdges.get(forest);
+                long[] values = forestValues.get(forest);
+                for(int edge=0; edge<edges.length; edge++) {
+                    int[] nodes = PairCodec.decode(edges[edge], numNodes);
+                    if(!decided.contains(edges[edge]) && getConnectivity(forests, nodes[0], nodes[1]) < k) {
+                        kept.add(nodes[0], nodes[1], toWeight(values[edge], weightClass) * Math.pow(2, subgraph));
+                        decided.add(edges[edge]);
+                    }
+                }
+            }
+        }
+    }
+
+    /***
+     * @return weighted edges of the sparsifier built by the last sparsify()
+     */
+    EdgeList getSparsifier() {
+        return sparsifier;
+    }
+
+    /***
+     * @return metrics of loading and sparsifying the graph - load, sparsify and spanning_forest phases, sketch updates
+     * and the rounds of the last spanning forest
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * record the ingest, sparsify and spanning_forest phases of a streamed graph into the given metrics
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    GraphStream getGraphStream() {
+        return graphStream;
+    }
+
+    /***
+     * @return space taken by the certificate sketches of a streamed graph
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        if(classSketches != null) {
+            for(NodeSketches[][] levels: classSketches.values()) {
+                for(int level=0; level<levels.length && levels[level] != null; level++) {
+                    for(NodeSketches nodeSketches: levels[level]) {
+                        size += nodeSketches.getSizeInBytes();
+                    }
+                }
+            }
+        }
+        return size;
     }
 
     private static long bytesToMegabytes(long bytes) {
@@ -82,15 +539,33 @@ public class SimpleSparsifier {
     }
 
     public static void main(String args[]) {
-        if(args.length != 2) {
-            System.err.println("Invalid number of arguments - required 2, got " + args.length);
+        if(args.length < 2) {
+            System.err.println("Invalid number of arguments - required 2 (graph name, graph file), an optional " +
+                    "epsilon and an optional metrics file (.json or .csv), got " + args.length);
+            return;
         }
         SimpleSparsifier simpleSparsifier = new SimpleSparsifier(args[0], args[1]);
-        simpleSparsifier.sparsify();
+        simpleSparsifier.sparsify(args.length > 2 ? Double.parseDouble(args[2]) : 1.0d);
+        long[] subgraphSizes = simpleSparsifier.getSubgraphSizes();
+        for(int i=0; i<subgraphSizes.length; i++) {
+            System.out.println("G" + i + ": " + subgraphSizes[i] + " edges");
+        }
+        EdgeList sparsifier = simpleSparsifier.getSparsifier();
+        System.out.println("Sparsifier: " + sparsifier.size() + " edges of total weight " +
+                sparsifier.getTotalWeight() + ", input: " + subgraphSizes[0] + " edges of total weight " +
+                simpleSparsifier.graphStream.getEdges().getTotalWeight());
         Runtime runtime = Runtime.getRuntime();
         runtime.gc();
         long memUsage = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
+        if(args.length > 3) {
+            try {
+                simpleSparsifier.getMetrics().write(args[3]);
+            } catch (IOException e) {
+                System.out.println("IO error writing metrics file");
+                e.printStackTrace();
+            }
+        }
 //        simpleSparsifier.graphStream.printGraphStats();
     }
 }
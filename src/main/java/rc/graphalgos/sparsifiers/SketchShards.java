@@ -0,0 +1,154 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.RoundStats;
+import rc.graphalgos.sparsifiers.utils.SketchCheckpoint;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * sharded sketching of an edge stream. Workers sketch disjoint byte ranges of the edge file with the same seed and
+ * write their partial node sketches as checkpoints; since sketches are linear, the coordinator adds the partial
+ * sketches up to the sketches of the whole stream and runs the Boruvka rounds on the sum. Workers share no state, so
+ * they may run as separate processes, on one machine or many.
+ * Usage:
+ *   worker edgeFile numVertexIds shard numShards outFile [seed]
+ *   coordinator numVertexIds shardFile... (all shard files of one run)
+ *   run edgeFile numVertexIds numShards workDir [seed] - launches the workers as local processes, then coordinates
+ */
+public class SketchShards {
+    private static final long DEFAULT_SEED = 1152L;
+    private long numInsertions;
+    private long numDeletions;
+
+    /***
+     * sketch one shard of an edge stream and write the partial sketches
+     * @param edgeFile path of file containing the edge stream
+     * @param numNodes # of vertex ids in the stream
+     * @param seed sketch seed, shared by all shards
+     * @param shard shard number, from 0 to numShards-1
+     * @param numShards # of shards
+     * @param shardFile path the partial sketches are written to
+     * @throws IOException if the edge file can't be read, in which case no partial sketches are written, or if they
+     * can't be written
+     */
+    public static void sketchShard(String edgeFile, int numNodes, long seed, int shard, int numShards,
+                                   String shardFile) throws IOException {
+        EdgeStream edgeStream = new EdgeStream(numNodes);
+        NodeSketches nodeSketches = new NodeSketches(numNodes, seed);
+        edgeStream.streamShard(edgeFile, nodeSketches, shard, numShards);
+        new SketchCheckpoint(nodeSketches, edgeStream.getLineCount(), edgeStream.getInsertionCount(),
+                edgeStream.getDeletionCount()).write(shardFile);
+    }
+
+    /***
+     * add up the partial sketches of all shards
+     * @param shardFiles paths of the partial sketches
+     * @return sketches of the whole stream
+     * @throws IOException if a shard can't be read
+     * @throws IllegalArgumentException if the shards were built for different graphs or seeds
+     */
+    public NodeSketches mergeShards(List<String> shardFiles) throws IOException {
+        NodeSketches merged = null;
+        numInsertions = 0;
+        numDeletions = 0;
+        for(String shardFile: shardFiles) {
+            SketchCheckpoint shard = SketchCheckpoint.read(shardFile);
+            if(merged == null) {
+                merged = shard.getNodeSketches();
+            } else {
+                merged.add(shard.getNodeSketches());
+            }
+            numInsertions += shard.getInsertionCount();
+            numDeletions += shard.getDeletionCount();
+        }
+        return merged;
+    }
+
+    /***
+     * run all shards as local worker processes and wait for them
+     * @return paths of the partial sketches, in shard order
+     * @throws IOException if a worker can't be started or fails
+     */
+    List<String> runWorkers(String edgeFile, int numNodes, long seed, int numShards, String workDir)
+            throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> workers = new ArrayList<>();
+        List<String> shardFiles = new ArrayList<>();
+        for(int shard=0; shard<numShards; shard++) {
+            String shardFile = new File(workDir, "shard-" + shard + ".sketch").getPath();
+            shardFiles.add(shardFile);
+            workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    SketchShards.class.getName(), "worker", edgeFile, Integer.toString(numNodes),
+                    Integer.toString(shard), Integer.toString(numShards), shardFile, Long.toString(seed))
+                    .inheritIO().start());
+        }
+        for(int shard=0; shard<numShards; shard++) {
+            if(workers.get(shard).waitFor() != 0) {
+                throw new IOException("Worker for shard " + shard + " failed");
+            }
+        }
+        return shardFiles;
+    }
+
+    /***
+     * merge the shards and find the connected components of the stream
+     */
+    void coordinate(int numNodes, List<String> shardFiles) throws IOException {
+        NodeSketches nodeSketches = mergeShards(shardFiles);
+        if(nodeSketches.getNodeCount() != numNodes) {
+            throw new IOException("Shards have " + nodeSketches.getNodeCount() + " nodes, expected " + numNodes);
+        }
+        System.out.println("Shards: " + shardFiles.size() + ", insertions: " + numInsertions + ", deletions: " +
+                numDeletions);
+        SpanningForest spanningForest = new SpanningForest(numNodes, nodeSketches.getSeed());
+        List<List<Integer>> components = spanningForest.findSpanningForest(nodeSketches);
+        System.out.println("Connected components: " + components.size());
+        for(RoundStats stats: spanningForest.getRoundStats()) {
+            System.out.println(stats);
+        }
+    }
+
+    public long getInsertionCount() {
+        return numInsertions;
+    }
+
+    public long getDeletionCount() {
+        return numDeletions;
+    }
+
+    public static void main(String args[]) {
+        try {
+            if(args.length >= 6 && args[0].equals("worker")) {
+                long seed = args.length > 6 ? Long.parseLong(args[6]) : DEFAULT_SEED;
+                sketchShard(args[1], Integer.parseInt(args[2]), seed, Integer.parseInt(args[3]),
+                        Integer.parseInt(args[4]), args[5]);
+            } else if(args.length >= 3 && args[0].equals("coordinator")) {
+                List<String> shardFiles = new ArrayList<>();
+                for(int i=2; i<args.length; i++) {
+                    shardFiles.add(args[i]);
+                }
+                new SketchShards().coordinate(Integer.parseInt(args[1]), shardFiles);
+            } else if(args.length >= 5 && args[0].equals("run")) {
+                long seed = args.length > 5 ? Long.parseLong(args[5]) : DEFAULT_SEED;
+                int numNodes = Integer.parseInt(args[2]);
+                SketchShards sketchShards = new SketchShards();
+                List<String> shardFiles = sketchShards.runWorkers(args[1], numNodes, seed, Integer.parseInt(args[3]),
+                        args[4]);
+                sketchShards.coordinate(numNodes, shardFiles);
+            } else {
+                System.err.println("Usage: worker edgeFile numVertexIds shard numShards outFile [seed] | " +
+                        "coordinator numVertexIds shardFile... | run edgeFile numVertexIds numShards workDir [seed]");
+                System.exit(2);
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Sharded sketching failed");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
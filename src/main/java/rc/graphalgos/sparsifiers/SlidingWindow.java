@@ -0,0 +1,443 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * sliding window over a timestamped edge stream of "u v t" lines, t being an integer time such as epoch seconds.
+ * The window is split into numSlices slices of equal length, so the window length must be a multiple of numSlices.
+ * Each slice keeps the sketch deltas of the edges that arrived in it, and the window keeps their sum; sketches are
+ * linear, so when a slice falls out of the window its deltas are subtracted from the sum and it is cleared for reuse
+ * as the newest slice. Memory is numSlices+1 sets of node sketches however many edges pass through, and queries run
+ * on the sum at any time, without a rebuild.
+ * Edges expire a slice at a time: the window holds the current slice and the numSlices-1 before it, so an edge stays
+ * in it for between (numSlices-1) and numSlices slice lengths. Edges may arrive out of order as long as their slice is
+ * still in the window; older ones are dropped.
+ * Besides the connectivity sketches, the window can keep the certificate sketches of SimpleSparsifier - k forests for
+ * each of the nested sub-graphs G0, G1, ... - to build a cut sparsifier of the window from sketches alone. The window
+ * is a multigraph: an edge that arrives twice is two parallel edges for connectivity, but one sparsifier edge, which
+ * carries the weight of both.
+ * Vertex ids are 0-based and must be below numNodes, as in EdgeStream; they map to node numbers id+1.
+ */
+public class SlidingWindow {
+    private static final long DEFAULT_SEED = 1152L;
+    private static final long MiB = 1024L * 1024L;
+    private int numNodes;
+    private long sliceLength;
+    private int numSlices;
+    private long seed;
+    private int numRepetitions = 1;
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private Metrics metrics = new Metrics();
+    private SliceHandler sliceHandler;
+    // sketch families: connectivity sketches first, then numForests per sparsifier level
+    private long[] familySeeds = new long[0];
+    private int numLevels;
+    private int numForests;
+    private SimpleSparsifier simpleSparsifier;    //level hash, forest seeds and certificates of the sparsifier
+    private NodeSketches[][] slices;    //ring of slice deltas, slice s at position s mod numSlices
+    private NodeSketches[] window;      //sum of the live slices
+    private long[] sliceEdges;
+    private long currentSlice;
+    private long numLines;
+    private long numUpdates;
+    private long numDropped;
+    private long numExpiredSlices;
+
+    /***
+     * called when the stream moves past a slice, before the slices that fall out of the window expire
+     */
+    public interface SliceHandler {
+        void sliceEnded(SlidingWindow window, long slice);
+    }
+
+    /***
+     * default constructor
+     * @param numNodes # of vertex ids in the stream
+     * @param windowLength length of the window in time units, a positive multiple of numSlices
+     * @param numSlices # of slices the window is split into; more slices expire edges more precisely
+     * @param seed seed of all sketches
+     * @throws IllegalArgumentException if the window can't be split into numSlices slices of equal length
+     */
+    public SlidingWindow(int numNodes, long windowLength, int numSlices, long seed) {
+        if(numSlices < 1 || windowLength < numSlices || windowLength % numSlices != 0) {
+            throw new IllegalArgumentException("Can't split a window of length " + windowLength + " into " +
+                    numSlices + " slices of equal length");
+        }
+        this.numNodes = numNodes;
+        this.numSlices = numSlices;
+        this.seed = seed;
+        sliceLength = windowLength / numSlices;
+    }
+
+    /***
+     * set the # of repetitions of every sketch and the pool queries sample on; only before the first edge
+     */
+    public void setSketchOptions(int numRepetitions, ForkJoinPool forkJoinPool) {
+        checkNotStarted();
+        this.numRepetitions = numRepetitions;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /***
+     * keep the certificate sketches of a cut sparsifier with the sub-graphs of SimpleSparsifier, 2 log(n) + 1 of them;
+     * only before the first edge
+     * @param epsilon approximation parameter; every sub-graph gets k = log(n) / epsilon^2 forests
+     */
+    public void enableSparsifier(double epsilon) {
+        enableSparsifier(epsilon, SimpleSparsifier.getLevelCount(numNodes));
+    }
+
+    /***
+     * keep the certificate sketches of a cut sparsifier with fewer sub-graphs, which saves space when the window never
+     * holds more than about k n 2^numLevels edges; edges of deeper levels are sampled into the last sub-graph
+     * @param epsilon approximation parameter; every sub-graph gets k = log(n) / epsilon^2 forests
+     * @param numLevels # of sub-graphs G0..G(numLevels-1)
+     */
+    public void enableSparsifier(double epsilon, int numLevels) {
+        checkNotStarted();
+        this.numLevels = numLevels;
+        numForests = SimpleSparsifier.getForestCount(numNodes, epsilon);
+        simpleSparsifier = new SimpleSparsifier(numNodes, epsilon, seed);
+    }
+
+    /***
+     * @param sliceHandler handler called at every slice boundary, e.g. to query the window as of that slice's end
+     */
+    public void setSliceHandler(SliceHandler sliceHandler) {
+        this.sliceHandler = sliceHandler;
+    }
+
+    /***
+     * record the ingest, spanning_forest and sparsify phases and the window counters into the given metrics
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private void checkNotStarted() {
+        if(window != null) {
+            throw new IllegalStateException("Sketch options can't change once the window holds sketches");
+        }
+    }
+
+    /***
+     * allocate the sketches of every slice and of the window; the first slice is that of the given time
+     */
+    private void start(long slice) {
+        familySeeds = new long[1 + numLevels * numForests];
+        familySeeds[0] = seed;
+        for(int level=0; level<numLevels; level++) {
+            // the window's edges are the unit weight class 0 of SimpleSparsifier
+            long[] forestSeeds = simpleSparsifier.getForestSeeds(level, 0, numForests);
+            for(int forest=0; forest<numForests; forest++) {
+                familySeeds[getFamily(level, forest)] = forestSeeds[forest];
+            }
+        }
+        slices = new NodeSketches[numSlices][familySeeds.length];
+        window = new NodeSketches[familySeeds.length];
+        for(int family=0; family<familySeeds.length; family++) {
+            for(int position=0; position<numSlices; position++) {
+                slices[position][family] = new NodeSketches(numNodes, familySeeds[family], numRepetitions);
+            }
+            window[family] = new NodeSketches(numNodes, familySeeds[family], numRepetitions);
+        }
+        sliceEdges = new long[numSlices];
+        currentSlice = slice;
+    }
+
+    private int getFamily(int level, int forest) {
+        return 1 + level * numForests + forest;
+    }
+
+    /***
+     * add an edge to the window, first moving the window up to the edge's time if it is newer than the current slice
+     * @param node1 first node of edge, a node number starting at 1
+     * @param node2 second node of edge
+     * @param time time of the edge
+     * @return false if the edge is older than the window and was dropped
+     */
+    public boolean addEdge(int node1, int node2, long time) {
+        long slice = Math.floorDiv(time, sliceLength);
+        advanceToSlice(slice);
+        if(slice <= currentSlice - numSlices) {
+            numDropped++;
+            return false;
+        }
+        if(node1 == node2) {
+            return true;
+        }
+        int position = (int)Math.floorMod(slice, (long)numSlices);
+        NodeSketches[] delta = slices[position];
+        delta[0].update(node1, node2, 1);
+        window[0].update(node1, node2, 1);
+        numUpdates++;
+        if(numLevels > 0) {
+            // an edge of level l is in G0..Gl
+            int edgeLevel = Math.min(simpleSparsifier.getEdgeLevel(node1, node2), numLevels-1);
+            long value = simpleSparsifier.toSketchValue(1.0d, 0);
+            for(int level=0; level<=edgeLevel; level++) {
+                for(int forest=0; forest<numForests; forest++) {
+                    delta[getFamily(level, forest)].update(node1, node2, value);
+                    window[getFamily(level, forest)].update(node1, node2, value);
+                }
+            }
+            numUpdates += (long)(edgeLevel + 1) * numForests;
+        }
+        sliceEdges[position]++;
+        return true;
+    }
+
+    /***
+     * move the window up to the given time, expiring the slices that fall out of it
+     */
+    public void advanceTo(long time) {
+        advanceToSlice(Math.floorDiv(time, sliceLength));
+    }
+
+    private void advanceToSlice(long slice) {
+        if(window == null) {
+            start(slice);
+            return;
+        }
+        if(slice <= currentSlice) {
+            return;
+        }
+        if(sliceHandler != null) {
+            sliceHandler.sliceEnded(this, currentSlice);
+        }
+        // live slices go from currentSlice-numSlices+1 up to currentSlice, and from slice-numSlices+1 afterwards
+        long oldest = currentSlice - numSlices + 1;
+        long lastExpired = Math.min(currentSlice, slice - numSlices);
+        long startExpired = numExpiredSlices;
+        if(lastExpired >= currentSlice) {
+            // every slice expires, the window is empty again
+            for(int family=0; family<window.length; family++) {
+                window[family].clear();
+            }
+            for(int position=0; position<numSlices; position++) {
+                if(sliceEdges[position] > 0) {
+                    clearSlice(position);
+                }
+            }
+        } else {
+            for(long expired=oldest; expired<=lastExpired; expired++) {
+                int position = (int)Math.floorMod(expired, (long)numSlices);
+                if(sliceEdges[position] > 0) {
+                    for(int family=0; family<window.length; family++) {
+                        window[family].subtract(slices[position][family]);
+                    }
+                    clearSlice(position);
+                }
+            }
+        }
+        metrics.count("window.expired_slices", numExpiredSlices - startExpired);
+        currentSlice = slice;
+    }
+
+    private void clearSlice(int position) {
+        for(NodeSketches delta: slices[position]) {
+            delta.clear();
+        }
+        sliceEdges[position] = 0;
+        numExpiredSlices++;
+    }
+
+    /***
+     * read a "u v t" stream and add every edge to the window
+     * @param edgeFile path of file containing the timestamped edge stream
+     * @throws IOException if the file can't be read; the window then holds the edges read before the error
+     */
+    public void streamEdges(String edgeFile) throws IOException {
+        long startLines = numLines;
+        long startUpdates = numUpdates;
+        long startDropped = numDropped;
+        try(Metrics.Phase phase = metrics.startPhase("ingest");
+            BufferedReader reader = new BufferedReader(new FileReader(new File(edgeFile)))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                applyLine(line);
+                numLines++;
+            }
+            phase.count("edges", numLines - startLines);
+            // an edge update touches the sketches of both ends, in its slice and in the window
+            phase.count("sketch_updates", 4 * (numUpdates - startUpdates));
+            metrics.count("window.dropped_edges", numDropped - startDropped);
+        }
+    }
+
+    /***
+     * parse a single stream line and add its edge
+     * @param line edge of the form "u v t"
+     */
+    void applyLine(String line) {
+        line = line.trim();
+        if(line.isEmpty() || line.charAt(0) == '#') {
+            return;
+        }
+        String[] edge = line.split("\\s+");
+        if(edge.length < 3) {
+            throw new IllegalArgumentException("Invalid timestamped edge: " + line);
+        }
+        addEdge(toNodeNumber(edge[0]), toNodeNumber(edge[1]), Long.parseLong(edge[2]));
+    }
+
+    private int toNodeNumber(String vertexId) {
+        int id = Integer.parseInt(vertexId);
+        if(id < 0 || id >= numNodes) {
+            throw new IllegalArgumentException("Vertex id " + id + " out of range [0, " + numNodes + ")");
+        }
+        return id + 1;
+    }
+
+    /***
+     * connected components of the window's graph, from its connectivity sketches
+     * @return list of components, each a list of node numbers
+     */
+    public List<List<Integer>> findComponents() {
+        if(window == null) {
+            start(0);
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, familySeeds[0], forkJoinPool);
+        spanningForest.setMetrics(metrics);
+        return spanningForest.findSpanningForest(window[0]);
+    }
+
+    /***
+     * cut sparsifier of the window's graph, built from the window's certificate sketches as SimpleSparsifier builds
+     * that of a streamed graph: an edge of the certificate is kept with weight 2^i times its multiplicity at the first
+     * Gi in which it is connected in fewer than k forests, so no edge of the window is needed.
+     * @return weighted edges of the sparsifier
+     * @throws IllegalStateException if the sparsifier sketches weren't enabled
+     */
+    public EdgeList sparsify() {
+        if(numLevels == 0) {
+            throw new IllegalStateException("Sparsifier sketches aren't kept, call enableSparsifier first");
+        }
+        if(window == null) {
+            start(0);
+        }
+        EdgeList sparsifier = new EdgeList();
+        try(Metrics.Phase phase = metrics.startPhase("sparsify")) {
+            simpleSparsifier.setSketchOptions(numRepetitions, forkJoinPool);
+            simpleSparsifier.setMetrics(metrics);
+            simpleSparsifier.addClass(0, numForests, (level, forest) ->
+                    level >= numLevels ? null : window[getFamily(level, forest)].copy(), sparsifier);
+            phase.count("kept_edges", sparsifier.size());
+        }
+        return sparsifier;
+    }
+
+    /***
+     * @return # of edges in the window, self loops left out
+     */
+    public long getEdgeCount() {
+        long numEdges = 0;
+        if(sliceEdges != null) {
+            for(long edges: sliceEdges) {
+                numEdges += edges;
+            }
+        }
+        return numEdges;
+    }
+
+    /***
+     * @return # of edges that arrived after their slice had left the window
+     */
+    public long getDroppedCount() {
+        return numDropped;
+    }
+
+    /***
+     * @return # of slices holding edges that fell out of the window
+     */
+    public long getExpiredSliceCount() {
+        return numExpiredSlices;
+    }
+
+    /***
+     * @return newest slice, holding the times from slice * sliceLength on
+     */
+    public long getCurrentSlice() {
+        return currentSlice;
+    }
+
+    public long getSliceLength() {
+        return sliceLength;
+    }
+
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    /***
+     * @return space taken by the sketches of all slices and the window
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        if(window != null) {
+            for(int family=0; family<window.length; family++) {
+                size += window[family].getSizeInBytes();
+                for(int position=0; position<numSlices; position++) {
+                    size += slices[position][family].getSizeInBytes();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long bytesToMegabytes(long bytes) {
+        return bytes / MiB;
+    }
+
+    public static void main(String args[]) {
+        if(args.length < 3 || args.length > 5) {
+            System.err.println("Invalid number of arguments - required 3 (edge file, # vertex ids, window length), " +
+                    "an optional # of slices and an optional sparsifier epsilon, got " + args.length);
+            return;
+        }
+        SlidingWindow slidingWindow;
+        try {
+            slidingWindow = new SlidingWindow(Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : 8, DEFAULT_SEED);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        if(args.length > 4) {
+            slidingWindow.enableSparsifier(Double.parseDouble(args[4]));
+        }
+        slidingWindow.setSliceHandler((window, slice) -> System.out.println("Slice " + slice + ": " +
+                window.getEdgeCount() + " edges, " + window.findComponents().size() + " components"));
+        try {
+            slidingWindow.streamEdges(args[0]);
+        } catch (FileNotFoundException e) {
+            System.out.println("Invalid input file path - doesn't exist");
+            e.printStackTrace();
+            return;
+        } catch (IOException e) {
+            System.out.println("IO error accessing input file");
+            e.printStackTrace();
+            return;
+        }
+        System.out.println("Window: " + slidingWindow.getEdgeCount() + " edges, " +
+                slidingWindow.findComponents().size() + " components, " + slidingWindow.getDroppedCount() +
+                " late edges dropped");
+        if(args.length > 4) {
+            EdgeList sparsifier = slidingWindow.sparsify();
+            System.out.println("Sparsifier: " + sparsifier.size() + " edges of total weight " +
+                    sparsifier.getTotalWeight());
+        }
+        System.out.println("Sketches: " + bytesToMegabytes(slidingWindow.getSizeInBytes()) + " MiB");
+    }
+}
@@ -0,0 +1,290 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.CsrGraph;
+import rc.graphalgos.sparsifiers.utils.DisjointSet;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.ParallelFor;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * measures how well a sparsifier H preserves its graph G, both over node numbers 1..n:
+ * cut distortion |w_H(S, V-S) / w_G(S, V-S) - 1| on random node subsets of random density and on BFS balls around
+ * random centers, which make the small, local cuts that uniform subsets miss; quadratic form distortion
+ * |x^T L_H x / x^T L_G x - 1| on random gaussian vectors; and whether both graphs have the same connected components
+ * by exact union-find. Subsets and vectors are evaluated in parallel, each one on both graphs, and are generated
+ * from the seed and their index, so reports don't depend on the pool.
+ */
+public class SparsifierEvaluator {
+    private static final long DEFAULT_SEED = 1152L;
+    private int numNodes;
+    private EdgeList graph;
+    private EdgeList sparsifier;
+    private long seed;
+    private ForkJoinPool forkJoinPool;
+    private CsrGraph graphRows;
+
+    /***
+     * distortion over a set of trials; trials where G's value is 0 are skipped, H's being 0 too for a sub-graph
+     */
+    public static class Distortion {
+        private final double max;
+        private final double mean;
+        private final int count;
+
+        Distortion(double[] distortions) {
+            double max = 0;
+            double sum = 0;
+            int count = 0;
+            for(double distortion: distortions) {
+                if(!Double.isNaN(distortion)) {
+                    max = Math.max(max, distortion);
+                    sum += distortion;
+                    count++;
+                }
+            }
+            this.max = max;
+            this.mean = count == 0 ? 0 : sum / count;
+            this.count = count;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        /***
+         * @return # of trials that were measured
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("max %.4f, mean %.4f over %d", max, mean, count);
+        }
+    }
+
+    /***
+     * default constructor
+     * @param numNodes # of nodes in graph
+     * @param graph edges of G
+     * @param sparsifier weighted edges of H
+     * @param seed seed of the subsets and vectors
+     * @param forkJoinPool pool to evaluate on
+     */
+    public SparsifierEvaluator(int numNodes, EdgeList graph, EdgeList sparsifier, long seed,
+                               ForkJoinPool forkJoinPool) {
+        this.numNodes = numNodes;
+        this.graph = graph;
+        this.sparsifier = sparsifier;
+        this.seed = seed;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /***
+     * cut distortion on subsets holding each node with a probability drawn uniformly per subset
+     * @param numSubsets # of subsets
+     */
+    public Distortion evaluateRandomCuts(int numSubsets) {
+        double[] distortions = new double[numSubsets];
+        ParallelFor.forEach(forkJoinPool, 0, numSubsets, subset -> {
+            Random random = getRandom(subset, 1);
+            double density = random.nextDouble();
+            boolean[] inSubset = new boolean[numNodes+1];
+            for(int node=1; node<=numNodes; node++) {
+                inSubset[node] = random.nextDouble() < density;
+            }
+            distortions[subset] = getCutDistortion(inSubset);
+        });
+        return new Distortion(distortions);
+    }
+
+    /***
+     * cut distortion on BFS balls in G: from a random center, nodes are added in BFS order until a random size of up
+     * to half the nodes is reached
+     * @param numSubsets # of balls
+     */
+    public Distortion evaluateBallCuts(int numSubsets) {
+        if(graphRows == null) {
+            graphRows = new CsrGraph(numNodes, graph);
+        }
+        double[] distortions = new double[numSubsets];
+        ParallelFor.forEach(forkJoinPool, 0, numSubsets, subset -> {
+            Random random = getRandom(subset, 2);
+            int size = 1 + random.nextInt(Math.max(1, numNodes / 2));
+            boolean[] inSubset = new boolean[numNodes+1];
+            int[] queue = new int[size];
+            queue[0] = random.nextInt(numNodes);
+            inSubset[queue[0]+1] = true;
+            int tail = 1;
+            for(int head=0; head<tail && tail<size; head++) {
+                int row = queue[head];
+                for(int entry=graphRows.getRowStart(row); entry<graphRows.getRowEnd(row) && tail<size; entry++) {
+                    int neighbor = graphRows.getNeighbor(entry);
+                    if(!inSubset[neighbor+1]) {
+                        inSubset[neighbor+1] = true;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            distortions[subset] = getCutDistortion(inSubset);
+        });
+        return new Distortion(distortions);
+    }
+
+    /***
+     * quadratic form distortion on random gaussian vectors
+     * @param numVectors # of vectors
+     */
+    public Distortion evaluateQuadraticForms(int numVectors) {
+        double[] distortions = new double[numVectors];
+        ParallelFor.forEach(forkJoinPool, 0, numVectors, vector -> {
+            Random random = getRandom(vector, 3);
+            double[] x = new double[numNodes+1];
+            for(int node=1; node<=numNodes; node++) {
+                x[node] = random.nextGaussian();
+            }
+            distortions[vector] = getDistortion(getQuadraticForm(sparsifier, x), getQuadraticForm(graph, x));
+        });
+        return new Distortion(distortions);
+    }
+
+    /***
+     * @return true if G and H have the same connected components
+     */
+    public boolean haveSameComponents() {
+        DisjointSet graphComponents = getComponents(graph);
+        DisjointSet sparsifierComponents = getComponents(sparsifier);
+        return graphComponents.getSetCount() == sparsifierComponents.getSetCount() &&
+                isRefinement(graphComponents, sparsifierComponents);
+    }
+
+    /***
+     * check components found some other way, e.g. by a sketch-based spanning forest, against exact union-find on G
+     * @param components components as lists of node numbers
+     * @return true if they are exactly the components of G
+     */
+    public boolean isComponentsOf(List<List<Integer>> components) {
+        DisjointSet graphComponents = getComponents(graph);
+        if(graphComponents.getSetCount() != components.size()) {
+            return false;
+        }
+        DisjointSet given = new DisjointSet(numNodes);
+        for(List<Integer> component: components) {
+            for(int node: component) {
+                given.union(component.get(0)-1, node-1);
+            }
+        }
+        return given.getSetCount() == components.size() && isRefinement(given, graphComponents);
+    }
+
+    /***
+     * @return true if every set of first lies within a set of second; with equal set counts, the partitions are equal
+     */
+    private boolean isRefinement(DisjointSet first, DisjointSet second) {
+        int[] secondRoot = new int[numNodes];
+        Arrays.fill(secondRoot, -1);
+        for(int node=0; node<numNodes; node++) {
+            int root = first.find(node);
+            if(secondRoot[root] == -1) {
+                secondRoot[root] = second.find(node);
+            } else if(secondRoot[root] != second.find(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DisjointSet getComponents(EdgeList edges) {
+        DisjointSet components = new DisjointSet(numNodes);
+        for(int edge=0; edge<edges.size(); edge++) {
+            components.union(edges.getSource(edge)-1, edges.getTarget(edge)-1);
+        }
+        return components;
+    }
+
+    private double getCutDistortion(boolean[] inSubset) {
+        return getDistortion(getCut(sparsifier, inSubset), getCut(graph, inSubset));
+    }
+
+    private static double getCut(EdgeList edges, boolean[] inSubset) {
+        double cut = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            if(inSubset[edges.getSource(edge)] != inSubset[edges.getTarget(edge)]) {
+                cut += edges.getWeight(edge);
+            }
+        }
+        return cut;
+    }
+
+    private static double getQuadraticForm(EdgeList edges, double[] x) {
+        double sum = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            double difference = x[edges.getSource(edge)] - x[edges.getTarget(edge)];
+            sum += edges.getWeight(edge) * difference * difference;
+        }
+        return sum;
+    }
+
+    /***
+     * @return |sparsified / original - 1|, NaN if the original is 0
+     */
+    private static double getDistortion(double sparsified, double original) {
+        return original == 0 ? Double.NaN : Math.abs(sparsified / original - 1);
+    }
+
+    private Random getRandom(int trial, int kind) {
+        return new Random(seed * 31 + ((long)kind << 40) + trial);
+    }
+
+    public static void main(String args[]) {
+        if(args.length < 1) {
+            System.err.println("Invalid number of arguments - required 1 (graph file), an optional sparsifier " +
+                    "(cut|spectral), epsilon and # of trials, got " + args.length);
+            return;
+        }
+        String engine = args.length > 1 ? args[1] : "cut";
+        double epsilon = args.length > 2 ? Double.parseDouble(args[2]) : 1.0d;
+        int numTrials = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        GraphStream graphStream = new GraphStream(args[0]);
+        graphStream.buildGraph(args[0]);
+        int numNodes = graphStream.getNodeCount();
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+        EdgeList sparsifier;
+        if(engine.equals("spectral")) {
+            SpectralSparsifier spectralSparsifier = new SpectralSparsifier(graphStream, DEFAULT_SEED, forkJoinPool);
+            spectralSparsifier.sparsify(epsilon);
+            sparsifier = spectralSparsifier.getSparsifier();
+        } else {
+            SimpleSparsifier simpleSparsifier = new SimpleSparsifier(graphStream, DEFAULT_SEED);
+            simpleSparsifier.sparsify(epsilon);
+            sparsifier = simpleSparsifier.getSparsifier();
+        }
+        System.out.println("Sparsifier: " + sparsifier.size() + " of " + graphStream.getEdgeCount() + " edges");
+        long startTime = System.nanoTime();
+        SparsifierEvaluator evaluator = new SparsifierEvaluator(numNodes, graphStream.getEdges(), sparsifier,
+                DEFAULT_SEED, forkJoinPool);
+        System.out.println("Random cuts: " + evaluator.evaluateRandomCuts(numTrials));
+        System.out.println("BFS ball cuts: " + evaluator.evaluateBallCuts(numTrials));
+        System.out.println("Quadratic forms: " + evaluator.evaluateQuadraticForms(Math.max(1, numTrials / 10)));
+        System.out.println("Sparsifier components match: " + evaluator.haveSameComponents());
+        // sketches with 7 repetitions, i.e. a sampler error probability below 0.01
+        NodeSketches nodeSketches = new NodeSketches(numNodes, DEFAULT_SEED, 7);
+        EdgeList edges = graphStream.getEdges();
+        for(int edge=0; edge<edges.size(); edge++) {
+            nodeSketches.update(edges.getSource(edge), edges.getTarget(edge), 1);
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, DEFAULT_SEED, forkJoinPool);
+        List<List<Integer>> components = spanningForest.findSpanningForest(nodeSketches);
+        System.out.println("Spanning forest components match: " + evaluator.isComponentsOf(components));
+        System.out.format("Evaluated in %.3f s%n", (System.nanoTime() - startTime) / 1e9);
+    }
+}
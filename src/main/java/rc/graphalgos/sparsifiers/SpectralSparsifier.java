@@ -0,0 +1,192 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.CsrGraph;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+import rc.graphalgos.sparsifiers.utils.LaplacianSolver;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.ParallelFor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * spectral sparsifier by effective resistance sampling (Spielman-Srivastava). Edge e of weight w_e is kept with
+ * probability p_e = min(1, q w_e R_e / sum(w R)) and weight w_e / p_e, where R_e is the effective resistance between
+ * its ends and q = n ln(n) / epsilon^2 is the sample budget, so the sparsifier has at most q edges in expectation and
+ * its Laplacian quadratic form is that of the graph within (1 +- epsilon) with high probability.
+ * Resistances are estimated by a Johnson-Lindenstrauss projection: R_e = ||W^1/2 B L+ (chi_u - chi_v)||^2 is
+ * approximated with k random sign rows Q, as the sum over rows i of (z_i[u] - z_i[v])^2, where L z_i = B^T W^1/2 q_i is
+ * solved by a parallel conjugate gradient solver over a CSR copy of the graph. Signs and sampling coins are hashed from
+ * the seed, the edge and the row, so neither Q nor the solutions are stored - memory is O(m + n) for any k.
+ */
+public class SpectralSparsifier {
+    private static final long DEFAULT_SEED = 1152L;
+    // JL distortion of the resistance estimates; sampling tolerates a constant factor, so a coarse one is enough
+    private static final double JL_EPSILON = 0.5d;
+    private static final double CG_TOLERANCE = 1e-6;
+    private static final long SAMPLE_SALT = 0x5DEECE66DL;
+    private GraphStream graphStream;
+    private long seed;
+    private ForkJoinPool forkJoinPool;
+    private Metrics metrics;
+    private int maxIterations = 1000;
+    private EdgeList sparsifier;
+
+    /***
+     * default constructor
+     * @param graphStream graph to be sparsified
+     * @param seed seed of the projection signs and the sampling coins
+     * @param forkJoinPool pool for the solver and the per-edge loops
+     */
+    public SpectralSparsifier(GraphStream graphStream, long seed, ForkJoinPool forkJoinPool) {
+        this.graphStream = graphStream;
+        this.seed = seed;
+        this.forkJoinPool = forkJoinPool;
+        metrics = graphStream.getMetrics();
+    }
+
+    /***
+     * @return # of JL projections for a graph of numNodes nodes, ln(n) / JL_EPSILON^2
+     */
+    static int getProjectionCount(int numNodes) {
+        return Math.max(1, (int)Math.ceil(Math.log(Math.max(numNodes, 2)) / (JL_EPSILON * JL_EPSILON)));
+    }
+
+    /***
+     * @return sample budget q = n ln(n) / epsilon^2
+     */
+    static double getSampleBudget(int numNodes, double epsilon) {
+        return numNodes * Math.log(Math.max(numNodes, 2)) / (epsilon * epsilon);
+    }
+
+    /***
+     * estimate the effective resistance of every edge
+     * @param numProjections # of JL projections, each costing one Laplacian solve
+     * @return resistance estimate per edge, in the order of graphStream.getEdges()
+     */
+    double[] estimateResistances(int numProjections) {
+        int numNodes = graphStream.getNodeCount();
+        EdgeList edges = graphStream.getEdges();
+        double[] resistances = new double[edges.size()];
+        try(Metrics.Phase phase = metrics.startPhase("resistances")) {
+            CsrGraph graph = new CsrGraph(numNodes, edges);
+            LaplacianSolver solver = new LaplacianSolver(graph, CG_TOLERANCE, maxIterations, forkJoinPool);
+            double[] projected = new double[numNodes];
+            double[] solution = new double[numNodes];
+            double scale = 1.0d / numProjections;
+            long numIterations = 0;
+            for(int projection=0; projection<numProjections; projection++) {
+                // B^T W^1/2 q: each edge adds its signed root weight to one end and subtracts it from the other
+                Arrays.fill(projected, 0.0d);
+                for(int edge=0; edge<edges.size(); edge++) {
+                    double value = getSign(projection, edge) * Math.sqrt(edges.getWeight(edge));
+                    projected[edges.getSource(edge)-1] += value;
+                    projected[edges.getTarget(edge)-1] -= value;
+                }
+                numIterations += solver.solve(projected, solution);
+                ParallelFor.forEach(forkJoinPool, 0, edges.size(), edge -> {
+                    double difference = solution[edges.getSource(edge)-1] - solution[edges.getTarget(edge)-1];
+                    resistances[edge] += scale * difference * difference;
+                });
+            }
+            phase.count("solves", numProjections);
+            phase.count("cg_iterations", numIterations);
+        }
+        return resistances;
+    }
+
+    /***
+     * sparsify the graph, keeping O(n log n / epsilon^2) reweighted edges
+     * @param epsilon approximation parameter of the quadratic form
+     */
+    void sparsify(double epsilon) {
+        int numNodes = graphStream.getNodeCount();
+        EdgeList edges = graphStream.getEdges();
+        double[] resistances = estimateResistances(getProjectionCount(numNodes));
+        try(Metrics.Phase phase = metrics.startPhase("spectral_sample")) {
+            double total = 0;
+            for(int edge=0; edge<edges.size(); edge++) {
+                total += edges.getWeight(edge) * resistances[edge];
+            }
+            double factor = total > 0 ? getSampleBudget(numNodes, epsilon) / total : 0;
+            // probability per edge, 0 for edges that weren't sampled
+            double[] kept = new double[edges.size()];
+            ParallelFor.forEach(forkJoinPool, 0, edges.size(), edge -> {
+                double probability = Math.min(1.0d, factor * edges.getWeight(edge) * resistances[edge]);
+                if(getUniform(edge) < probability) {
+                    kept[edge] = probability;
+                }
+            });
+            sparsifier = new EdgeList();
+            for(int edge=0; edge<edges.size(); edge++) {
+                if(kept[edge] > 0) {
+                    sparsifier.add(edges.getSource(edge), edges.getTarget(edge), edges.getWeight(edge) / kept[edge]);
+                }
+            }
+            phase.count("kept_edges", sparsifier.size());
+        }
+    }
+
+    /***
+     * @return random sign of an edge in a projection row, +1 or -1
+     */
+    private double getSign(int projection, int edge) {
+        return (mix(seed + mix(((long)projection << 32) | edge)) & 1) == 0 ? 1.0d : -1.0d;
+    }
+
+    /***
+     * @return sampling coin of an edge, uniform in [0, 1)
+     */
+    private double getUniform(int edge) {
+        return (mix((seed ^ SAMPLE_SALT) + mix(edge)) >>> 11) * 0x1.0p-53;
+    }
+
+    /***
+     * SplitMix64 finalizer, a bijection that scrambles every input bit into every output bit
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /***
+     * set the most conjugate gradient iterations per Laplacian solve
+     */
+    void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /***
+     * @return weighted edges of the sparsifier built by the last sparsify()
+     */
+    EdgeList getSparsifier() {
+        return sparsifier;
+    }
+
+    public static void main(String args[]) {
+        if(args.length < 2) {
+            System.err.println("Invalid number of arguments - required 2 (graph name, graph file), an optional " +
+                    "epsilon and an optional metrics file (.json or .csv), got " + args.length);
+            return;
+        }
+        GraphStream graphStream = new GraphStream(args[0]);
+        graphStream.buildGraph(args[1]);
+        SpectralSparsifier spectralSparsifier = new SpectralSparsifier(graphStream, DEFAULT_SEED,
+                ForkJoinPool.commonPool());
+        spectralSparsifier.sparsify(args.length > 2 ? Double.parseDouble(args[2]) : 1.0d);
+        EdgeList sparsifier = spectralSparsifier.getSparsifier();
+        System.out.println("Sparsifier: " + sparsifier.size() + " edges of total weight " +
+                sparsifier.getTotalWeight() + ", input: " + graphStream.getEdgeCount() + " edges of total weight " +
+                graphStream.getEdges().getTotalWeight());
+        if(args.length > 3) {
+            try {
+                graphStream.getMetrics().write(args[3]);
+            } catch (IOException e) {
+                System.out.println("IO error writing metrics file");
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * weighted undirected graph in compressed sparse row form: the neighbors of node i are neighbors[offsets[i]] up to
+ * neighbors[offsets[i+1]], with matching weights, and every edge is stored once in the row of each endpoint. Takes
+ * 12 bytes per edge and end, plus 12 bytes per node. Node numbers 1..n are stored as rows 0..n-1; parallel edges are
+ * kept as separate entries, which adds up to the same Laplacian as a single edge of their total weight.
+ */
+public class CsrGraph {
+    private final int numNodes;
+    private final int numEdges;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final double[] weights;
+    private final double[] degrees;
+
+    /***
+     * default constructor
+     * @param numNodes # of nodes in graph
+     * @param edges edges between node numbers 1..numNodes; self loops are left out
+     */
+    public CsrGraph(int numNodes, EdgeList edges) {
+        this.numNodes = numNodes;
+        offsets = new int[numNodes+1];
+        int loops = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            if(edges.getSource(edge) == edges.getTarget(edge)) {
+                loops++;
+                continue;
+            }
+            offsets[edges.getSource(edge)]++;
+            offsets[edges.getTarget(edge)]++;
+        }
+        numEdges = edges.size() - loops;
+        //offsets[i+1] holds the degree of row i, turn it into the end of row i
+        for(int row=0; row<numNodes; row++) {
+            offsets[row+1] += offsets[row];
+        }
+        neighbors = new int[2 * numEdges];
+        weights = new double[2 * numEdges];
+        degrees = new double[numNodes];
+        int[] next = new int[numNodes];
+        System.arraycopy(offsets, 0, next, 0, numNodes);
+        for(int edge=0; edge<edges.size(); edge++) {
+            int source = edges.getSource(edge) - 1;
+            int target = edges.getTarget(edge) - 1;
+            if(source == target) {
+                continue;
+            }
+            double weight = edges.getWeight(edge);
+            neighbors[next[source]] = target;
+            weights[next[source]++] = weight;
+            neighbors[next[target]] = source;
+            weights[next[target]++] = weight;
+            degrees[source] += weight;
+            degrees[target] += weight;
+        }
+    }
+
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    /***
+     * @return # of edges, each counted once
+     */
+    public int getEdgeCount() {
+        return numEdges;
+    }
+
+    /***
+     * @return sum of the weights of the edges at row, i.e. the Laplacian's diagonal entry
+     */
+    public double getWeightedDegree(int row) {
+        return degrees[row];
+    }
+
+    /***
+     * @return first entry of row; the row's entries run up to getRowEnd(row)
+     */
+    public int getRowStart(int row) {
+        return offsets[row];
+    }
+
+    public int getRowEnd(int row) {
+        return offsets[row+1];
+    }
+
+    /***
+     * @return row of the neighbor at an entry
+     */
+    public int getNeighbor(int entry) {
+        return neighbors[entry];
+    }
+
+    /***
+     * y = L x, with L = D - A the weighted Laplacian; rows are computed in parallel
+     * @param x vector indexed by row
+     * @param y result, indexed by row
+     * @param pool pool to run on
+     */
+    public void multiplyLaplacian(double[] x, double[] y, ForkJoinPool pool) {
+        ParallelFor.forEach(pool, 0, numNodes, row -> {
+            double sum = degrees[row] * x[row];
+            for(int i=offsets[row]; i<offsets[row+1]; i++) {
+                sum -= weights[i] * x[neighbors[i]];
+            }
+            y[row] = sum;
+        });
+    }
+
+    /***
+     * @return size of the arrays in bytes
+     */
+    public long getSizeInBytes() {
+        return (long)neighbors.length * (Integer.BYTES + Double.BYTES) + (long)offsets.length * Integer.BYTES +
+                (long)degrees.length * Double.BYTES;
+    }
+}
@@ -0,0 +1,78 @@
+package rc.graphalgos.sparsifiers.utils;
+
+/***
+ * disjoint-set forest over elements 0..n-1, with path compression and union by rank.
+ * Backed by primitive arrays; find and union allocate nothing and cost O(alpha(n)) amortized.
+ */
+public class DisjointSet {
+    private int[] parent;
+    private byte[] rank;
+    private int numSets;
+
+    /***
+     * default constructor - every element starts in its own set
+     * @param numElements # of elements
+     */
+    public DisjointSet(int numElements) {
+        parent = new int[numElements];
+        rank = new byte[numElements];
+        for(int i=0; i<numElements; i++) {
+            parent[i] = i;
+        }
+        numSets = numElements;
+    }
+
+    /***
+     * @return representative of the set containing element
+     */
+    public int find(int element) {
+        int root = element;
+        while(parent[root] != root) {
+            root = parent[root];
+        }
+        // compress the path so later finds are direct
+        while(parent[element] != root) {
+            int next = parent[element];
+            parent[element] = root;
+            element = next;
+        }
+        return root;
+    }
+
+    /***
+     * merge the sets of two elements
+     * @return representative of the merged set, or -1 if both elements were already in the same set
+     */
+    public int union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if(firstRoot == secondRoot) {
+            return -1;
+        }
+        if(rank[firstRoot] < rank[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        } else if(rank[firstRoot] == rank[secondRoot]) {
+            rank[firstRoot]++;
+        }
+        parent[secondRoot] = firstRoot;
+        numSets--;
+        return firstRoot;
+    }
+
+    public boolean isConnected(int first, int second) {
+        return find(first) == find(second);
+    }
+
+    /***
+     * @return # of disjoint sets
+     */
+    public int getSetCount() {
+        return numSets;
+    }
+
+    public int getElementCount() {
+        return parent.length;
+    }
+}
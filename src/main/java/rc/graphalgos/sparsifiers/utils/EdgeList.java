@@ -0,0 +1,82 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Arrays;
+
+/***
+ * growable list of weighted edges kept in parallel primitive arrays - one int per endpoint and one double per weight,
+ * with no object per edge
+ */
+public class EdgeList {
+    private static final int DEFAULT_CAPACITY = 16;
+    private int[] sources;
+    private int[] targets;
+    private double[] weights;
+    private int size;
+
+    /***
+     * default constructor
+     */
+    public EdgeList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /***
+     * constructor with an expected # of edges
+     */
+    public EdgeList(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        sources = new int[capacity];
+        targets = new int[capacity];
+        weights = new double[capacity];
+    }
+
+    /***
+     * append an edge of unit weight
+     */
+    public void add(int source, int target) {
+        add(source, target, 1.0d);
+    }
+
+    /***
+     * append a weighted edge
+     */
+    public void add(int source, int target, double weight) {
+        if(size == sources.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        sources[size] = source;
+        targets[size] = target;
+        weights[size] = weight;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /***
+     * @return sum of all edge weights
+     */
+    public double getTotalWeight() {
+        double total = 0;
+        for(int i=0; i<size; i++) {
+            total += weights[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,89 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Random;
+
+/***
+ * k-wise independent hash family over the field of integers modulo the Mersenne prime 2^61 - 1. Each function is a
+ * random polynomial of degree k-1 evaluated with Horner's rule, so only k words are stored per function.
+ */
+public class KWiseHash {
+    static final long PRIME = (1L << 61) - 1;
+    private static final long MASK30 = (1L << 30) - 1;
+    private static final long MASK31 = (1L << 31) - 1;
+    private final long[] coefficients;
+
+    /***
+     * default constructor
+     * @param k degree of independence
+     * @param random source of the polynomial coefficients
+     */
+    public KWiseHash(int k, Random random) {
+        coefficients = new long[k];
+        for(int i=0; i<k; i++) {
+            coefficients[i] = reduce(random.nextLong());
+        }
+    }
+
+    /***
+     * evaluate the hash function
+     * @param x item to hash
+     * @return hash value in [0, 2^61 - 1)
+     */
+    public long hash(long x) {
+        long key = toField(x);
+        long value = 0;
+        for(int i=coefficients.length-1; i>=0; i--) {
+            value = addMod(mulMod(value, key), coefficients[i]);
+        }
+        return value;
+    }
+
+    /***
+     * multiply two field elements without 128-bit arithmetic
+     * @param a field element, less than 2^61
+     * @param b field element, less than 2^61
+     * @return a*b mod (2^61 - 1)
+     */
+    static long mulMod(long a, long b) {
+        long aLow = a & MASK31, aHigh = a >>> 31;
+        long bLow = b & MASK31, bHigh = b >>> 31;
+        long mid = aLow * bHigh + aHigh * bLow;
+        // 2^62 = 2 and 2^61 = 1 modulo the prime; the sum stays below 2^64 when read as unsigned
+        long sum = ((aHigh * bHigh) << 1) + (mid >>> 30) + ((mid & MASK30) << 31) + aLow * bLow;
+        return reduce(sum);
+    }
+
+    /***
+     * add two field elements
+     */
+    static long addMod(long a, long b) {
+        long sum = a + b;
+        return sum >= PRIME ? sum - PRIME : sum;
+    }
+
+    /***
+     * subtract field element b from a
+     */
+    static long subMod(long a, long b) {
+        return a >= b ? a - b : a - b + PRIME;
+    }
+
+    /***
+     * map a signed value into the field, so that negative counters (edge deletions) stay linear
+     */
+    static long toField(long x) {
+        if(x >= 0) {
+            return reduce(x);
+        }
+        long negated = reduce(-x);
+        return negated == 0 ? 0 : PRIME - negated;
+    }
+
+    /***
+     * reduce an unsigned 64-bit value modulo 2^61 - 1
+     */
+    private static long reduce(long x) {
+        long value = (x & PRIME) + (x >>> 61);
+        return value >= PRIME ? value - PRIME : value;
+    }
+}
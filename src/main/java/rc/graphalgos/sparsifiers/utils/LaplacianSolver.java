@@ -0,0 +1,121 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ * solves L x = b for the Laplacian L of a CsrGraph by conjugate gradient with a Jacobi (weighted degree)
+ * preconditioner. L is singular, its null space being the vectors constant on each component, so b must sum to zero
+ * on every component - as any difference of node indicators does - and x is then the solution orthogonal to the null
+ * space. Matrix products and vector updates run in parallel; dot products are summed over fixed blocks in a fixed
+ * order, so results don't depend on the pool's parallelism.
+ */
+public class LaplacianSolver {
+    private static final int BLOCK_SIZE = 4096;
+    private final CsrGraph graph;
+    private final ForkJoinPool pool;
+    private final double tolerance;
+    private final int maxIterations;
+    private final double[] inverseDiagonal;
+    private final int numBlocks;
+
+    /***
+     * default constructor
+     * @param graph graph whose Laplacian is solved for
+     * @param tolerance bound on the residual relative to b at which iteration stops
+     * @param maxIterations most iterations per solve
+     * @param pool pool to run on
+     */
+    public LaplacianSolver(CsrGraph graph, double tolerance, int maxIterations, ForkJoinPool pool) {
+        this.graph = graph;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.pool = pool;
+        int numNodes = graph.getNodeCount();
+        inverseDiagonal = new double[numNodes];
+        for(int row=0; row<numNodes; row++) {
+            double degree = graph.getWeightedDegree(row);
+            //isolated nodes have a zero row, their residual stays 0
+            inverseDiagonal[row] = degree > 0 ? 1.0d / degree : 0.0d;
+        }
+        numBlocks = (numNodes + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /***
+     * solve L x = b
+     * @param b right hand side, summing to zero on every component; left unchanged
+     * @param x solution, overwritten
+     * @return # of iterations taken, maxIterations if the tolerance wasn't reached
+     */
+    public int solve(double[] b, double[] x) {
+        int numNodes = graph.getNodeCount();
+        double[] r = b.clone();
+        double[] z = new double[numNodes];
+        double[] p = new double[numNodes];
+        double[] ap = new double[numNodes];
+        Arrays.fill(x, 0.0d);
+        double bound = tolerance * Math.sqrt(dot(b, b));
+        if(bound == 0) {
+            return 0;
+        }
+        forEachBlock((start, end) -> {
+            for(int i=start; i<end; i++) {
+                z[i] = inverseDiagonal[i] * r[i];
+                p[i] = z[i];
+            }
+        });
+        double rz = dot(r, z);
+        for(int iteration=1; iteration<=maxIterations; iteration++) {
+            graph.multiplyLaplacian(p, ap, pool);
+            double alpha = rz / dot(p, ap);
+            forEachBlock((start, end) -> {
+                for(int i=start; i<end; i++) {
+                    x[i] += alpha * p[i];
+                    r[i] -= alpha * ap[i];
+                    z[i] = inverseDiagonal[i] * r[i];
+                }
+            });
+            if(Math.sqrt(dot(r, r)) <= bound) {
+                return iteration;
+            }
+            double rzNext = dot(r, z);
+            double beta = rzNext / rz;
+            rz = rzNext;
+            forEachBlock((start, end) -> {
+                for(int i=start; i<end; i++) {
+                    p[i] = z[i] + beta * p[i];
+                }
+            });
+        }
+        return maxIterations;
+    }
+
+    /***
+     * @return dot product, summed per block and then over the blocks in order
+     */
+    private double dot(double[] a, double[] b) {
+        double[] partials = new double[numBlocks];
+        ParallelFor.forEach(pool, 0, numBlocks, block -> {
+            double sum = 0;
+            for(int i=block*BLOCK_SIZE, end=Math.min(a.length, (block+1)*BLOCK_SIZE); i<end; i++) {
+                sum += a[i] * b[i];
+            }
+            partials[block] = sum;
+        });
+        double sum = 0;
+        for(double partial: partials) {
+            sum += partial;
+        }
+        return sum;
+    }
+
+    private void forEachBlock(BlockBody body) {
+        int numNodes = graph.getNodeCount();
+        ParallelFor.forEach(pool, 0, numBlocks, block -> body.accept(block*BLOCK_SIZE,
+                Math.min(numNodes, (block+1)*BLOCK_SIZE)));
+    }
+
+    private interface BlockBody {
+        void accept(int start, int end);
+    }
+}
@@ -0,0 +1,174 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Arrays;
+
+/***
+ * sparse vector of long values over a long index space, for node vectors of the n choose 2 edge space.
+ * Entries live in an open addressing hash table with linear probing; no boxing and no per-entry objects. Entries that
+ * become zero are removed, so the table only ever holds the non-zero support of the vector.
+ */
+public class LongSparseVector {
+    private static final long EMPTY = -1L;
+    private static final int DEFAULT_CAPACITY = 8;
+    private long dimension;
+    private long[] indices;
+    private long[] values;
+    private int size;
+
+    /***
+     * default constructor
+     * @param dimension # of entries in vector
+     */
+    public LongSparseVector(long dimension) {
+        this(dimension, DEFAULT_CAPACITY);
+    }
+
+    /***
+     * constructor with an expected # of non-zero entries
+     * @param dimension # of entries in vector
+     * @param expectedSize expected # of non-zero entries
+     */
+    public LongSparseVector(long dimension, int expectedSize) {
+        this.dimension = dimension;
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        indices = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(indices, EMPTY);
+    }
+
+    public long getDimension() {
+        return dimension;
+    }
+
+    /***
+     * @return # of non-zero entries
+     */
+    public int getNonZeroCount() {
+        return size;
+    }
+
+    public boolean isZero() {
+        return size == 0;
+    }
+
+    public long getEntry(long index) {
+        int slot = findSlot(index);
+        return indices[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    /***
+     * add value to entry at index
+     * @param index index of entry, in [0, dimension)
+     * @param value value to add
+     */
+    public void addToEntry(long index, long value) {
+        if(value == 0) {
+            return;
+        }
+        int slot = findSlot(index);
+        if(indices[slot] == EMPTY) {
+            indices[slot] = index;
+            values[slot] = value;
+            if(++size * 4 > indices.length * 3) {
+                resize(indices.length * 2);
+            }
+        } else if((values[slot] += value) == 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /***
+     * add other vector to this vector, in place
+     */
+    public void add(LongSparseVector other) {
+        for(int slot=0; slot<other.indices.length; slot++) {
+            if(other.indices[slot] != EMPTY) {
+                addToEntry(other.indices[slot], other.values[slot]);
+            }
+        }
+    }
+
+    /***
+     * visit every non-zero entry, in no particular order
+     * @param visitor called once per non-zero entry
+     */
+    public void forEachNonZero(EntryVisitor visitor) {
+        for(int slot=0; slot<indices.length; slot++) {
+            if(indices[slot] != EMPTY) {
+                visitor.visit(indices[slot], values[slot]);
+            }
+        }
+    }
+
+    /***
+     * @return indices of non-zero entries, in no particular order
+     */
+    public long[] getNonZeroIndices() {
+        long[] nonZero = new long[size];
+        int next = 0;
+        for(long index: indices) {
+            if(index != EMPTY) {
+                nonZero[next++] = index;
+            }
+        }
+        return nonZero;
+    }
+
+    private int findSlot(long index) {
+        int mask = indices.length - 1;
+        int slot = mix(index) & mask;
+        while(indices[slot] != EMPTY && indices[slot] != index) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /***
+     * delete by shifting later entries of the probe run back, so no tombstones are needed
+     */
+    private void removeSlot(int slot) {
+        int mask = indices.length - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while(indices[next] != EMPTY) {
+            int home = mix(indices[next]) & mask;
+            // move the entry into the hole unless its home lies cyclically in (hole, next]
+            if(((next - home) & mask) >= ((next - hole) & mask)) {
+                indices[hole] = indices[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        indices[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIndices = indices;
+        long[] oldValues = values;
+        indices = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(indices, EMPTY);
+        for(int slot=0; slot<oldIndices.length; slot++) {
+            if(oldIndices[slot] != EMPTY) {
+                int newSlot = findSlot(oldIndices[slot]);
+                indices[newSlot] = oldIndices[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private static int mix(long index) {
+        long hash = index * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    /***
+     * callback for iteration over non-zero entries
+     */
+    public interface EntryVisitor {
+        void visit(long index, long value);
+    }
+}
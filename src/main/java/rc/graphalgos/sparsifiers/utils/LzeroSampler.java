@@ -7,10 +7,25 @@ import java.util.Random;
 
 /***
  * implementation of a L0 sampler.
+ * The sampler runs in one of two modes: a matrix mode that materializes a random hash matrix, and a hashed mode that
+ * derives level assignment and fingerprints from seeded k-wise independent hash functions. In hashed mode a sketch is
+ * a flat long array of (count, index-sum, fingerprint) triples, one per level, so it needs O(log n) words and is
+ * linear - sketches of two vectors can be added to get the sketch of their sum.
+ * A hashed mode sampler may keep several independent repetitions of the sketch, each with its own hash functions,
+ * one after another in the sketch array. Sampling tries them in turn, so it fails only if every repetition fails.
  */
 class LzeroSampler {
+    static final int CELLS_PER_ROW = 3;
+    private static final int LEVEL_INDEPENDENCE = 8;
+    // fingerprints must not be affine in the index, or a +1 +1 -1 mix of items could pass as a single item
+    private static final int FINGERPRINT_INDEPENDENCE = 4;
     private int numRows;
-    private int numColumns;
+    private long numColumns;
+    // a single repetition fails to isolate an item with probability well below this bound
+    private static final double REPETITION_FAILURE_BOUND = 0.5d;
+    private int numRepetitions = 1;
+    private KWiseHash[] levelHashes;
+    private KWiseHash[] fingerprintHashes;
 
     /***
      * default constructor
@@ -22,6 +37,59 @@ class LzeroSampler {
         this.numColumns = numColumns;
     }
 
+    /***
+     * hashed mode constructor - no hash matrix is built, sketches are updated through seeded hash functions
+     * @param numRows # of levels, bounded by log(numColumns) + 2
+     * @param numColumns # of distinct pairs of vertices
+     * @param seed seed of the level and fingerprint hash functions
+     */
+    LzeroSampler(int numRows, long numColumns, long seed) {
+        this(numRows, numColumns, seed, 1);
+    }
+
+    /***
+     * hashed mode constructor with independent repetitions; the first repetition is the one of a single repetition
+     * sampler with the same seed
+     * @param numRows # of levels, bounded by log(numColumns) + 2
+     * @param numColumns # of distinct pairs of vertices
+     * @param seed seed of the level and fingerprint hash functions
+     * @param numRepetitions # of independent repetitions
+     */
+    LzeroSampler(int numRows, long numColumns, long seed, int numRepetitions) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.numRepetitions = numRepetitions;
+        Random random = new Random(seed);
+        levelHashes = new KWiseHash[numRepetitions];
+        fingerprintHashes = new KWiseHash[numRepetitions];
+        for(int rep=0; rep<numRepetitions; rep++) {
+            levelHashes[rep] = new KWiseHash(LEVEL_INDEPENDENCE, random);
+            fingerprintHashes[rep] = new KWiseHash(FINGERPRINT_INDEPENDENCE, random);
+        }
+    }
+
+    /***
+     * # of repetitions needed so that sampling a non-zero vector fails with probability at most errorProbability
+     * @param errorProbability allowed failure probability, in (0, 1)
+     */
+    static int getRepetitions(double errorProbability) {
+        if(!(errorProbability > 0 && errorProbability < 1)) {
+            throw new IllegalArgumentException("Error probability must be in (0, 1), got " + errorProbability);
+        }
+        return Math.max(1, (int)Math.ceil(Math.log(errorProbability)/Math.log(REPETITION_FAILURE_BOUND)));
+    }
+
+    /***
+     * @return # of long words in a single hashed mode sketch, all repetitions included
+     */
+    int getSketchSize() {
+        return numRepetitions * numRows * CELLS_PER_ROW;
+    }
+
+    int getRepetitionCount() {
+        return numRepetitions;
+    }
+
     /***
      * generate random bounded hash values
      * @param start lower bound
@@ -43,11 +111,11 @@ class LzeroSampler {
      * Dimensions are n X (nC2), where 'n' = # nodes in graph
      */
     OpenMapRealMatrix buildHashMatrix(){
-        OpenMapRealMatrix hashingMatrix = new OpenMapRealMatrix(numRows, numColumns);
+        OpenMapRealMatrix hashingMatrix = new OpenMapRealMatrix(numRows, (int)numColumns);
         for(int row=0; row<numRows; row++) {
             int start = 0;
             int end = (int)(Math.pow(2, row) - 1);
-            hashingMatrix.setRow(row, getHashValues(start, end, numColumns));
+            hashingMatrix.setRow(row, getHashValues(start, end, (int)numColumns));
         }
         return hashingMatrix;
     }
@@ -102,4 +170,152 @@ class LzeroSampler {
         }
         return sketchMatrix;
     }
+
+    /***
+     * build a hashed mode sketch of given node vector; only the non-zero entries of the vector are visited
+     * @param nodeVector vector of input node in graph
+     * @return sketch of (count, index-sum, fingerprint) per level
+     */
+    long[] buildSketch(LongSparseVector nodeVector) {
+        long[] sketch = new long[getSketchSize()];
+        nodeVector.forEachNonZero((index, value) -> update(sketch, 0, index, value));
+        return sketch;
+    }
+
+    /***
+     * add value to the entry at given index of the sketched vector
+     * @param sketch sketch storage
+     * @param offset position of the sketch within storage
+     * @param index index of the updated entry
+     * @param value value added to the entry, negative for deletions
+     */
+    void update(long[] sketch, int offset, long index, long value) {
+        long field = KWiseHash.toField(value);
+        for(int rep=0; rep<numRepetitions; rep++, offset+=numRows*CELLS_PER_ROW) {
+            int level = getLevel(rep, index);
+            long fingerprint = KWiseHash.mulMod(field, fingerprintHashes[rep].hash(index));
+            // an item at level l survives in rows 0..l, i.e. in row j with probability 2^-j
+            for(int row=0, cell=offset; row<=level; row++, cell+=CELLS_PER_ROW) {
+                sketch[cell] += value;
+                sketch[cell+1] += value * index;
+                sketch[cell+2] = KWiseHash.addMod(sketch[cell+2], fingerprint);
+            }
+        }
+    }
+
+    /***
+     * add source sketch into target sketch, in place
+     */
+    void merge(long[] target, int targetOffset, long[] source, int sourceOffset) {
+        int size = getSketchSize();
+        for(int i=0; i<size; i+=CELLS_PER_ROW) {
+            target[targetOffset+i] += source[sourceOffset+i];
+            target[targetOffset+i+1] += source[sourceOffset+i+1];
+            target[targetOffset+i+2] = KWiseHash.addMod(target[targetOffset+i+2], source[sourceOffset+i+2]);
+        }
+    }
+
+    /***
+     * subtract source sketch from target sketch, in place
+     */
+    void subtract(long[] target, int targetOffset, long[] source, int sourceOffset) {
+        int size = getSketchSize();
+        for(int i=0; i<size; i+=CELLS_PER_ROW) {
+            target[targetOffset+i] -= source[sourceOffset+i];
+            target[targetOffset+i+1] -= source[sourceOffset+i+1];
+            target[targetOffset+i+2] = KWiseHash.subMod(target[targetOffset+i+2], source[sourceOffset+i+2]);
+        }
+    }
+
+    /***
+     * return index of a non-zero element from hashed mode sketch
+     * @param sketch L0-sampling sketch
+     * @return index of non-zero element, or -1 if no such element found
+     */
+    long sampleItem(long[] sketch) {
+        return sampleItem(sketch, 0, null);
+    }
+
+    /***
+     * return index of a non-zero element from hashed mode sketch stored at offset
+     */
+    long sampleItem(long[] sketch, int offset) {
+        return sampleItem(sketch, offset, null);
+    }
+
+    /***
+     * return index of a non-zero element from hashed mode sketch stored at offset, trying each repetition in turn
+     * a row is trusted only if it holds exactly one surviving item: the index-sum must be a multiple of the count,
+     * the recovered index must hash to this row and its fingerprint must match. Candidates rejected by the last two
+     * checks are counted as false positives.
+     * @param stats counters to update, may be null
+     * @return index of non-zero element, or -1 if the vector is zero or no repetition isolated an element
+     */
+    long sampleItem(long[] sketch, int offset, SamplerStats stats) {
+        for(int rep=0, start=offset; rep<numRepetitions; rep++, start+=numRows*CELLS_PER_ROW) {
+            for(int row=0, cell=start; row<numRows; row++, cell+=CELLS_PER_ROW) {
+                long count = sketch[cell];
+                if(count == 0 || sketch[cell+1] % count != 0) {
+                    continue;
+                }
+                long index = sketch[cell+1] / count;
+                if(index < 0 || index >= numColumns) {
+                    continue;
+                }
+                if(getLevel(rep, index) >= row && KWiseHash.mulMod(KWiseHash.toField(count),
+                        fingerprintHashes[rep].hash(index)) == sketch[cell+2]) {
+                    if(stats != null) {
+                        stats.recordSuccess();
+                    }
+                    return index;
+                }
+                if(stats != null) {
+                    stats.recordFalsePositive();
+                }
+            }
+        }
+        if(stats != null) {
+            if(isEmpty(sketch, offset)) {
+                stats.recordEmpty();
+            } else {
+                stats.recordFailure();
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * value of the entry at given index, read from a row of hashed mode sketch where it is the only surviving item,
+     * e.g. to get the value of an item that sampleItem returned
+     * @return value of the entry, or 0 if no row isolates it
+     */
+    long getValue(long[] sketch, int offset, long index) {
+        for(int rep=0, start=offset; rep<numRepetitions; rep++, start+=numRows*CELLS_PER_ROW) {
+            for(int row=0, cell=start; row<numRows; row++, cell+=CELLS_PER_ROW) {
+                long count = sketch[cell];
+                if(count != 0 && sketch[cell+1] == count * index && getLevel(rep, index) >= row &&
+                        KWiseHash.mulMod(KWiseHash.toField(count), fingerprintHashes[rep].hash(index)) ==
+                                sketch[cell+2]) {
+                    return count;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /***
+     * check whether the sketched vector is zero; row 0 holds every item, so a zero vector leaves it all zero, while a
+     * non-zero vector leaves a non-zero fingerprint with high probability
+     */
+    boolean isEmpty(long[] sketch, int offset) {
+        return sketch[offset] == 0 && sketch[offset+1] == 0 && sketch[offset+2] == 0;
+    }
+
+    /***
+     * level of an item is the number of trailing zeros of its hash in the given repetition, capped at the deepest row
+     */
+    private int getLevel(int rep, long index) {
+        int level = Long.numberOfTrailingZeros(levelHashes[rep].hash(index));
+        return level < numRows ? level : numRows - 1;
+    }
 }
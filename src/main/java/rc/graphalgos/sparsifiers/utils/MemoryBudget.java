@@ -0,0 +1,224 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import rc.graphalgos.sparsifiers.EdgeStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/***
+ * fits node sketches into a memory budget. Given the # of nodes, the plan picks, in order of preference:
+ * the most repetitions (up to a maximum) at full sketch depth that fit on the heap; else a single repetition at the
+ * deepest depth that fits, down to the depth of a single node vector; else full depth sketches spilled to a
+ * memory-mapped file, with as many pages cached on the heap as the budget allows. A budget that can't be met in any
+ * of these ways is rejected up front with the reason, instead of running into an OutOfMemoryError later.
+ * The heap estimate counts the node sketches twice - a spanning forest run works on a copy - plus a fixed amount of
+ * bookkeeping per node.
+ */
+public class MemoryBudget {
+    // disjoint-set, per round arrays and component lists of a spanning forest run
+    static final long OVERHEAD_PER_NODE = 64;
+    private static final int SPILL_PAGE_CELLS = 1 << 20;    //8 MiB pages at most
+    private static final int MIN_CACHED_PAGES = 16;
+    private static final long MiB = 1024L * 1024L;
+    private long budgetBytes;
+    private long maxHeapBytes;
+    private int numRepetitions;
+    private int numRows;
+    private int numCachedPages;
+    private int pageCells;
+    private long sketchBytes;
+
+    /***
+     * default constructor
+     * @param budgetBytes heap the sketches and their bookkeeping may take, in bytes
+     */
+    public MemoryBudget(long budgetBytes) {
+        this(budgetBytes, Runtime.getRuntime().maxMemory());
+    }
+
+    /***
+     * constructor with an explicit heap limit
+     * @param maxHeapBytes largest heap of this JVM
+     */
+    MemoryBudget(long budgetBytes, long maxHeapBytes) {
+        this.budgetBytes = budgetBytes;
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    /***
+     * choose sketch repetitions, depth and spilling for the given graph
+     * @param numNodes # of nodes in graph
+     * @param maxRepetitions most repetitions worth having, see SpanningForest.setErrorProbability
+     * @param spillDir directory for a spill file, or null if the sketches must stay on the heap
+     * @throws IllegalStateException if the budget can't be met
+     */
+    public void plan(int numNodes, int maxRepetitions, File spillDir) {
+        if(budgetBytes > maxHeapBytes) {
+            throw new IllegalStateException(String.format("Memory budget of %d MiB exceeds the maximum heap of %d " +
+                    "MiB - raise -Xmx or lower the budget", budgetBytes / MiB, maxHeapBytes / MiB));
+        }
+        long overhead = numNodes * OVERHEAD_PER_NODE;
+        if(overhead >= budgetBytes) {
+            throw new IllegalStateException(String.format("%d nodes need at least %d MiB for bookkeeping alone, " +
+                    "budget is %d MiB", numNodes, overhead / MiB + 1, budgetBytes / MiB));
+        }
+        long available = budgetBytes - overhead;
+        numCachedPages = 0;
+        int defaultRows = NodeSketches.getDefaultRowCount(numNodes);
+        for(int reps=maxRepetitions; reps>=1; reps--) {
+            if(fits(numNodes, reps, defaultRows, available)) {
+                return;
+            }
+        }
+        for(int rows=defaultRows-1; rows>=NodeSketches.getMinRowCount(numNodes); rows--) {
+            if(fits(numNodes, 1, rows, available)) {
+                return;
+            }
+        }
+        long minBytes = 2L * numNodes * NodeSketches.getBytesPerNode(numNodes, 1,
+                NodeSketches.getMinRowCount(numNodes));
+        if(spillDir == null) {
+            throw new IllegalStateException(String.format("%d nodes need %d MiB of sketches even at minimum depth, " +
+                    "budget leaves %d MiB - give a spill directory or raise the budget", numNodes, minBytes / MiB + 1,
+                    available / MiB));
+        }
+        numRepetitions = 1;
+        numRows = defaultRows;
+        long bytesPerNode = NodeSketches.getBytesPerNode(numNodes, numRepetitions, numRows);
+        int stride = (int)(bytesPerNode / Long.BYTES);
+        // pages small enough for the cache to hold a good number of them, so that eviction isn't all it does
+        long maxPageCells = Math.min(SPILL_PAGE_CELLS, available / 2 / MIN_CACHED_PAGES / Long.BYTES);
+        pageCells = (int)Math.max(stride, Long.highestOneBit(Math.max(1, maxPageCells / stride)) * stride);
+        numCachedPages = (int)Math.min(Integer.MAX_VALUE, available / 2 / ((long)pageCells * Long.BYTES));
+        if(numCachedPages < 2) {
+            throw new IllegalStateException(String.format("Spilled sketches need at least %d MiB to cache 2 pages of " +
+                    "2 copies, budget leaves %d MiB", 4L * pageCells * Long.BYTES / MiB + 1, available / MiB));
+        }
+        sketchBytes = numNodes * bytesPerNode;
+        long diskBytes = 2 * sketchBytes;
+        if(spillDir.getUsableSpace() < diskBytes) {
+            throw new IllegalStateException(String.format("Spilled sketches need %d MiB in %s, %d MiB free",
+                    diskBytes / MiB + 1, spillDir, spillDir.getUsableSpace() / MiB));
+        }
+    }
+
+    private boolean fits(int numNodes, int reps, int rows, long available) {
+        long bytes = numNodes * NodeSketches.getBytesPerNode(numNodes, reps, rows);
+        if(2 * bytes > available) {
+            return false;
+        }
+        numRepetitions = reps;
+        numRows = rows;
+        sketchBytes = bytes;
+        return true;
+    }
+
+    /***
+     * plan and create empty node sketches that fit the budget
+     * @param numNodes # of nodes in graph
+     * @param seed seed of the sketch hash functions
+     * @param maxRepetitions most repetitions worth having
+     * @param spillDir directory for a spill file, or null if the sketches must stay on the heap
+     * @throws IllegalStateException if the budget can't be met
+     * @throws IOException if the spill file can't be created
+     */
+    public NodeSketches createNodeSketches(int numNodes, long seed, int maxRepetitions, File spillDir)
+            throws IOException {
+        plan(numNodes, maxRepetitions, spillDir);
+        if(!isSpilled()) {
+            return new NodeSketches(numNodes, seed, numRepetitions, numRows);
+        }
+        int stride = (int)(NodeSketches.getBytesPerNode(numNodes, numRepetitions, numRows) / Long.BYTES);
+        SketchStore store = new SpilledSketchStore(numNodes, stride, pageCells, numCachedPages, spillDir);
+        return new NodeSketches(numNodes, seed, numRepetitions, numRows, store);
+    }
+
+    /***
+     * parse a size such as 512m, 4g or 1048576
+     * @return size in bytes
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long unit = 1;
+        char suffix = value.charAt(value.length() - 1);
+        if(suffix == 'k' || suffix == 'm' || suffix == 'g') {
+            unit = suffix == 'k' ? 1024L : suffix == 'm' ? MiB : 1024L * MiB;
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value) * unit;
+    }
+
+    public int getRepetitionCount() {
+        return numRepetitions;
+    }
+
+    public int getRowCount() {
+        return numRows;
+    }
+
+    public boolean isSpilled() {
+        return numCachedPages > 0;
+    }
+
+    /***
+     * @return # of spill file pages cached on the heap, 0 if the sketches aren't spilled
+     */
+    public int getCachedPageCount() {
+        return numCachedPages;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("budget %d MiB: %d repetitions, %d rows, %d MiB of sketches%s", budgetBytes / MiB,
+                numRepetitions, numRows, sketchBytes / MiB, isSpilled() ? String.format(", spilled with %d cached " +
+                        "pages of %d KiB", numCachedPages, (long)pageCells * Long.BYTES / 1024) : " on the heap");
+    }
+
+    /***
+     * stream an edge file into sketches that fit a memory budget and find its connected components
+     * Usage: edgeFile numVertexIds budget [spillDir] [maxRepetitions]
+     */
+    public static void main(String args[]) {
+        if(args.length < 3 || args.length > 5) {
+            System.err.println("Usage: edgeFile numVertexIds budget [spillDir] [maxRepetitions]");
+            System.exit(2);
+        }
+        int numNodes = Integer.parseInt(args[1]);
+        MemoryBudget memoryBudget = new MemoryBudget(parseSize(args[2]));
+        File spillDir = args.length > 3 ? new File(args[3]) : null;
+        int maxRepetitions = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        NodeSketches nodeSketches;
+        try {
+            nodeSketches = memoryBudget.createNodeSketches(numNodes, 1152L, maxRepetitions, spillDir);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.out.println("IO error creating spill file");
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
+        System.out.println("Plan: " + memoryBudget);
+        EdgeStream edgeStream = new EdgeStream(numNodes);
+        try {
+            edgeStream.streamEdges(args[0], nodeSketches);
+        } catch (IOException e) {
+            System.out.println("IO error accessing input file");
+            e.printStackTrace();
+            nodeSketches.close();
+            System.exit(1);
+            return;
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, nodeSketches.getSeed());
+        List<List<Integer>> components = spanningForest.findSpanningForest(nodeSketches);
+        nodeSketches.close();
+        System.out.println("Connected components: " + components.size());
+        System.out.println("Sampler: " + spanningForest.getSamplerStats());
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        System.out.println("Memory usage: " + (runtime.totalMemory() - runtime.freeMemory()) / MiB + " MiB");
+    }
+}
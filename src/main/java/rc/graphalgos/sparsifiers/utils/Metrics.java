@@ -0,0 +1,224 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * run metrics: per-phase wall time and allocation, named counters, Boruvka round statistics and sampler outcomes.
+ * Timing is per phase, not per edge, and counters are meant to be bumped once per phase with a total the caller kept
+ * in a local, so hot loops pay nothing. A counter named phase.name also yields a rate, phase.name_per_sec, over the
+ * wall time of that phase. Phases of the same name add up.
+ * Allocation is the sum over all live threads of com.sun.management.ThreadMXBean's allocated bytes, so it includes
+ * parallel phases as long as their pool threads outlive the phase; it is -1 on JVMs without allocation counters.
+ * snapshot() flattens everything into one map, which toJson() and toCsv() print.
+ */
+public class Metrics {
+    private static final java.lang.management.ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private final Map<String, long[]> phases = new LinkedHashMap<>();   //name -> {wall nanos, allocated bytes, runs}
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+    private List<RoundStats> roundStats;
+    private SamplerStats samplerStats;
+
+    /***
+     * timer of a single run of a phase, recorded when closed
+     */
+    public class Phase implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+
+        private Phase(String name) {
+            this.name = name;
+            startAllocatedBytes = getAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long wallNanos = System.nanoTime() - startNanos;
+            // threads that ended during the phase take their counts with them, which may leave a negative difference
+            long allocatedBytes = startAllocatedBytes < 0 ? -1 :
+                    Math.max(0, getAllocatedBytes() - startAllocatedBytes);
+            recordPhase(name, wallNanos, allocatedBytes);
+        }
+
+        /***
+         * add to the counter "<phase>.<counter>", which then also gets a rate over the phase's time
+         * @param counter counter name within the phase, e.g. edges
+         * @param delta amount to add
+         */
+        public void count(String counter, long delta) {
+            Metrics.this.count(name + "." + counter, delta);
+        }
+    }
+
+    /***
+     * start timing a phase, to be used in try-with-resources
+     * @param name phase name, e.g. ingest
+     */
+    public Phase startPhase(String name) {
+        return new Phase(name);
+    }
+
+    /***
+     * add time measured by the caller to a phase, e.g. the busy time of a worker thread; adds no allocation
+     * @param name phase name
+     * @param nanos time spent in the phase
+     */
+    public void recordPhase(String name, long nanos) {
+        recordPhase(name, nanos, 0);
+    }
+
+    private synchronized void recordPhase(String name, long wallNanos, long allocatedBytes) {
+        long[] phase = phases.computeIfAbsent(name, key -> new long[3]);
+        phase[0] += wallNanos;
+        phase[1] = phase[1] < 0 || allocatedBytes < 0 ? -1 : phase[1] + allocatedBytes;
+        phase[2]++;
+    }
+
+    /***
+     * add to a counter
+     * @param name counter name, e.g. ingest.edges
+     */
+    public void count(String name, long delta) {
+        LongAdder counter;
+        synchronized(this) {
+            counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        }
+        counter.add(delta);
+    }
+
+    /***
+     * keep the rounds of a spanning forest run, replacing those of an earlier run
+     */
+    public synchronized void recordRounds(List<RoundStats> roundStats) {
+        this.roundStats = roundStats;
+    }
+
+    /***
+     * keep the sampler outcomes of a spanning forest run, replacing those of an earlier run
+     */
+    public synchronized void recordSampler(SamplerStats samplerStats) {
+        this.samplerStats = samplerStats;
+    }
+
+    /***
+     * @return total wall time of a phase, 0 if it never ran
+     */
+    public synchronized long getPhaseNanos(String name) {
+        long[] phase = phases.get(name);
+        return phase == null ? 0 : phase[0];
+    }
+
+    /***
+     * @return bytes allocated during a phase, -1 if unknown
+     */
+    public synchronized long getPhaseAllocatedBytes(String name) {
+        long[] phase = phases.get(name);
+        return phase == null ? 0 : phase[1];
+    }
+
+    public synchronized long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /***
+     * @return all metrics under flat names - phase.wall_ms, phase.allocated_bytes, counters, their rates, round.r.*
+     * and sampler.* - in the order they were first recorded
+     */
+    public synchronized Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new LinkedHashMap<>();
+        for(Map.Entry<String, long[]> phase: phases.entrySet()) {
+            String name = phase.getKey();
+            snapshot.put(name + ".wall_ms", phase.getValue()[0] / 1e6);
+            snapshot.put(name + ".allocated_bytes", phase.getValue()[1]);
+            snapshot.put(name + ".runs", phase.getValue()[2]);
+        }
+        for(Map.Entry<String, LongAdder> counter: counters.entrySet()) {
+            String name = counter.getKey();
+            long count = counter.getValue().sum();
+            snapshot.put(name, count);
+            int dot = name.indexOf('.');
+            long[] phase = dot > 0 ? phases.get(name.substring(0, dot)) : null;
+            if(phase != null && phase[0] > 0) {
+                snapshot.put(name + "_per_sec", count * 1e9 / phase[0]);
+            }
+        }
+        if(roundStats != null) {
+            snapshot.put("rounds", roundStats.size());
+            for(RoundStats stats: roundStats) {
+                String prefix = "round." + stats.getRound() + ".";
+                snapshot.put(prefix + "super_nodes", stats.getSuperNodeCount());
+                snapshot.put(prefix + "edges_sampled", stats.getEdgesSampled());
+                snapshot.put(prefix + "sampler_failures", stats.getSamplerFailures());
+                snapshot.put(prefix + "wall_ms", stats.getWallTimeNanos() / 1e6);
+            }
+        }
+        if(samplerStats != null) {
+            snapshot.put("sampler.successes", samplerStats.getSuccessCount());
+            snapshot.put("sampler.failures", samplerStats.getFailureCount());
+            snapshot.put("sampler.empty", samplerStats.getEmptyCount());
+            snapshot.put("sampler.false_positives", samplerStats.getFalsePositiveCount());
+            snapshot.put("sampler.success_rate", samplerStats.getSuccessRate());
+        }
+        return snapshot;
+    }
+
+    /***
+     * @return snapshot as a flat JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for(Map.Entry<String, Number> metric: snapshot().entrySet()) {
+            json.append(json.length() > 1 ? ",\n  \"" : "\n  \"").append(metric.getKey()).append("\": ")
+                    .append(metric.getValue());
+        }
+        return json.append("\n}\n").toString();
+    }
+
+    /***
+     * @return snapshot as CSV lines of metric,value
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("metric,value\n");
+        for(Map.Entry<String, Number> metric: snapshot().entrySet()) {
+            csv.append(metric.getKey()).append(',').append(metric.getValue()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /***
+     * write the snapshot to a file, as JSON if its name ends with .json and as CSV otherwise
+     * @throws IOException if the file can't be written
+     */
+    public void write(String file) throws IOException {
+        try(Writer writer = new FileWriter(file)) {
+            writer.write(file.endsWith(".json") ? toJson() : toCsv());
+        }
+    }
+
+    /***
+     * @return bytes allocated so far by all live threads, -1 if the JVM doesn't count them
+     */
+    private static long getAllocatedBytes() {
+        if(!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)THREAD_MX_BEAN;
+        if(!threadMXBean.isThreadAllocatedMemorySupported() || !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for(long bytes: threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,102 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Arrays;
+
+/***
+ * dense renumbering of node ids: maps arbitrary long ids, e.g. the sparse ids of a SNAP file, to node numbers 1..n in
+ * order of first appearance, and back. Primitive open addressing table, no boxing.
+ */
+public class NodeIdMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private long[] keys;
+    private int[] nodeNums;
+    private long[] ids;
+    private int size;
+
+    /***
+     * default constructor
+     */
+    public NodeIdMap() {
+        this(1024);
+    }
+
+    /***
+     * constructor with an expected # of nodes
+     */
+    public NodeIdMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) * 2 - 1) << 1;
+        keys = new long[capacity];
+        nodeNums = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        ids = new long[Math.max(expectedSize, 16)];
+    }
+
+    /***
+     * @param id original node id
+     * @return node number of id, assigning the next free number if id is new
+     */
+    public int getOrAdd(long id) {
+        int slot = findSlot(id);
+        if(keys[slot] == id) {
+            return nodeNums[slot];
+        }
+        keys[slot] = id;
+        nodeNums[slot] = ++size;
+        if(size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[size] = id;
+        if(size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return size;
+    }
+
+    /***
+     * @return node number of id, or 0 if id was never added
+     */
+    public int get(long id) {
+        int slot = findSlot(id);
+        return keys[slot] == id ? nodeNums[slot] : 0;
+    }
+
+    /***
+     * @param nodeNum node number, starting at 1
+     * @return original id of node
+     */
+    public long getId(int nodeNum) {
+        return ids[nodeNum];
+    }
+
+    /***
+     * @return # of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    private int findSlot(long id) {
+        int mask = keys.length - 1;
+        long hash = id * 0x9E3779B97F4A7C15L;
+        int slot = (int)(hash ^ (hash >>> 32)) & mask;
+        while(keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldNodeNums = nodeNums;
+        keys = new long[capacity];
+        nodeNums = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        for(int slot=0; slot<oldKeys.length; slot++) {
+            if(oldKeys[slot] != EMPTY) {
+                int newSlot = findSlot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                nodeNums[newSlot] = oldNodeNums[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Random;
+
+/***
+ * L0 sketches of every node vector of a graph, kept up to date one edge update at a time.
+ * Node vectors are never materialized: an edge (u, v) with u < v only touches the sketches of u (+value) and v
+ * (-value), so an update costs O(# sketches * sketch depth) and the whole structure is O(n log^2 n) words.
+ * Nodes are numbered from 1 to numNodes, as in GraphStream. All sketches of all nodes live in one SketchStore, a node's
+ * sketches one after another in its slot.
+ */
+public class NodeSketches {
+    private int numNodes;
+    private long seed;
+    private int numRepetitions;
+    private int numRows;
+    private LzeroSampler[] lzeroSamplers;
+    private SketchStore sketches;
+    private int sketchSize;
+
+    /***
+     * default constructor
+     * @param numNodes # of nodes in graph
+     * @param seed seed of the sketch hash functions; equal seeds give identical sketches
+     */
+    public NodeSketches(int numNodes, long seed) {
+        this(numNodes, seed, 1);
+    }
+
+    /***
+     * constructor with independent repetitions per sampler, trading space and update time for sampling reliability
+     * @param numNodes # of nodes in graph
+     * @param seed seed of the sketch hash functions; equal seeds give identical sketches
+     * @param numRepetitions # of repetitions of every sketch
+     */
+    public NodeSketches(int numNodes, long seed, int numRepetitions) {
+        this(numNodes, seed, numRepetitions, getDefaultRowCount(numNodes));
+    }
+
+    /***
+     * constructor with an explicit sketch depth. Fewer rows save space, but a super-node whose cut has many more
+     * than 2^numRows edges can't be sampled
+     * @param numNodes # of nodes in graph
+     * @param seed seed of the sketch hash functions; equal seeds give identical sketches
+     * @param numRepetitions # of repetitions of every sketch
+     * @param numRows # of levels of every sketch
+     */
+    public NodeSketches(int numNodes, long seed, int numRepetitions, int numRows) {
+        this.numNodes = numNodes;
+        this.seed = seed;
+        this.numRepetitions = numRepetitions;
+        this.numRows = numRows;
+        lzeroSamplers = createSamplers(numNodes, seed, numRepetitions, numRows);
+        sketchSize = lzeroSamplers.length == 0 ? 0 : lzeroSamplers[0].getSketchSize();
+        sketches = new SketchStore(numNodes, lzeroSamplers.length * sketchSize);
+    }
+
+    /***
+     * constructor over existing sketch cells, e.g. those of a checkpoint or a spill file
+     * @param sketches cells of every node, laid out as by a NodeSketches with the same parameters
+     */
+    NodeSketches(int numNodes, long seed, int numRepetitions, int numRows, SketchStore sketches) {
+        this.numNodes = numNodes;
+        this.seed = seed;
+        this.numRepetitions = numRepetitions;
+        this.numRows = numRows;
+        lzeroSamplers = createSamplers(numNodes, seed, numRepetitions, numRows);
+        sketchSize = lzeroSamplers.length == 0 ? 0 : lzeroSamplers[0].getSketchSize();
+        if(sketches.getSlotCount() != numNodes || sketches.getStride() != lzeroSamplers.length * sketchSize) {
+            throw new IllegalArgumentException("Sketch layout doesn't match " + numNodes + " nodes");
+        }
+        this.sketches = sketches;
+    }
+
+    /***
+     * constructor sharing the samplers of other and copying its sketches
+     */
+    private NodeSketches(NodeSketches other) {
+        numNodes = other.numNodes;
+        seed = other.seed;
+        numRepetitions = other.numRepetitions;
+        numRows = other.numRows;
+        lzeroSamplers = other.lzeroSamplers;
+        sketchSize = other.sketchSize;
+        sketches = other.sketches.copy();
+    }
+
+    /***
+     * build log n independent hashed L0 samplers over the n choose 2 edge index space
+     * @param numNodes # of nodes in graph
+     * @param seed master seed
+     * @return samplers, one per sketch
+     */
+    static LzeroSampler[] createSamplers(int numNodes, long seed) {
+        return createSamplers(numNodes, seed, 1);
+    }
+
+    /***
+     * build log n independent hashed L0 samplers with the given # of repetitions each
+     */
+    static LzeroSampler[] createSamplers(int numNodes, long seed, int numRepetitions) {
+        return createSamplers(numNodes, seed, numRepetitions, getDefaultRowCount(numNodes));
+    }
+
+    /***
+     * build log n independent hashed L0 samplers with the given # of repetitions and rows each
+     */
+    static LzeroSampler[] createSamplers(int numNodes, long seed, int numRepetitions, int numRows) {
+        long numColumns = PairCodec.getPairCount(numNodes);
+        Random seeds = new Random(seed);
+        LzeroSampler[] samplers = new LzeroSampler[computeSketchCount(numNodes)];
+        for(int i=0; i<samplers.length; i++) {
+            samplers[i] = new LzeroSampler(numRows, numColumns, seeds.nextLong(), numRepetitions);
+        }
+        return samplers;
+    }
+
+    /***
+     * @return # of independent sketches per node, one per Boruvka round
+     */
+    static int computeSketchCount(int numNodes) {
+        return Math.max((int)Math.ceil(Math.log(numNodes)/Math.log(2.0d)), 0);
+    }
+
+    /***
+     * @return # of levels needed to sample from any vector over the n choose 2 edge index space
+     */
+    public static int getDefaultRowCount(int numNodes) {
+        long numColumns = PairCodec.getPairCount(numNodes);
+        return (int)Math.ceil(Math.log(Math.max(numColumns, 2))/Math.log(2.0d)) + 2;
+    }
+
+    /***
+     * @return # of levels needed to sample from any single node vector, whose degree is below n
+     */
+    public static int getMinRowCount(int numNodes) {
+        return (int)Math.ceil(Math.log(Math.max(numNodes, 2))/Math.log(2.0d)) + 2;
+    }
+
+    /***
+     * @return space taken by the sketches of a single node
+     */
+    public static long getBytesPerNode(int numNodes, int numRepetitions, int numRows) {
+        return (long)computeSketchCount(numNodes) * numRepetitions * numRows * LzeroSampler.CELLS_PER_ROW * Long.BYTES;
+    }
+
+    /***
+     * apply an edge update to the sketches of both endpoints
+     * @param node1 first node of edge
+     * @param node2 second node of edge
+     * @param value +1 for an insertion, -1 for a deletion; any other value is a weight the sampled edge carries
+     */
+    public void update(int node1, int node2, long value) {
+        if(node1 == node2) {
+            return;
+        }
+        int first = Math.min(node1, node2);
+        int second = Math.max(node1, node2);
+        long edgeIndex = PairCodec.encode(first, second, numNodes);
+        long[] firstPage = sketches.getPage(first-1);
+        long[] secondPage = sketches.getPage(second-1);
+        int firstOffset = sketches.getOffset(first-1);
+        int secondOffset = sketches.getOffset(second-1);
+        for(int sketchId=0; sketchId<lzeroSamplers.length; sketchId++) {
+            lzeroSamplers[sketchId].update(firstPage, firstOffset, edgeIndex, value);
+            lzeroSamplers[sketchId].update(secondPage, secondOffset, edgeIndex, -value);
+            firstOffset += sketchSize;
+            secondOffset += sketchSize;
+        }
+    }
+
+    /***
+     * apply the half of an edge update that falls on one endpoint; both halves make up update(node, neighbor, value).
+     * Threads that own disjoint node ranges may apply halves at the same time, as long as the sketches are on the heap
+     * @param node endpoint whose sketches are updated
+     * @param neighbor other endpoint of edge
+     * @param value +1 for an insertion, -1 for a deletion
+     */
+    public void updateEndpoint(int node, int neighbor, long value) {
+        if(node == neighbor) {
+            return;
+        }
+        long edgeIndex = PairCodec.encode(Math.min(node, neighbor), Math.max(node, neighbor), numNodes);
+        addToNode(node, edgeIndex, node < neighbor ? value : -value);
+    }
+
+    /***
+     * add value to a single entry of one node's vector, e.g. when sketching a materialized node vector
+     * @param node node number, starting at 1
+     * @param edgeIndex index of the entry in the n choose 2 space
+     * @param value value to add
+     */
+    void addToNode(int node, long edgeIndex, long value) {
+        long[] page = sketches.getPage(node-1);
+        int offset = sketches.getOffset(node-1);
+        for(int sketchId=0; sketchId<lzeroSamplers.length; sketchId++, offset+=sketchSize) {
+            lzeroSamplers[sketchId].update(page, offset, edgeIndex, value);
+        }
+    }
+
+    /***
+     * add the sketches of source node to those of target node in place, starting at the given sketch
+     * @param targetNode node number receiving the sum
+     * @param sourceNode node number whose sketches are added
+     * @param fromSketchId first sketch to merge; earlier sketches of target are left as they are
+     */
+    void merge(int targetNode, int sourceNode, int fromSketchId) {
+        long[] targetPage = sketches.getPage(targetNode-1);
+        long[] sourcePage = sketches.getPage(sourceNode-1);
+        int targetOffset = getOffset(targetNode, fromSketchId);
+        int sourceOffset = getOffset(sourceNode, fromSketchId);
+        for(int sketchId=fromSketchId; sketchId<lzeroSamplers.length; sketchId++) {
+            lzeroSamplers[sketchId].merge(targetPage, targetOffset, sourcePage, sourceOffset);
+            targetOffset += sketchSize;
+            sourceOffset += sketchSize;
+        }
+    }
+
+    /***
+     * add all sketches of other, built with the same # of nodes, seed and depth, to these in place. Sketches are
+     * linear, so the sum is the sketch of the union of both update streams
+     * @param other sketches to add, e.g. those of another shard
+     */
+    public void add(NodeSketches other) {
+        checkCompatible(other);
+        for(int node=1; node<=numNodes; node++) {
+            long[] targetPage = sketches.getPage(node-1);
+            long[] sourcePage = other.sketches.getPage(node-1);
+            // the stores may page their slots differently, e.g. a spilled store and a heap one
+            int targetOffset = sketches.getOffset(node-1);
+            int sourceOffset = other.sketches.getOffset(node-1);
+            for(int sketchId=0; sketchId<lzeroSamplers.length; sketchId++) {
+                lzeroSamplers[sketchId].merge(targetPage, targetOffset, sourcePage, sourceOffset);
+                targetOffset += sketchSize;
+                sourceOffset += sketchSize;
+            }
+        }
+    }
+
+    /***
+     * subtract all sketches of other, built with the same # of nodes, seed and depth, from these in place, which
+     * leaves the sketch of this update stream with the updates of other's stream undone
+     * @param other sketches to subtract, e.g. those of an expired part of the stream
+     */
+    public void subtract(NodeSketches other) {
+        checkCompatible(other);
+        for(int node=1; node<=numNodes; node++) {
+            long[] targetPage = sketches.getPage(node-1);
+            long[] sourcePage = other.sketches.getPage(node-1);
+            // the stores may page their slots differently, e.g. a spilled store and a heap one
+            int targetOffset = sketches.getOffset(node-1);
+            int sourceOffset = other.sketches.getOffset(node-1);
+            for(int sketchId=0; sketchId<lzeroSamplers.length; sketchId++) {
+                lzeroSamplers[sketchId].subtract(targetPage, targetOffset, sourcePage, sourceOffset);
+                targetOffset += sketchSize;
+                sourceOffset += sketchSize;
+            }
+        }
+    }
+
+    private void checkCompatible(NodeSketches other) {
+        if(other.numNodes != numNodes || other.seed != seed || other.numRepetitions != numRepetitions ||
+                other.numRows != numRows) {
+            throw new IllegalArgumentException("Can't merge sketches of " + other.numNodes + " nodes, seed " +
+                    other.seed + ", " + other.numRepetitions + " repetitions, " + other.numRows + " rows into " +
+                    "sketches of " + numNodes + " nodes, seed " + seed + ", " + numRepetitions + " repetitions, " +
+                    numRows + " rows");
+        }
+    }
+
+    /***
+     * reset the sketches of all nodes to those of the empty graph
+     */
+    public void clear() {
+        sketches.clear();
+    }
+
+    /***
+     * sample an edge from one sketch of a node
+     * @return edge index, or -1 if sampling failed or the node has no edge
+     */
+    long sample(int node, int sketchId) {
+        return sample(node, sketchId, null);
+    }
+
+    /***
+     * sample an edge from one sketch of a node, recording the outcome
+     * @param stats counters to update, may be null
+     */
+    long sample(int node, int sketchId, SamplerStats stats) {
+        return lzeroSamplers[sketchId].sampleItem(sketches.getPage(node-1), getOffset(node, sketchId), stats);
+    }
+
+    /***
+     * @return value of a sampled edge in one sketch of a node, e.g. its weight for sketches updated with weights; the
+     * sign tells which end of the edge is in the node
+     */
+    long getValue(int node, int sketchId, long edgeIndex) {
+        return lzeroSamplers[sketchId].getValue(sketches.getPage(node-1), getOffset(node, sketchId), edgeIndex);
+    }
+
+    /***
+     * @return true if the given sketch of node has no edge at all
+     */
+    boolean isEmpty(int node, int sketchId) {
+        return lzeroSamplers[sketchId].isEmpty(sketches.getPage(node-1), getOffset(node, sketchId));
+    }
+
+    /***
+     * @return deep copy of the sketches, sharing the samplers
+     */
+    public NodeSketches copy() {
+        return new NodeSketches(this);
+    }
+
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getRowCount() {
+        return numRows;
+    }
+
+    public int getRepetitionCount() {
+        return numRepetitions;
+    }
+
+    public int getSketchCount() {
+        return lzeroSamplers.length;
+    }
+
+    /***
+     * @return space taken by the sketches of all nodes
+     */
+    public long getSizeInBytes() {
+        return sketches.getSizeInBytes();
+    }
+
+    /***
+     * release the resources backing the sketches, e.g. a spill file; the sketches can't be used afterwards
+     */
+    public void close() {
+        sketches.close();
+    }
+
+    SketchStore getStore() {
+        return sketches;
+    }
+
+    /***
+     * @param node node number, starting at 1
+     * @return copy of all sketches of node, laid out one after another
+     */
+    long[] getSketches(int node) {
+        return sketches.getSlot(node-1);
+    }
+
+    /***
+     * @param node node number, starting at 1
+     * @return page holding the sketches of node
+     */
+    long[] getPage(int node) {
+        return sketches.getPage(node-1);
+    }
+
+    /***
+     * @return position of the given sketch of node within its page
+     */
+    int getOffset(int node, int sketchId) {
+        return sketches.getOffset(node-1) + sketchId * sketchSize;
+    }
+
+    LzeroSampler getSampler(int sketchId) {
+        return lzeroSamplers[sketchId];
+    }
+}
@@ -0,0 +1,84 @@
+package rc.graphalgos.sparsifiers.utils;
+
+/***
+ * constant time mapping between a pair of nodes and its index in the n choose 2 space.
+ * Pairs (u, v), 1 <= u < v <= n, are ordered lexicographically: (1,2), (1,3) .. (1,n), (2,3) .. (n-1,n). Counting
+ * pairs from the end of that order turns the first node into a triangular number, which is inverted with an
+ * integer square root. All arithmetic stays below 2^63 for n up to 2^31.
+ */
+public final class PairCodec {
+
+    private PairCodec() {
+    }
+
+    /***
+     * @param numNodes # nodes in graph
+     * @return # of distinct pairs of nodes, n(n-1)/2
+     */
+    public static long getPairCount(long numNodes) {
+        return numNodes * (numNodes - 1) / 2;
+    }
+
+    /***
+     * index of pair (node1, node2), in either order
+     * @param node1 first node, starting at 1
+     * @param node2 second node, starting at 1
+     * @param numNodes # nodes in graph
+     * @return index in [0, n(n-1)/2)
+     */
+    public static long encode(long node1, long node2, long numNodes) {
+        long first = Math.min(node1, node2);
+        long second = Math.max(node1, node2);
+        // pairs starting at first or later number T(n-first), the rest precede this pair
+        return getPairCount(numNodes) - triangular(numNodes - first) + (second - first - 1);
+    }
+
+    /***
+     * smaller node of the pair at given index
+     * @param index pair index
+     * @param numNodes # nodes in graph
+     * @return first node, starting at 1
+     */
+    public static long getFirstNode(long index, long numNodes) {
+        long remaining = getPairCount(numNodes) - 1 - index;
+        return numNodes - 1 - triangularRoot(remaining);
+    }
+
+    /***
+     * larger node of the pair at given index
+     * @param index pair index
+     * @param firstNode smaller node of the pair, as returned by getFirstNode
+     * @param numNodes # nodes in graph
+     * @return second node, starting at 1
+     */
+    public static long getSecondNode(long index, long firstNode, long numNodes) {
+        long pairsBefore = getPairCount(numNodes) - triangular(numNodes - firstNode);
+        return index - pairsBefore + firstNode + 1;
+    }
+
+    /***
+     * @return both nodes of the pair at given index
+     */
+    public static int[] decode(long index, long numNodes) {
+        long firstNode = getFirstNode(index, numNodes);
+        return new int[]{(int)firstNode, (int)getSecondNode(index, firstNode, numNodes)};
+    }
+
+    private static long triangular(long x) {
+        return x * (x + 1) / 2;
+    }
+
+    /***
+     * largest j with j(j+1)/2 <= x; floating point gives the estimate, exact integer steps fix rounding
+     */
+    private static long triangularRoot(long x) {
+        long root = (long)Math.sqrt(2.0d * x);
+        while(root > 0 && triangular(root) > x) {
+            root--;
+        }
+        while(triangular(root + 1) <= x) {
+            root++;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,54 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/***
+ * parallel loop over an int range on a given fork-join pool. The range is split in halves until chunks are small
+ * enough, so idle workers steal large chunks first. Iterations must be independent of each other.
+ */
+public class ParallelFor extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_CHUNK_SIZE = 64;
+    private final int start;
+    private final int end;
+    private final int chunkSize;
+    private final IntConsumer body;
+
+    private ParallelFor(int start, int end, int chunkSize, IntConsumer body) {
+        this.start = start;
+        this.end = end;
+        this.chunkSize = chunkSize;
+        this.body = body;
+    }
+
+    /***
+     * run body for every i in [start, end) and wait for all iterations to finish
+     * @param pool pool to run on; a pool of parallelism 1 runs the loop on the calling thread
+     * @param start first index, inclusive
+     * @param end last index, exclusive
+     * @param body loop body
+     */
+    public static void forEach(ForkJoinPool pool, int start, int end, IntConsumer body) {
+        if(pool.getParallelism() == 1 || end - start <= DEFAULT_CHUNK_SIZE) {
+            for(int i=start; i<end; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        pool.invoke(new ParallelFor(start, end, DEFAULT_CHUNK_SIZE, body));
+    }
+
+    @Override
+    protected void compute() {
+        if(end - start <= chunkSize) {
+            for(int i=start; i<end; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        invokeAll(new ParallelFor(start, middle, chunkSize, body), new ParallelFor(middle, end, chunkSize, body));
+    }
+}
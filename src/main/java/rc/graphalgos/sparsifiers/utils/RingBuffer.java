@@ -0,0 +1,74 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * bounded lock-free queue between exactly one producer thread and one consumer thread, over a power of two array.
+ * Only the producer moves the tail and only the consumer moves the head, each publishing with an ordered store after
+ * it wrote or cleared the slot, so offer and poll never lock, never allocate and never retry. A full queue makes offer
+ * fail, which is how a fast producer gets pushed back.
+ */
+public class RingBuffer<T> {
+    private final Object[] items;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /***
+     * default constructor
+     * @param capacity least # of items the queue holds, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if(capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = 1;
+        while(size < capacity) {
+            size <<= 1;
+        }
+        items = new Object[size];
+        mask = items.length - 1;
+    }
+
+    /***
+     * add an item at the tail; producer thread only
+     * @return false if the queue is full
+     */
+    public boolean offer(T item) {
+        long position = tail.get();
+        if(position - head.get() == items.length) {
+            return false;
+        }
+        items[(int)position & mask] = item;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /***
+     * remove the item at the head; consumer thread only
+     * @return item, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = head.get();
+        if(position == tail.get()) {
+            return null;
+        }
+        int slot = (int)position & mask;
+        T item = (T)items[slot];
+        items[slot] = null;
+        head.lazySet(position + 1);
+        return item;
+    }
+
+    /***
+     * @return # of items in the queue; exact on either end's thread, a recent value on any other
+     */
+    public int size() {
+        return (int)(tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+}
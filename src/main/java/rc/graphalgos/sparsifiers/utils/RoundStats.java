@@ -0,0 +1,54 @@
+package rc.graphalgos.sparsifiers.utils;
+
+/***
+ * statistics of a single Boruvka round of the spanning forest driver
+ */
+public class RoundStats {
+    private final int round;
+    private final int superNodeCount;
+    private final int edgesSampled;
+    private final int samplerFailures;
+    private final long wallTimeNanos;
+
+    /***
+     * default constructor
+     * @param round round number, starting at 1
+     * @param superNodeCount # of super-nodes at the start of the round
+     * @param edgesSampled # of super-nodes that sampled an outgoing edge
+     * @param samplerFailures # of super-nodes with outgoing edges whose sketch returned no edge
+     * @param wallTimeNanos wall time of the round
+     */
+    RoundStats(int round, int superNodeCount, int edgesSampled, int samplerFailures, long wallTimeNanos) {
+        this.round = round;
+        this.superNodeCount = superNodeCount;
+        this.edgesSampled = edgesSampled;
+        this.samplerFailures = samplerFailures;
+        this.wallTimeNanos = wallTimeNanos;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getSuperNodeCount() {
+        return superNodeCount;
+    }
+
+    public int getEdgesSampled() {
+        return edgesSampled;
+    }
+
+    public int getSamplerFailures() {
+        return samplerFailures;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("round %d: %d super-nodes, %d edges sampled, %d sampler failures, %.3f ms", round,
+                superNodeCount, edgesSampled, samplerFailures, wallTimeNanos / 1e6);
+    }
+}
@@ -0,0 +1,79 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * outcome counters of L0 sampling, safe to update from parallel sampling tasks
+ * success: a verified item was returned; failure: the vector is non-zero but no repetition isolated an item;
+ * empty: the vector is zero; false positive: a candidate item that was rejected, either by the sampler's level and
+ * fingerprint checks or by the caller, e.g. a sampled edge that doesn't leave its super-node
+ */
+public class SamplerStats {
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder empties = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    void recordSuccess() {
+        successes.increment();
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordEmpty() {
+        empties.increment();
+    }
+
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /***
+     * a sample the caller found to be wrong: it no longer counts as a success, but as a failure and a false positive
+     */
+    void rejectSuccess() {
+        successes.decrement();
+        failures.increment();
+        falsePositives.increment();
+    }
+
+    public long getSuccessCount() {
+        return successes.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getEmptyCount() {
+        return empties.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /***
+     * @return fraction of samples of non-zero vectors that succeeded, 1 if there were none
+     */
+    public double getSuccessRate() {
+        long successCount = getSuccessCount();
+        long attempts = successCount + getFailureCount();
+        return attempts == 0 ? 1.0d : (double)successCount / attempts;
+    }
+
+    public void reset() {
+        successes.reset();
+        failures.reset();
+        empties.reset();
+        falsePositives.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d successes, %d failures, %d empty, %d false positives, success rate %.4f",
+                getSuccessCount(), getFailureCount(), getEmptyCount(), getFalsePositiveCount(), getSuccessRate());
+    }
+}
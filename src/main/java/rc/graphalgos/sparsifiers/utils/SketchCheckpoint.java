@@ -0,0 +1,134 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/***
+ * binary checkpoint of node sketches together with the position of the stream that built them.
+ * The samplers are fully determined by the # of nodes and the seed, so only those two and the raw sketch cells are
+ * stored; a loaded checkpoint samples exactly like the sketches it was written from.
+ * Layout, little endian: a fixed header of HEADER_LONGS longs (magic, version, # nodes, seed, # sketches,
+ * # repetitions, # rows, cells per node, stream position, # insertions, # deletions) followed by the cells of nodes
+ * 1..n. Cells are copied through memory-mapped regions, one per sketch store page. A checkpoint is written next to its
+ * target and then moved over it, so a crash while writing leaves the previous checkpoint intact.
+ */
+public class SketchCheckpoint {
+    private static final long MAGIC = 0x4b48435354454b53L;    //"SKETSCHK"
+    private static final long VERSION = 3;
+    private static final int HEADER_LONGS = 11;
+    private NodeSketches nodeSketches;
+    private long position;
+    private long numInsertions;
+    private long numDeletions;
+
+    /***
+     * default constructor
+     * @param nodeSketches sketches of every node
+     * @param position stream position the sketches reflect, e.g. # of lines consumed
+     * @param numInsertions # of edge insertions applied so far
+     * @param numDeletions # of edge deletions applied so far
+     */
+    public SketchCheckpoint(NodeSketches nodeSketches, long position, long numInsertions, long numDeletions) {
+        this.nodeSketches = nodeSketches;
+        this.position = position;
+        this.numInsertions = numInsertions;
+        this.numDeletions = numDeletions;
+    }
+
+    /***
+     * write the checkpoint, replacing any earlier checkpoint at the same path
+     * @param checkpointFile path of checkpoint file
+     * @throws IOException if the file can't be written
+     */
+    public void write(String checkpointFile) throws IOException {
+        Path target = Paths.get(checkpointFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        SketchStore store = nodeSketches.getStore();
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = HEADER_LONGS * Long.BYTES;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putLong(VERSION).putLong(nodeSketches.getNodeCount()).putLong(nodeSketches.getSeed())
+                    .putLong(nodeSketches.getSketchCount()).putLong(nodeSketches.getRepetitionCount())
+                    .putLong(nodeSketches.getRowCount()).putLong(store.getStride()).putLong(position)
+                    .putLong(numInsertions).putLong(numDeletions);
+            header.force();
+            for(int page=0; page<store.getPageCount(); page++) {
+                long[] cells = store.getPageAt(page);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                        (long)cells.length * Long.BYTES);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(cells);
+                buffer.force();
+                offset += (long)cells.length * Long.BYTES;
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * load a checkpoint
+     * @param checkpointFile path of checkpoint file
+     * @return the checkpoint, with sketches ready for further updates
+     * @throws IOException if the file can't be read or isn't a valid checkpoint
+     */
+    public static SketchCheckpoint read(String checkpointFile) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(checkpointFile), StandardOpenOption.READ)) {
+            long position = HEADER_LONGS * Long.BYTES;
+            if(channel.size() < position) {
+                throw new IOException("Truncated checkpoint: " + checkpointFile);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, position).order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getLong() != MAGIC || header.getLong() != VERSION) {
+                throw new IOException("Not a sketch checkpoint: " + checkpointFile);
+            }
+            int numNodes = (int)header.getLong();
+            long seed = header.getLong();
+            long numSketches = header.getLong();
+            int numRepetitions = (int)header.getLong();
+            int numRows = (int)header.getLong();
+            int stride = (int)header.getLong();
+            long streamPosition = header.getLong();
+            long numInsertions = header.getLong();
+            long numDeletions = header.getLong();
+            if(numSketches != NodeSketches.computeSketchCount(numNodes) || numRepetitions < 1 || numRows < 1 ||
+                    channel.size() != position + (long)numNodes * stride * Long.BYTES) {
+                throw new IOException("Corrupt checkpoint: " + checkpointFile);
+            }
+            SketchStore store = new SketchStore(numNodes, stride);
+            for(int page=0; page<store.getPageCount(); page++) {
+                long[] cells = store.getPageAt(page);
+                channel.map(FileChannel.MapMode.READ_ONLY, position, (long)cells.length * Long.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(cells);
+                position += (long)cells.length * Long.BYTES;
+            }
+            NodeSketches nodeSketches;
+            try {
+                nodeSketches = new NodeSketches(numNodes, seed, numRepetitions, numRows, store);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt checkpoint: " + checkpointFile, e);
+            }
+            return new SketchCheckpoint(nodeSketches, streamPosition, numInsertions, numDeletions);
+        }
+    }
+
+    public NodeSketches getNodeSketches() {
+        return nodeSketches;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getInsertionCount() {
+        return numInsertions;
+    }
+
+    public long getDeletionCount() {
+        return numDeletions;
+    }
+}
@@ -0,0 +1,143 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.util.Arrays;
+
+/***
+ * fixed-stride store of sketch cells for many slots, e.g. one slot per node. Slots are packed back to back in a few
+ * large long[] pages, so millions of sketches cost a handful of objects and updates never allocate.
+ * A page holds a power of two # of slots, so a slot's page and offset are a shift and a mask away.
+ */
+public class SketchStore {
+    private static final int MAX_PAGE_CELLS = 1 << 27;    //1 GiB of longs per page
+    final int numSlots;
+    final int stride;
+    final int pageShift;
+    final int pageMask;
+    final int numPages;
+    private final long[][] pages;
+
+    /***
+     * default constructor
+     * @param numSlots # of slots
+     * @param stride # of cells per slot
+     */
+    public SketchStore(int numSlots, int stride) {
+        this(numSlots, stride, MAX_PAGE_CELLS);
+    }
+
+    /***
+     * constructor with an explicit page size limit
+     * @param maxPageCells upper bound of the # of cells in a page
+     */
+    SketchStore(int numSlots, int stride, int maxPageCells) {
+        this(numSlots, stride, maxPageCells, true);
+    }
+
+    /***
+     * constructor for stores that keep their pages elsewhere
+     * @param allocate false to leave the pages unallocated
+     */
+    SketchStore(int numSlots, int stride, int maxPageCells, boolean allocate) {
+        if(stride > maxPageCells) {
+            throw new IllegalArgumentException("stride too large: " + stride);
+        }
+        this.numSlots = numSlots;
+        this.stride = stride;
+        int shift = 0;
+        while(shift < 30 && (1 << shift) < numSlots && ((2L << shift) * stride) <= maxPageCells) {
+            shift++;
+        }
+        pageShift = shift;
+        pageMask = (1 << shift) - 1;
+        numPages = numSlots == 0 ? 0 : ((numSlots - 1) >>> shift) + 1;
+        pages = allocate ? new long[numPages][] : null;
+        for(int page=0; allocate && page<numPages; page++) {
+            pages[page] = new long[getPageCells(page)];
+        }
+    }
+
+    /***
+     * @return # of cells of the given page; only the last page may hold fewer slots than the others
+     */
+    int getPageCells(int page) {
+        return Math.min(1 << pageShift, numSlots - (page << pageShift)) * stride;
+    }
+
+    /***
+     * @param slot slot number, starting at 0
+     * @return page holding the slot's cells
+     */
+    public long[] getPage(int slot) {
+        return getPageAt(slot >>> pageShift);
+    }
+
+    /***
+     * @param slot slot number, starting at 0
+     * @return position of the slot's first cell within its page
+     */
+    public int getOffset(int slot) {
+        return (slot & pageMask) * stride;
+    }
+
+    /***
+     * @return deep copy of this store
+     */
+    public SketchStore copy() {
+        SketchStore copy = new SketchStore(numSlots, stride, (pageMask + 1) * stride);
+        for(int page=0; page<numPages; page++) {
+            System.arraycopy(pages[page], 0, copy.pages[page], 0, pages[page].length);
+        }
+        return copy;
+    }
+
+    /***
+     * set every cell to zero
+     */
+    public void clear() {
+        for(int page=0; page<numPages; page++) {
+            Arrays.fill(getPageAt(page), 0L);
+        }
+    }
+
+    /***
+     * release resources backing the store; heap pages are simply left to the garbage collector
+     */
+    public void close() {
+    }
+
+    /***
+     * copy the cells of one slot into a new array
+     */
+    public long[] getSlot(int slot) {
+        long[] cells = new long[stride];
+        System.arraycopy(getPage(slot), getOffset(slot), cells, 0, stride);
+        return cells;
+    }
+
+    int getPageCount() {
+        return numPages;
+    }
+
+    /***
+     * @param page page number, starting at 0
+     * @return cells of the page, in slot order
+     */
+    long[] getPageAt(int page) {
+        return pages[page];
+    }
+
+    public int getSlotCount() {
+        return numSlots;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /***
+     * @return space taken by the cells, wherever they are kept
+     */
+    public long getSizeInBytes() {
+        return (long)numSlots * stride * Long.BYTES;
+    }
+}
@@ -1,189 +1,306 @@
 package rc.graphalgos.sparsifiers.utils;
 
-import org.apache.commons.math3.linear.OpenMapRealMatrix;
-import org.apache.commons.math3.linear.OpenMapRealVector;
 import rc.graphalgos.sparsifiers.GraphStream;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /***
  * generates spanning forest of a graph by sketching
  * author: Ramji Chandrasekaran
  * date: 27-Oct-2017
  */
-class SpanningForest {
+public class SpanningForest {
     private int numNodes;    //# of nodes in graph
-    private LzeroSampler lzeroSampler;
     private int numSketches;
-    private int level=1;
+    private long seed;
+    private int numRepetitions = 1;
+    private LzeroSampler edgeSampler;
+    private SamplerStats samplerStats = new SamplerStats();
+    private long[] forestEdges = new long[0];
+    private long[] forestValues = new long[0];
+    private int numForestEdges;
+    private List<RoundStats> roundStats = new ArrayList<>();
+    private ForkJoinPool forkJoinPool;
+    private Metrics metrics = new Metrics();
     private static final long MiB = 1024L * 1024L;
+    private static final long DEFAULT_SEED = 1152L;
 
     /***
      * default constructor
      * @param graphStream Graph object
      */
     SpanningForest(GraphStream graphStream) {
-        numNodes = graphStream.getNodeCount();
-        int numColumns = (numNodes * (numNodes - 1)) / 2;
-        numSketches = (int)Math.ceil(Math.log(numNodes)/Math.log(2.0d));
-        lzeroSampler = new LzeroSampler(numSketches, numColumns);
+        this(graphStream, DEFAULT_SEED);
     }
 
     /***
-     * build log n sketch matrices
-     * @param numSketches log n
-     * @return sketch matrices
+     * constructor with an explicit seed for the sketch hash functions
+     * @param graphStream Graph object
+     * @param seed seed from which every sketch's hash functions are derived
      */
-    private OpenMapRealMatrix[] getSketchMatrices(int numSketches) {
-        OpenMapRealMatrix[] sketchMatrices = new OpenMapRealMatrix[numSketches];
-        for(int i=0; i<numSketches; i++) {
-            sketchMatrices[i] = lzeroSampler.buildHashMatrix();
-        }
-        return sketchMatrices;
+    SpanningForest(GraphStream graphStream, long seed) {
+        this(graphStream.getNodeCount(), seed);
     }
 
     /***
-     * build sketches for each node vector in graph matrix
-     * @param nodeVectors node vectors of graph
-     * @return sketches for each node vector
+     * constructor for graphs that are only available as an edge stream
+     * @param numNodes # of nodes in graph
+     * @param seed seed from which every sketch's hash functions are derived
      */
-    List<Map> getSketches(List<OpenMapRealVector> nodeVectors) {
-        OpenMapRealMatrix[] sketchMatrices = getSketchMatrices(1);
-        List<Map> nodeSketches = new ArrayList<>();
-        for(int i = 0; i< numNodes; i++) {
-            Map<Integer, OpenMapRealMatrix> nodeSketch = new HashMap<>();
-            for(int sketchId=0; sketchId<numSketches; sketchId++) {
-                OpenMapRealMatrix sketch = lzeroSampler.
-                        buildSketch(nodeVectors.get(i), sketchMatrices[sketchId]);
-                nodeSketch.put(sketchId, sketch);
-            }
-            nodeSketches.add(i, nodeSketch);
-        }
-        return nodeSketches;
+    public SpanningForest(int numNodes, long seed) {
+        this(numNodes, seed, ForkJoinPool.commonPool());
     }
 
     /***
-     * sample an edge given the sketch of a node
-     * @param sketches L0 sampling sketch of a super-node
-     * @return sampled edge's index or -1 if no such edge found
+     * constructor with the pool that runs sketch construction and per-round sampling
+     * results depend only on the seed, never on the pool's parallelism
+     * @param numNodes # of nodes in graph
+     * @param seed seed from which every sketch's hash functions are derived
+     * @param forkJoinPool pool for the parallel phases
      */
-    private int sampleEdge(List<OpenMapRealMatrix> sketches) {
-        //combine sketches of given nodes
-        //set combinedSketch to the first sketch and add other sketches iteratively
-        OpenMapRealMatrix combinedSketch = sketches.get(0);
-        for(OpenMapRealMatrix sketch: sketches.subList(1, sketches.size())) {
-            combinedSketch = combinedSketch.add(sketch);
-        }
-        return lzeroSampler.sampleItem(combinedSketch);
+    public SpanningForest(int numNodes, long seed, ForkJoinPool forkJoinPool) {
+        this.numNodes = numNodes;
+        this.seed = seed;
+        this.forkJoinPool = forkJoinPool;
+        numSketches = NodeSketches.computeSketchCount(numNodes);
+    }
+
+    /***
+     * bound the probability that sampling a super-node with outgoing edges fails, by keeping enough independent
+     * repetitions of every sketch. Applies to sketches built by getNodeSketches; sketches passed to
+     * findSpanningForest carry their own # of repetitions.
+     * @param errorProbability allowed failure probability per sample, in (0, 1)
+     */
+    public void setErrorProbability(double errorProbability) {
+        numRepetitions = LzeroSampler.getRepetitions(errorProbability);
+        edgeSampler = null;
+    }
+
+    /***
+     * record the sketch and spanning_forest phases, sketch updates, forest edges, rounds and sampler outcomes into the
+     * given metrics
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     /***
-     * sample an edge given a node vector
+     * sample an edge given a node vector, by sketching the vector with the first round's sampler
      * @param nodeVector vector of distinct pair of vertices
-     * @return sampled edge, or -1 if no edge exists
+     * @return sampled edge, or -1 if no edge exists or sampling failed
      */
-    int sampleEdge2(OpenMapRealVector nodeVector){
-        Random random = new Random();
-        int edgeIndex;
-        if(nodeVector.getMaxValue() == 0 && nodeVector.getMinValue() == 0)
+    long sampleEdge2(LongSparseVector nodeVector){
+        if(nodeVector.isZero() || numSketches == 0)
             return -1;
-        do {
-            edgeIndex = random.nextInt(nodeVector.getDimension());
-        } while(nodeVector.getEntry(edgeIndex) ==0);
-        return edgeIndex;
+        if(edgeSampler == null) {
+            edgeSampler = NodeSketches.createSamplers(numNodes, seed, numRepetitions)[0];
+        }
+        return edgeSampler.sampleItem(edgeSampler.buildSketch(nodeVector), 0, samplerStats);
     }
 
     /***
-     * find connected components in input graph using sketches
+     * sketch the node vectors of graph matrix with this spanning forest's samplers
      * @param graphMatrix list of node vectors
+     * @return sketches of every node
+     */
+    NodeSketches getNodeSketches(List<LongSparseVector> graphMatrix) {
+        try(Metrics.Phase phase = metrics.startPhase("sketch")) {
+            NodeSketches nodeSketches = new NodeSketches(numNodes, seed, numRepetitions);
+            ParallelFor.forEach(forkJoinPool, 1, numNodes+1, node -> graphMatrix.get(node-1).
+                    forEachNonZero((index, value) -> nodeSketches.addToNode(node, index, value)));
+            long numUpdates = 0;
+            for(LongSparseVector nodeVector: graphMatrix) {
+                numUpdates += nodeVector.getNonZeroCount();
+            }
+            phase.count("sketch_updates", numUpdates);
+            return nodeSketches;
+        }
+    }
+
+    /***
+     * find connected components in input graph using sketches
+     * runs at most one Boruvka round per sketch, i.e. O(log n) rounds, each on its own independent sketch, and stops
+     * early once no super-node has an outgoing edge left
      * @param superNodes aggregated nodes constituting connected components
-     * @return connected components of input graph
+     * @param superNodeSketches sketches of each super-node, kept in the slot of its representative
      */
-    private List<List<Integer>> buildSpanningForest(List<OpenMapRealVector> graphMatrix, List<List<Integer>>
-            superNodes) {
+    private void buildSpanningForest(DisjointSet superNodes, NodeSketches superNodeSketches) {
+        for(int round=0; round<numSketches; round++) {
+            RoundStats stats = runRound(round, superNodes, superNodeSketches);
+            roundStats.add(stats);
+            if(stats.getEdgesSampled() == 0 && stats.getSamplerFailures() == 0) {
+                break;
+            }
+        }
+    }
 
-        Set<Integer> sampledEdges = new LinkedHashSet<>();
-        for(List superNode: superNodes) {
-            OpenMapRealVector superNodeVector = new OpenMapRealVector(graphMatrix.get(0).getDimension());
-            for(Object node: superNode) {
-                superNodeVector = superNodeVector.add(graphMatrix.get((int)node-1));
+    /***
+     * a single Boruvka round: every super-node samples an outgoing edge from its summed sketch, then the sampled edges
+     * merge super-nodes. Sketches of merged super-nodes are added in place, internal edges cancel out.
+     * @param round round number, which is also the id of the sketch used
+     * @return statistics of this round
+     */
+    private RoundStats runRound(int round, DisjointSet superNodes, NodeSketches superNodeSketches) {
+        long startTime = System.nanoTime();
+        int numSuperNodes = superNodes.getSetCount();
+        int[] roots = new int[numSuperNodes];
+        int[] rootOf = new int[numNodes];
+        for(int node=0, next=0; node<numNodes; node++) {
+            rootOf[node] = superNodes.find(node);
+            if(rootOf[node] == node) {
+                roots[next++] = node;
+            }
+        }
+        // sample all super-nodes before merging any, so every sample comes from a round-start super-node
+        // samples are written by position and contracted in root order, so the result does not depend on threads
+        long[] sampledEdges = new long[numSuperNodes];
+        long[] sampledValues = new long[numSuperNodes];
+        ParallelFor.forEach(forkJoinPool, 0, numSuperNodes, i -> {
+            int root = roots[i];
+            long edgeIndex = superNodeSketches.sample(root+1, round, samplerStats);
+            // a sampled edge must leave the super-node; anything else slipped past the fingerprint check
+            if(edgeIndex >= 0) {
+                long firstNode = PairCodec.getFirstNode(edgeIndex, numNodes);
+                long secondNode = PairCodec.getSecondNode(edgeIndex, firstNode, numNodes);
+                if((rootOf[(int)firstNode-1] == root) == (rootOf[(int)secondNode-1] == root)) {
+                    samplerStats.rejectSuccess();
+                    edgeIndex = -2;
+                } else {
+                    sampledValues[i] = Math.abs(superNodeSketches.getValue(root+1, round, edgeIndex));
+                }
+            }
+            // -2 marks a super-node with outgoing edges where no level of the sketch isolated one of them
+            sampledEdges[i] = edgeIndex == -1 && !superNodeSketches.isEmpty(root+1, round) ? -2 : edgeIndex;
+        });
+        int numSampled = 0;
+        int numFailures = 0;
+        for(int i=0; i<numSuperNodes; i++) {
+            if(sampledEdges[i] >= 0) {
+                sampledValues[numSampled] = sampledValues[i];
+                sampledEdges[numSampled++] = sampledEdges[i];
+            } else if(sampledEdges[i] == -2) {
+                numFailures++;
             }
-            sampledEdges.add(sampleEdge2(superNodeVector));
         }
-        level++;
-        if(Collections.frequency(sampledEdges, -1) == sampledEdges.size() || level >numSketches){
-            System.out.print("\n**No Edges sampled**\n");
-            return superNodes;
-        } else {
-            return buildSpanningForest(graphMatrix, findConnectedComponents(sampledEdges, superNodes));
+        for(int i=0; i<numSampled; i++) {
+            contract(sampledEdges[i], sampledValues[i], round, superNodes, superNodeSketches);
         }
+        return new RoundStats(round+1, numSuperNodes, numSampled, numFailures, System.nanoTime() - startTime);
     }
 
     /***
-     * find a spanning forest using sketches of input graph
-     * @param graphMatrix list of node vectors
-     * @param nodeCount # nodes in graph
+     * merge the super-nodes at both ends of a sampled edge, adding the sketches of the later rounds in place
+     * @param value absolute value of the edge in the sketches
+     * @return true if the edge joined two different super-nodes
      */
-    List<List<Integer>> findSpanningForest(List<OpenMapRealVector> graphMatrix, int nodeCount) {
-        // loop over sketches and construct super-nodes
-        // initialize super nodes
-//        Runtime runtime = Runtime.getRuntime();
-//        runtime.gc();
-//        long memUsage = runtime.totalMemory() - runtime.freeMemory();
-//        System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
-        List<List<Integer>> superNodes = new ArrayList<>();
-        for(int i=1; i<=nodeCount; i++) {
-            List<Integer> nodes = new ArrayList<>();
-            nodes.add(i);
-            superNodes.add(nodes);
+    private boolean contract(long edgeIndex, long value, int round, DisjointSet superNodes,
+                             NodeSketches superNodeSketches) {
+        long firstNode = PairCodec.getFirstNode(edgeIndex, numNodes);
+        long secondNode = PairCodec.getSecondNode(edgeIndex, firstNode, numNodes);
+        int firstRoot = superNodes.find((int)firstNode-1);
+        int secondRoot = superNodes.find((int)secondNode-1);
+        int root = superNodes.union(firstRoot, secondRoot);
+        if(root == -1) {
+            return false;
         }
-        return buildSpanningForest(graphMatrix, superNodes);
+        int child = root == firstRoot ? secondRoot : firstRoot;
+        superNodeSketches.merge(root+1, child+1, round+1);
+        addForestEdge(edgeIndex, value);
+        return true;
     }
 
-    private List<List<Integer>> findConnectedComponents(Set<Integer> sampledEdges, List<List<Integer>> superNodes) {
-        List<int[]> edges = new ArrayList<>();
-        // sampledEdges might have duplicates, remove them
-        for(int edge: sampledEdges) {
-            edges.add(getEdgeFromIndex(edge, numNodes));
+    private void addForestEdge(long edgeIndex, long value) {
+        if(numForestEdges == forestEdges.length) {
+            forestEdges = Arrays.copyOf(forestEdges, Math.max(16, forestEdges.length * 2));
+            forestValues = Arrays.copyOf(forestValues, forestEdges.length);
         }
-        for(int[] edge: edges) {
-            //check if a sampled edge has an endpoint in a super-node
-            List<Integer> ccIndices = new ArrayList<>();
-            for(int endPoint: edge) {
-                for(int i=0; i<superNodes.size(); i++) {
-                    List superNode = superNodes.get(i);
-                    if(superNode.indexOf(endPoint) != -1) {
-                        ccIndices.add(i);
-                    }
-                }
+        forestValues[numForestEdges] = value;
+        forestEdges[numForestEdges++] = edgeIndex;
+    }
+
+    /***
+     * find a spanning forest using sketches of input graph
+     * @param graphMatrix list of node vectors
+     * @param nodeCount # nodes in graph
+     */
+    List<List<Integer>> findSpanningForest(List<LongSparseVector> graphMatrix, int nodeCount) {
+        return findSpanningForest(getNodeSketches(graphMatrix));
+    }
 
+    /***
+     * find a spanning forest from node sketches, e.g. sketches filled by a single pass edge stream
+     * the node sketches are left untouched; super-nodes work on a copy
+     * @param nodeSketches sketches of every node, built with this spanning forest's seed
+     * @return connected components of input graph
+     */
+    public List<List<Integer>> findSpanningForest(NodeSketches nodeSketches) {
+        // initialize super nodes - one per node, each with a copy of its node's sketches
+        numForestEdges = 0;
+        roundStats = new ArrayList<>();
+        samplerStats.reset();
+        DisjointSet superNodes = new DisjointSet(numNodes);
+        try(Metrics.Phase phase = metrics.startPhase("spanning_forest")) {
+            if(numSketches > 0) {
+                NodeSketches superNodeSketches = nodeSketches.copy();
+                buildSpanningForest(superNodes, superNodeSketches);
+                superNodeSketches.close();
             }
-            //if ccIndices has <2 elements, skip further processing
-            if(ccIndices.size() <= 1)
-                continue;
-            //if all nodes have collapsed into a single super-node, break the loop and return
-            if(superNodes.size() == 1)
-                break;
-            //combine two super-nodes that are connected by a sampled edge
-            superNodes.get(ccIndices.get(0)).addAll(superNodes.get(ccIndices.get(1)));
-            superNodes.remove(superNodes.get(ccIndices.get(1)));
+            phase.count("forest_edges", numForestEdges);
         }
-        return superNodes;
+        metrics.recordRounds(roundStats);
+        metrics.recordSampler(samplerStats);
+        return getComponents(superNodes);
     }
 
-    int[] getEdgeFromIndex(int edgeIndex, int numNodes) {
-        int nMinusK=0;
-        int index=0;
-        int[] nodes = new int[2];
-        for(int i=numNodes-1; i>0; i--) {
-            if(nMinusK+i>edgeIndex)
-                break;
-            nMinusK+=i;
-            index=numNodes-i;
+    /***
+     * group nodes by super-node
+     * @return list of components, each a list of node numbers
+     */
+    private List<List<Integer>> getComponents(DisjointSet superNodes) {
+        Map<Integer, List<Integer>> components = new LinkedHashMap<>();
+        for(int node=0; node<numNodes; node++) {
+            components.computeIfAbsent(superNodes.find(node), root -> new ArrayList<>()).add(node+1);
         }
-        nodes[0] = index+1;
-        nodes[1] = edgeIndex - nMinusK + 1 + nodes[0];
-        return nodes;
+        return new ArrayList<>(components.values());
+    }
+
+    /***
+     * @return per round statistics of the last call to findSpanningForest
+     */
+    public List<RoundStats> getRoundStats() {
+        return roundStats;
+    }
+
+    /***
+     * @return sampler outcomes of the last call to findSpanningForest
+     */
+    public SamplerStats getSamplerStats() {
+        return samplerStats;
+    }
+
+    /***
+     * @return edge indices of the spanning forest found by the last call to findSpanningForest
+     */
+    public long[] getForestEdges() {
+        return Arrays.copyOf(forestEdges, numForestEdges);
+    }
+
+    /***
+     * @return absolute value of each forest edge in the sketches, in the order of getForestEdges: the # of times it was
+     * inserted for an unweighted stream, its weight for sketches updated with weights
+     */
+    public long[] getForestValues() {
+        return Arrays.copyOf(forestValues, numForestEdges);
+    }
+
+    int[] getEdgeFromIndex(long edgeIndex, int numNodes) {
+        return PairCodec.decode(edgeIndex, numNodes);
     }
 
     private static long bytesToMegabytes(long bytes) {
@@ -192,14 +309,20 @@ class SpanningForest {
 
     public static void main(String args[]) {
         GraphStream graphStream = new GraphStream("Spanning Forest Test");
+        Metrics metrics = new Metrics();
+        graphStream.setMetrics(metrics);
         graphStream.buildGraph(args[0]);
         SpanningForest spanningForestObj = new SpanningForest(graphStream);
-        List<OpenMapRealVector> nodeVectors = graphStream.buildGraphMatrix();
+        spanningForestObj.setMetrics(metrics);
+        if(args.length > 1) {
+            spanningForestObj.setErrorProbability(Double.parseDouble(args[1]));
+        }
+        List<LongSparseVector> nodeVectors = graphStream.buildGraphMatrix();
         Runtime runtime = Runtime.getRuntime();
         runtime.gc();
         long memUsage = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
-//        spanningForestObj.getSketches(nodeVectors);
+//        spanningForestObj.getNodeSketches(nodeVectors);
 //        long memUsage = runtime.totalMemory() - runtime.freeMemory();
 //        System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
         List<List<Integer>> spanningForest = spanningForestObj.findSpanningForest(nodeVectors, graphStream
@@ -210,5 +333,17 @@ class SpanningForest {
             }
             System.out.print("\n-------------------\n");
         }
+        for(RoundStats stats: spanningForestObj.getRoundStats()) {
+            System.out.println(stats);
+        }
+        System.out.println("Sampler: " + spanningForestObj.getSamplerStats());
+        if(args.length > 2) {
+            try {
+                metrics.write(args[2]);
+            } catch (IOException e) {
+                System.out.println("IO error writing metrics file");
+                e.printStackTrace();
+            }
+        }
     }
 }
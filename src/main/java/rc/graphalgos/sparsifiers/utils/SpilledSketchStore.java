@@ -0,0 +1,134 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/***
+ * sketch store that keeps all cells in a memory-mapped spill file and only the most recently used pages on the heap.
+ * A page is loaded into a long[] on first access and written back to the file when it is evicted, so the heap holds
+ * at most numCachedPages pages however many nodes there are, and sketch code keeps working on plain arrays.
+ * Pages are fetched under a lock and an evicted page is never reused, so concurrent readers are safe; updates must
+ * come from one thread at a time, since an update to a page evicted meanwhile would be lost.
+ */
+class SpilledSketchStore extends SketchStore {
+    private final File spillFile;
+    private final FileChannel channel;
+    private final LongBuffer[] mappedPages;
+    private final LinkedHashMap<Integer, long[]> cachedPages;
+    private final int numCachedPages;
+
+    /***
+     * default constructor
+     * @param numSlots # of slots
+     * @param stride # of cells per slot
+     * @param maxPageCells upper bound of the # of cells in a page
+     * @param numCachedPages # of pages kept on the heap, at least 2 so that an edge update can hold both endpoints
+     * @param spillDir directory of the spill file, which is deleted on close
+     * @throws IOException if the spill file can't be created
+     */
+    SpilledSketchStore(int numSlots, int stride, int maxPageCells, int numCachedPages, File spillDir)
+            throws IOException {
+        super(numSlots, stride, maxPageCells, false);
+        if(numCachedPages < 2) {
+            throw new IllegalArgumentException("At least 2 cached pages needed, got " + numCachedPages);
+        }
+        this.numCachedPages = numCachedPages;
+        spillFile = File.createTempFile("sketches", ".spill", spillDir);
+        spillFile.deleteOnExit();
+        channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mappedPages = new LongBuffer[numPages];
+        cachedPages = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    synchronized long[] getPageAt(int page) {
+        long[] cells = cachedPages.get(page);
+        if(cells != null) {
+            return cells;
+        }
+        if(cachedPages.size() == numCachedPages) {
+            Iterator<Map.Entry<Integer, long[]>> eldest = cachedPages.entrySet().iterator();
+            Map.Entry<Integer, long[]> evicted = eldest.next();
+            getMappedPage(evicted.getKey()).put(evicted.getValue());
+            eldest.remove();
+        }
+        cells = new long[getPageCells(page)];
+        getMappedPage(page).get(cells);
+        cachedPages.put(page, cells);
+        return cells;
+    }
+
+    /***
+     * map a page of the spill file on first use; the file grows as pages get mapped and reads as zeros before that
+     * @return view of the page's cells, positioned at its first cell
+     */
+    private LongBuffer getMappedPage(int page) {
+        if(mappedPages[page] == null) {
+            long position = (long)(page << pageShift) * stride * Long.BYTES;
+            try {
+                mappedPages[page] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        (long)getPageCells(page) * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't map page " + page + " of spill file " + spillFile, e);
+            }
+        }
+        mappedPages[page].clear();
+        return mappedPages[page];
+    }
+
+    /***
+     * @return deep copy in a spill file of its own, with the same heap cache size
+     */
+    @Override
+    public synchronized SketchStore copy() {
+        try {
+            SpilledSketchStore copy = new SpilledSketchStore(numSlots, stride, (pageMask + 1) * stride,
+                    numCachedPages, spillFile.getParentFile());
+            for(int page=0; page<numPages; page++) {
+                long[] cells = cachedPages.get(page);
+                if(cells != null) {
+                    copy.getMappedPage(page).put(cells);
+                } else if(mappedPages[page] != null) {
+                    copy.getMappedPage(page).put(getMappedPage(page));
+                }
+            }
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create spill file in " + spillFile.getParentFile(), e);
+        }
+    }
+
+    /***
+     * close and delete the spill file
+     */
+    @Override
+    public synchronized void close() {
+        cachedPages.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("IO error closing spill file");
+            e.printStackTrace();
+        }
+        spillFile.delete();
+    }
+
+    /***
+     * @return heap space taken by the cached pages
+     */
+    synchronized long getCachedBytes() {
+        long bytes = 0;
+        for(long[] cells: cachedPages.values()) {
+            bytes += (long)cells.length * Long.BYTES;
+        }
+        return bytes;
+    }
+}
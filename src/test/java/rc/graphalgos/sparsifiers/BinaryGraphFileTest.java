@@ -0,0 +1,114 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryGraphFileTest {
+
+    @Test
+    void convertAndRead() throws IOException {
+        Path textFile = Files.createTempFile("edges", ".txt");
+        Path binaryFile = Files.createTempFile("edges", ".bin");
+        String content = "# FromNodeId\tToNodeId\tWeight\n" +
+                "30 1412 2\n" +
+                "4294967296 30 0.5\n" +
+                "7 7 4\n" +
+                "30 7\n" +
+                "1412 7 3\n" +
+                "30 4294967296 1.5\n" +
+                "7 1412 1\n";
+        Files.write(textFile, content.getBytes(StandardCharsets.US_ASCII));
+        // 3 edges per chunk, so node 30's edges are split over two chunks
+        assertEquals(6, BinaryGraphFile.convert(textFile.toString(), binaryFile.toString(), 3));
+        assertTrue(BinaryGraphFile.isBinary(binaryFile.toString()));
+        assertFalse(BinaryGraphFile.isBinary(textFile.toString()));
+        List<String> edges = new ArrayList<>();
+        try(BinaryGraphFile graphFile = new BinaryGraphFile(binaryFile.toString())) {
+            assertEquals(4, graphFile.getNodeCount());
+            assertEquals(6, graphFile.getEdgeCount());
+            assertEquals(2, graphFile.getChunkCount());
+            assertTrue(graphFile.isWeighted());
+            assertEquals(6, graphFile.read((source, target, weight) -> edges.add(graphFile.getNodeId(source) +
+                    " " + graphFile.getNodeId(target) + " " + weight)));
+            AtomicLong numEdges = new AtomicLong();
+            graphFile.readParallel((source, target, weight) -> numEdges.incrementAndGet(), ForkJoinPool.commonPool());
+            assertEquals(6, numEdges.get());
+        }
+        Files.delete(textFile);
+        Files.delete(binaryFile);
+        Collections.sort(edges);
+        assertEquals("[1412 7 3.0, 30 1412 2.0, 30 4294967296 1.5, 30 7 1.0, 4294967296 30 0.5, 7 1412 1.0]",
+                edges.toString());
+    }
+
+    @Test
+    void convertUnweighted() throws IOException {
+        Path textFile = Files.createTempFile("edges", ".txt");
+        Path binaryFile = Files.createTempFile("edges", ".bin");
+        StringBuilder content = new StringBuilder();
+        for(int i=0; i<100; i++) {
+            content.append(i * 1000).append(' ').append((i * 37 % 100) * 1000 + 1).append('\n');
+        }
+        Files.write(textFile, content.toString().getBytes(StandardCharsets.US_ASCII));
+        BinaryGraphFile.convert(textFile.toString(), binaryFile.toString(), BinaryGraphFile.DEFAULT_CHUNK_EDGES);
+        long sum = 0;
+        try(BinaryGraphFile graphFile = new BinaryGraphFile(binaryFile.toString())) {
+            assertFalse(graphFile.isWeighted());
+            assertEquals(200, graphFile.getNodeCount());
+            assertEquals(1, graphFile.getChunkCount());
+            List<long[]> edges = new ArrayList<>();
+            graphFile.read((source, target, weight) -> edges.add(new long[]{graphFile.getNodeId(source),
+                    graphFile.getNodeId(target), (long)weight}));
+            for(long[] edge: edges) {
+                assertEquals(1, edge[1] % 1000);
+                assertEquals(1, edge[2]);
+                sum += edge[0];
+            }
+        }
+        Files.delete(textFile);
+        Files.delete(binaryFile);
+        assertEquals(1000L * 99 * 100 / 2, sum);
+    }
+
+    @Test
+    void buildGraphFromBinary() throws IOException {
+        Path textFile = Files.createTempFile("edges", ".txt");
+        Path binaryFile = Files.createTempFile("edges", ".bin");
+        Files.write(textFile, "5 9 2\n9 12 1\n12 5 0\n5 5 3\n12 20 4\n".getBytes(StandardCharsets.US_ASCII));
+        BinaryGraphFile.convert(textFile.toString(), binaryFile.toString(), 2);
+        GraphStream fromText = new GraphStream("text");
+        fromText.buildGraph(textFile.toString());
+        GraphStream fromBinary = new GraphStream("binary");
+        fromBinary.buildGraph(binaryFile.toString());
+        Files.delete(textFile);
+        Files.delete(binaryFile);
+        assertEquals(fromText.getNodeCount(), fromBinary.getNodeCount());
+        assertEquals(fromText.getEdgeCount(), fromBinary.getEdgeCount());
+        for(int node=1; node<=fromText.getNodeCount(); node++) {
+            assertEquals(fromText.getNodeId(node), fromBinary.getNodeId(node));
+        }
+        assertEquals(getEdges(fromText), getEdges(fromBinary));
+    }
+
+    private static List<String> getEdges(GraphStream graphStream) {
+        EdgeList edges = graphStream.getEdges();
+        List<String> edgeStrings = new ArrayList<>();
+        for(int edge=0; edge<edges.size(); edge++) {
+            edgeStrings.add(edges.getSource(edge) + " " + edges.getTarget(edge) + " " + edges.getWeight(edge));
+        }
+        Collections.sort(edgeStrings);
+        return edgeStrings;
+    }
+}
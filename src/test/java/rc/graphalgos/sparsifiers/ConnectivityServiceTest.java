@@ -0,0 +1,50 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectivityServiceTest {
+
+    @Test
+    void insertAndDelete() {
+        // a path 1-2-...-50, then the middle edge is deleted
+        ConnectivityService service = new ConnectivityService(100, 7L, 4, 0);
+        for(int node=1; node<50; node++) {
+            service.insert(node, node+1);
+        }
+        assertTrue(service.isConnected(1, 50));
+        assertEquals(51, service.getComponentCount());
+        // insertions are applied to the cache, no recompute needed
+        assertEquals(0, service.getRecomputeCount());
+        service.delete(25, 26);
+        assertEquals(1, service.getPendingDeletionCount());
+        assertFalse(service.isConnected(1, 50));
+        assertEquals(52, service.getComponentCount());
+        assertEquals(service.getComponentLabel(1), service.getComponentLabel(25));
+        assertNotEquals(service.getComponentLabel(1), service.getComponentLabel(26));
+        // repeated queries are answered from the cache
+        assertEquals(1, service.getRecomputeCount());
+        service.insert(1, 50);
+        assertTrue(service.isConnected(25, 26));
+        assertEquals(1, service.getRecomputeCount());
+    }
+
+    @Test
+    void staleDeletions() {
+        ConnectivityService service = new ConnectivityService(10, 7L, 4, 2);
+        service.insert(1, 2);
+        service.insert(2, 3);
+        service.delete(1, 2);
+        service.delete(2, 3);
+        // two deletions may be ignored
+        assertTrue(service.isConnected(1, 3));
+        service.delete(3, 3);
+        service.insert(4, 5);
+        service.delete(4, 5);
+        assertFalse(service.isConnected(1, 3));
+        assertFalse(service.isConnected(4, 5));
+        assertEquals(10, service.getComponentCount());
+        assertEquals(0, service.getPendingDeletionCount());
+    }
+}
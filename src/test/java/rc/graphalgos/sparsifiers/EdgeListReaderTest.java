@@ -0,0 +1,109 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeListReaderTest {
+
+    @Test
+    void read() throws IOException {
+        Path edgeFile = Files.createTempFile("edges", ".txt");
+        String content = "# Directed graph (each unordered pair of nodes is saved once): Wiki-Vote.txt\n" +
+                "# FromNodeId\tToNodeId\n" +
+                "30\t1412\n" +
+                "30 3352 # trailing comment\r\n" +
+                "\n" +
+                "  7   9  \n" +
+                "4294967296 12\n" +
+                "5\n" +
+                "8 9 1";
+        Files.write(edgeFile, content.getBytes(StandardCharsets.US_ASCII));
+        List<long[]> edges = new ArrayList<>();
+        EdgeListReader reader = new EdgeListReader();
+        long numEdges = reader.read(edgeFile.toString(), (source, target) -> edges.add(new long[]{source, target}));
+        Files.delete(edgeFile);
+        assertEquals(5, numEdges);
+        assertArrayEquals(new long[]{30, 1412}, edges.get(0));
+        assertArrayEquals(new long[]{30, 3352}, edges.get(1));
+        assertArrayEquals(new long[]{7, 9}, edges.get(2));
+        assertArrayEquals(new long[]{4294967296L, 12}, edges.get(3));
+        assertArrayEquals(new long[]{8, 9}, edges.get(4));
+        assertEquals(content.length(), reader.getByteCount());
+    }
+
+    @Test
+    void readWeighted() throws IOException {
+        Path edgeFile = Files.createTempFile("edges", ".txt");
+        String content = "# FromNodeId\tToNodeId\tWeight\n" +
+                "1 2 3\n" +
+                "1 3\t0.25 # comment\n" +
+                "2 3 1.5e2\r\n" +
+                "3 4 2.5E-1 7\n" +
+                "4 5 123456789012345678901\n" +
+                "5 6\n" +
+                "6 7 .5";
+        Files.write(edgeFile, content.getBytes(StandardCharsets.US_ASCII));
+        List<Double> weights = new ArrayList<>();
+        EdgeListReader reader = new EdgeListReader();
+        long numEdges = reader.read(edgeFile.toString(), (long source, long target, double weight) ->
+                weights.add(weight));
+        Files.delete(edgeFile);
+        assertEquals(7, numEdges);
+        assertEquals(3.0d, weights.get(0));
+        assertEquals(0.25d, weights.get(1));
+        assertEquals(150.0d, weights.get(2));
+        assertEquals(0.25d, weights.get(3));
+        assertEquals(1.2345678901234568e20, weights.get(4), 1e6);
+        assertEquals(1.0d, weights.get(5));
+        assertEquals(0.5d, weights.get(6));
+    }
+
+    @Test
+    void readSignedWeights() throws IOException {
+        Path edgeFile = Files.createTempFile("edges", ".txt");
+        Files.write(edgeFile, "1 2 -2.5\n2 3 +4\n3 4 -0\n4 5 -1e-1\n5 6 2\n".getBytes(StandardCharsets.US_ASCII));
+        List<Double> weights = new ArrayList<>();
+        new EdgeListReader().read(edgeFile.toString(), (long source, long target, double weight) ->
+                weights.add(weight));
+        GraphStream graphStream = new GraphStream("signed");
+        graphStream.buildGraph(edgeFile.toString());
+        Files.delete(edgeFile);
+        assertEquals(5, weights.size());
+        assertEquals(-2.5d, weights.get(0));
+        assertEquals(4.0d, weights.get(1));
+        assertEquals(0.0d, weights.get(2));
+        assertEquals(-0.1d, weights.get(3));
+        // edges of weight <= 0 can't contribute to a cut and are dropped
+        assertEquals(2, graphStream.getEdgeCount());
+    }
+
+    @Test
+    void rejectSignedIds() throws IOException {
+        Path edgeFile = Files.createTempFile("edges", ".txt");
+        EdgeListReader reader = new EdgeListReader();
+        for(String content: new String[]{"1 2\n-3 4\n", "1 -2\n", "+1 2 3\n"}) {
+            Files.write(edgeFile, content.getBytes(StandardCharsets.US_ASCII));
+            assertThrows(IOException.class, () -> reader.read(edgeFile.toString(), (source, target) -> { }));
+        }
+        Files.delete(edgeFile);
+    }
+
+    @Test
+    void buildGraph() {
+        GraphStream graphStream = new GraphStream("Wiki-Vote");
+        graphStream.buildGraph("src/main/resources/graphs/Wiki-Vote.txt");
+        assertEquals(7115, graphStream.getNodeCount());
+        assertEquals(103689, graphStream.getEdgeCount());
+        assertEquals(30, graphStream.getNodeId(1));
+        assertEquals(1412, graphStream.getNodeId(2));
+        graphStream.printGraphStats();
+    }
+}
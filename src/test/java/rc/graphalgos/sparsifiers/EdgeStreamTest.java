@@ -0,0 +1,80 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeStreamTest {
+
+    @Test
+    void applyUpdate() {
+        EdgeStream edgeStream = new EdgeStream(10);
+        NodeSketches nodeSketches = new NodeSketches(10, 1L);
+        edgeStream.applyUpdate("# FromNodeId\tToNodeId", nodeSketches);
+        edgeStream.applyUpdate("0 1", nodeSketches);
+        edgeStream.applyUpdate("+2\t3", nodeSketches);
+        edgeStream.applyUpdate("-0 1", nodeSketches);
+        edgeStream.applyUpdate("4 4", nodeSketches);
+        edgeStream.applyUpdate("", nodeSketches);
+        assertEquals(2, edgeStream.getInsertionCount());
+        assertEquals(1, edgeStream.getDeletionCount());
+        assertThrows(IllegalArgumentException.class, () -> edgeStream.applyUpdate("3 10", nodeSketches));
+    }
+
+    @Test
+    void resumeFromCheckpoint() throws IOException {
+        // the job "crashes" after the first 16 lines of the stream, a checkpoint was taken every 8 lines
+        File partialFile = writeCycle(16);
+        File edgeFile = writeCycle(20);
+        File checkpointFile = File.createTempFile("stream", ".ckpt");
+        checkpointFile.deleteOnExit();
+        EdgeStream crashed = new EdgeStream(40);
+        assertThrows(IllegalArgumentException.class, () -> crashed.setCheckpoint(checkpointFile.getPath(), 0));
+        crashed.setCheckpoint(checkpointFile.getPath(), 8);
+        crashed.streamEdges(partialFile.getPath(), new NodeSketches(40, 5L));
+        EdgeStream resumed = new EdgeStream(40);
+        NodeSketches nodeSketches = resumed.loadCheckpoint(checkpointFile.getPath());
+        assertEquals(16, resumed.getLineCount());
+        resumed.resumeStream(edgeFile.getPath(), nodeSketches);
+        EdgeStream uninterrupted = new EdgeStream(40);
+        NodeSketches expected = new NodeSketches(40, 5L);
+        uninterrupted.streamEdges(edgeFile.getPath(), expected);
+        assertEquals(uninterrupted.getInsertionCount(), resumed.getInsertionCount());
+        assertEquals(uninterrupted.getLineCount(), resumed.getLineCount());
+        assertEquals(new SpanningForest(40, 5L).findSpanningForest(expected),
+                new SpanningForest(40, 5L).findSpanningForest(nodeSketches));
+        assertEquals(21, new SpanningForest(40, 5L).findSpanningForest(nodeSketches).size());
+    }
+
+    @Test
+    void countersStartOver() throws IOException {
+        File edgeFile = writeCycle(20);
+        EdgeStream edgeStream = new EdgeStream(40);
+        edgeStream.streamEdges(edgeFile.getPath(), new NodeSketches(40, 5L));
+        edgeStream.streamEdges(edgeFile.getPath(), new NodeSketches(40, 5L));
+        assertEquals(20, edgeStream.getLineCount());
+        assertEquals(20, edgeStream.getInsertionCount());
+        assertEquals(0, edgeStream.getDeletionCount());
+        assertEquals(40, edgeStream.getMetrics().getCounter("ingest.edges"));
+    }
+
+    /***
+     * write the first numLines edges of the cycle 0..19
+     */
+    private File writeCycle(int numLines) throws IOException {
+        File edgeFile = File.createTempFile("stream", ".txt");
+        edgeFile.deleteOnExit();
+        try(PrintWriter writer = new PrintWriter(edgeFile)) {
+            for(int i=0; i<numLines; i++) {
+                writer.println(i + " " + (i + 1) % 20);
+            }
+        }
+        return edgeFile;
+    }
+}
@@ -1,7 +1,7 @@
 package rc.graphalgos.sparsifiers;
 
-import org.apache.commons.math3.linear.OpenMapRealVector;
 import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.LongSparseVector;
 
 import java.util.List;
 
@@ -14,9 +14,9 @@ class GraphStreamTest {
     void buildGraphMatrix() {
         graphStream.buildGraph("/home/ramji/IdeaProjects/graph_sparsification/src/main" +
                 "/resources/graphs/test_graph.txt");
-        List<OpenMapRealVector> graphMatrix = graphStream.buildGraphMatrix();
-        for(OpenMapRealVector nodeVector: graphMatrix){
-            for (int i=0; i<nodeVector.getDimension(); i++) {
+        List<LongSparseVector> graphMatrix = graphStream.buildGraphMatrix();
+        for(LongSparseVector nodeVector: graphMatrix){
+            for (long i=0; i<nodeVector.getDimension(); i++) {
                 System.out.print(nodeVector.getEntry(i) + " ");
             }
             System.out.println();
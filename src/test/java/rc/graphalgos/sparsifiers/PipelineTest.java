@@ -0,0 +1,148 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+    /***
+     * two 10-node cliques with ids 0..9 and 10..19, no edge between them
+     */
+    private File writeCliques(File dir) throws IOException {
+        return TestGraphs.write(TestGraphs.cliques(10, 1.0d, false), new File(dir, "cliques.txt").toPath()).toFile();
+    }
+
+    @Test
+    void components(@TempDir File dir) throws IOException {
+        File outputFile = new File(dir, "labels.txt");
+        File metricsFile = new File(dir, "metrics.json");
+        Pipeline pipeline = Pipeline.parse(new String[]{"components", writeCliques(dir).getPath(), "--seed", "3",
+                "--repetitions", "3", "--threads", "2", "--output", outputFile.getPath(), "--metrics",
+                metricsFile.getPath()});
+        List<String> stages = new ArrayList<>();
+        for(Pipeline.Stage stage: pipeline.getStages()) {
+            stages.add(stage.getName());
+        }
+        assertEquals(Arrays.asList("ingest", "sketch", "forest", "write"), stages);
+        pipeline.run();
+        Map<Long, Long> labels = new HashMap<>();
+        for(String line: Files.readAllLines(outputFile.toPath(), StandardCharsets.US_ASCII)) {
+            String[] record = line.split(" ");
+            labels.put(Long.parseLong(record[0]), Long.parseLong(record[1]));
+        }
+        assertEquals(20, labels.size());
+        for(int i=0; i<10; i++) {
+            assertEquals(labels.get(0L), labels.get((long)i));
+            assertEquals(labels.get(10L), labels.get(10L + i));
+        }
+        assertNotEquals(labels.get(0L), labels.get(10L));
+        assertEquals(20, pipeline.getMetrics().getCounter("write.records"));
+        assertTrue(new String(Files.readAllBytes(metricsFile.toPath()), StandardCharsets.US_ASCII)
+                .contains("\"load.edges\": 90"));
+    }
+
+    @Test
+    void streamComponents(@TempDir File dir) throws IOException {
+        File streamFile = new File(dir, "stream.txt");
+        try(PrintWriter writer = new PrintWriter(streamFile)) {
+            writer.println("0 1\n1 2\n2 3\n-1 2");
+        }
+        Pipeline pipeline = Pipeline.parse(new String[]{"components", streamFile.getPath(), "--format", "stream",
+                "--nodes", "5", "--output", new File(dir, "labels.txt").getPath()});
+        pipeline.run();
+        // {0, 1}, {2, 3} and {4}
+        assertEquals(3, pipeline.getComponents().size());
+    }
+
+    @Test
+    void windowComponents(@TempDir File dir) throws IOException {
+        File streamFile = new File(dir, "timed.txt");
+        try(PrintWriter writer = new PrintWriter(streamFile)) {
+            writer.println("# u v t\n0 1 0\n1 2 5\n3 4 100");
+        }
+        Pipeline pipeline = Pipeline.parse(new String[]{"components", streamFile.getPath(), "--format", "window",
+                "--nodes", "5", "--window", "50", "--slices", "5", "--output", new File(dir, "labels.txt").getPath()});
+        pipeline.run();
+        // (0, 1) and (1, 2) expired: {3, 4}, {0}, {1} and {2}
+        assertEquals(4, pipeline.getComponents().size());
+        assertEquals(1, pipeline.getMetrics().getCounter("window.expired_slices"));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"spectral",
+                streamFile.getPath(), "--format", "window", "--nodes", "5", "--window", "50"}));
+    }
+
+    @Test
+    void sparsifyBinary(@TempDir File dir) throws IOException {
+        File outputFile = new File(dir, "sparsifier.bin");
+        Pipeline pipeline = Pipeline.parse(new String[]{"sparsify", writeCliques(dir).getPath(), "--output",
+                outputFile.getPath(), "--output-format", "binary"});
+        pipeline.run();
+        int numEdges = pipeline.getSparsifier().size();
+        assertTrue(numEdges > 0);
+        assertEquals(numEdges * 24L, outputFile.length());
+        try(DataInputStream input = new DataInputStream(new FileInputStream(outputFile))) {
+            long source = input.readLong();
+            long target = input.readLong();
+            assertEquals(source / 10, target / 10);
+            assertTrue(input.readDouble() >= 1.0d);
+        }
+    }
+
+    @Test
+    void streamSparsify(@TempDir File dir) throws IOException {
+        // two weighted 10-node cliques over ids 0..9 and 10..19, no edge between them
+        File streamFile = TestGraphs.write(TestGraphs.cliques(10, 1.5d, 2.5d, 0.0d),
+                new File(dir, "weighted.txt").toPath()).toFile();
+        Pipeline pipeline = Pipeline.parse(new String[]{"sparsify", streamFile.getPath(), "--format", "stream",
+                "--nodes", "20", "--output", new File(dir, "sparsifier.txt").getPath()});
+        List<String> stages = new ArrayList<>();
+        for(Pipeline.Stage stage: pipeline.getStages()) {
+            stages.add(stage.getName());
+        }
+        assertEquals(Arrays.asList("ingest", "sparsify", "write"), stages);
+        pipeline.run();
+        assertTrue(pipeline.getSparsifier().size() > 0);
+        for(int edge=0; edge<pipeline.getSparsifier().size(); edge++) {
+            assertEquals((pipeline.getSparsifier().getSource(edge) - 1) / 10,
+                    (pipeline.getSparsifier().getTarget(edge) - 1) / 10);
+        }
+        assertEquals(90, pipeline.getMetrics().getCounter("ingest.edges"));
+    }
+
+    @Test
+    void missingInput(@TempDir File dir) {
+        String missing = new File(dir, "missing.txt").getPath();
+        String output = new File(dir, "labels.txt").getPath();
+        IOException error = assertThrows(IOException.class, () -> Pipeline.parse(new String[]{"components", missing,
+                "--output", output}).run());
+        assertTrue(error.getMessage().startsWith("Stage ingest failed"));
+        assertThrows(IOException.class, () -> Pipeline.parse(new String[]{"components", missing, "--format", "stream",
+                "--nodes", "5", "--output", output}).run());
+        assertThrows(IOException.class, () -> Pipeline.parse(new String[]{"sparsify", missing, "--format", "stream",
+                "--nodes", "5", "--output", output}).run());
+        assertThrows(IOException.class, () -> Pipeline.parse(new String[]{"components", missing, "--format", "window",
+                "--nodes", "5", "--window", "50", "--slices", "5", "--output", output}).run());
+        assertFalse(new File(output).exists());
+    }
+
+    @Test
+    void parseErrors() {
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"count", "graph.txt"}));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"components", "graph.txt",
+                "--format", "stream"}));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"sparsify", "graph.txt",
+                "--seed"}));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"sparsify", "graph.txt",
+                "--colour", "red"}));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"spectral", "graph.txt",
+                "--format", "stream", "--nodes", "5"}));
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.parse(new String[]{"components", "graph.txt",
+                "--format", "window", "--nodes", "5", "--window", "50", "--slices", "3"}));
+    }
+}
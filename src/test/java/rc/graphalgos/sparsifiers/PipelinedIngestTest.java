@@ -0,0 +1,90 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rc.graphalgos.sparsifiers.utils.Metrics;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedIngestTest {
+
+    @Test
+    void parseLine() {
+        PipelinedIngest ingest = new PipelinedIngest(10, 1, 1);
+        assertEquals(1L << 32 | 2, parse(ingest, "0 1"));
+        assertEquals(3L << 32 | 4, parse(ingest, " +2\t3 \r"));
+        assertEquals(Long.MIN_VALUE | 1L << 32 | 2, parse(ingest, "- 0 1 5"));
+        assertEquals(-1, parse(ingest, "# FromNodeId\tToNodeId"));
+        assertEquals(-1, parse(ingest, ""));
+        assertEquals(-1, parse(ingest, "4 4"));
+        assertThrows(IllegalArgumentException.class, () -> parse(ingest, "3 10"));
+        assertThrows(IllegalArgumentException.class, () -> parse(ingest, "3 99999999999999999999"));
+        assertThrows(IllegalArgumentException.class, () -> parse(ingest, "3"));
+        assertThrows(IllegalArgumentException.class, () -> parse(ingest, "3 4x"));
+    }
+
+    private static long parse(PipelinedIngest ingest, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        return ingest.parseLine(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void sameSketchesAsEdgeStream(@TempDir File dir) throws IOException {
+        // random insertions and deletions of edges among 300 nodes, in two components by parity
+        File edgeFile = new File(dir, "stream.txt");
+        Random random = new Random(17);
+        try(PrintWriter writer = new PrintWriter(edgeFile)) {
+            writer.println("# FromNodeId\tToNodeId");
+            for(int i=0; i<20000; i++) {
+                int first = random.nextInt(300);
+                int second = (random.nextInt(150) * 2 + first % 2) % 300;
+                writer.println(first + " " + second);
+                if(random.nextInt(4) == 0) {
+                    writer.println("-" + first + " " + second);
+                }
+            }
+        }
+        EdgeStream edgeStream = new EdgeStream(300);
+        NodeSketches expected = new NodeSketches(300, 5L);
+        edgeStream.streamEdges(edgeFile.getPath(), expected);
+        PipelinedIngest ingest = new PipelinedIngest(300, 2, 3);
+        NodeSketches nodeSketches = new NodeSketches(300, 5L);
+        ingest.streamEdges(edgeFile.getPath(), nodeSketches);
+        assertEquals(edgeStream.getLineCount(), ingest.getLineCount());
+        assertEquals(edgeStream.getInsertionCount(), ingest.getInsertionCount());
+        assertEquals(edgeStream.getDeletionCount(), ingest.getDeletionCount());
+        SpanningForest expectedForest = new SpanningForest(300, 5L);
+        SpanningForest spanningForest = new SpanningForest(300, 5L);
+        assertEquals(expectedForest.findSpanningForest(expected), spanningForest.findSpanningForest(nodeSketches));
+        assertArrayEquals(expectedForest.getForestEdges(), spanningForest.getForestEdges());
+        Metrics metrics = ingest.getMetrics();
+        assertEquals(edgeFile.length(), metrics.getCounter("read.bytes"));
+        assertEquals(2 * (ingest.getInsertionCount() + ingest.getDeletionCount()),
+                metrics.getCounter("update.sketch_updates"));
+        assertEquals(1L, metrics.snapshot().get("read.runs"));
+        assertEquals(3L, metrics.snapshot().get("update.runs"));
+        assertArrayEquals(new int[]{0, 0}, ingest.getQueueDepths());
+    }
+
+    @Test
+    void invalidLine(@TempDir File dir) throws IOException {
+        File edgeFile = new File(dir, "stream.txt");
+        try(PrintWriter writer = new PrintWriter(edgeFile)) {
+            for(int i=0; i<1000; i++) {
+                writer.println(i % 10 + " " + (i + 1) % 10);
+            }
+            writer.println("3 12");
+        }
+        PipelinedIngest ingest = new PipelinedIngest(10, 2, 2);
+        assertThrows(IllegalArgumentException.class, () -> ingest.streamEdges(edgeFile.getPath(),
+                new NodeSketches(10, 5L)));
+    }
+}
@@ -0,0 +1,124 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimpleSparsifierTest {
+    private static final String GRAPH_FILE = "src/main/resources/graphs/facebook_combined.txt";
+
+    @Test
+    void getEdgeLevel() {
+        SimpleSparsifier first = new SimpleSparsifier("first", GRAPH_FILE, 3L);
+        SimpleSparsifier second = new SimpleSparsifier("second", GRAPH_FILE, 3L);
+        int[] levelCounts = new int[64];
+        for(int node=1; node<=20000; node++) {
+            int level = first.getEdgeLevel(node, node+1);
+            assertEquals(level, second.getEdgeLevel(node+1, node));
+            assertEquals(level >= 2, first.isInSubgraph(node, node+1, 2));
+            levelCounts[level]++;
+        }
+        // an edge reaches level i with probability 2^-i
+        assertTrue(Math.abs(levelCounts[0] - 10000) < 600);
+        assertTrue(Math.abs(levelCounts[1] - 5000) < 600);
+    }
+
+    @Test
+    void sparsify() throws IOException {
+        // two 30-node cliques joined by a single bridge
+        Path graphFile = TestGraphs.write(TestGraphs.cliques(30, 1.0d, true), Files.createTempFile("cliques", ".txt"));
+        SimpleSparsifier simpleSparsifier = new SimpleSparsifier("cliques", graphFile.toString(), 5L);
+        simpleSparsifier.sparsify(1.0d);
+        Files.delete(graphFile);
+        EdgeList sparsifier = simpleSparsifier.getSparsifier();
+        assertTrue(sparsifier.size() > 0 && sparsifier.size() <= 871);
+        // the bridge is the only edge of its cut, so it must be kept with its original weight
+        int bridges = 0;
+        for(int edge=0; edge<sparsifier.size(); edge++) {
+            boolean firstInLeft = sparsifier.getSource(edge) <= 30;
+            boolean secondInLeft = sparsifier.getTarget(edge) <= 30;
+            if(firstInLeft != secondInLeft) {
+                bridges++;
+                assertEquals(1.0d, sparsifier.getWeight(edge));
+            }
+        }
+        assertEquals(1, bridges);
+    }
+
+    @Test
+    void sparsifyWeighted() throws IOException {
+        Path graphFile = writeWeightedCliques();
+        SimpleSparsifier simpleSparsifier = new SimpleSparsifier("weighted", graphFile.toString(), 5L);
+        simpleSparsifier.sparsify(1.0d);
+        Files.delete(graphFile);
+        EdgeList sparsifier = simpleSparsifier.getSparsifier();
+        int bridges = 0;
+        double[] cliqueWeights = new double[2];
+        for(int edge=0; edge<sparsifier.size(); edge++) {
+            boolean firstInLeft = sparsifier.getSource(edge) <= 30;
+            boolean secondInLeft = sparsifier.getTarget(edge) <= 30;
+            double weight = sparsifier.getWeight(edge);
+            if(firstInLeft != secondInLeft) {
+                bridges++;
+                assertEquals(0.25d, weight);
+            } else {
+                // a kept edge carries its own weight times a power of 2
+                double ratio = weight / (firstInLeft ? 1.0d : 10.5d);
+                assertEquals(Math.pow(2, Math.getExponent(ratio)), ratio);
+                cliqueWeights[firstInLeft ? 0 : 1] += weight;
+            }
+        }
+        assertEquals(1, bridges);
+        // both cliques keep roughly their total weight
+        assertEquals(435.0d, cliqueWeights[0], 435.0d * 0.5);
+        assertEquals(435.0d * 10.5d, cliqueWeights[1], 435.0d * 10.5d * 0.5);
+        assertEquals(-2, SimpleSparsifier.getWeightClass(0.25d));
+        assertEquals(3, SimpleSparsifier.getWeightClass(10.5d));
+    }
+
+    @Test
+    void sparsifyStreamed() throws IOException {
+        Path graphFile = writeWeightedCliques();
+        SimpleSparsifier loaded = new SimpleSparsifier("weighted", graphFile.toString(), 5L);
+        loaded.sparsify(1.0d);
+        // ids 0..59 first appear in order, so the loaded graph numbers them id+1 like the stream
+        SimpleSparsifier streamed = new SimpleSparsifier(60, 1.0d, 5L);
+        streamed.streamEdges(graphFile.toString());
+        assertTrue(streamed.getSizeInBytes() > 0);
+        EdgeList sparsifier = streamed.sparsify();
+        Files.delete(graphFile);
+        assertEquals(getEdges(loaded.getSparsifier()), getEdges(sparsifier));
+        assertArrayEquals(loaded.getSubgraphSizes(), streamed.getSubgraphSizes());
+        assertEquals(871, streamed.getMetrics().getCounter("ingest.edges"));
+        Path outOfRange = Files.createTempFile("weighted", ".txt");
+        Files.write(outOfRange, "0 60 1\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> streamed.streamEdges(outOfRange.toString()));
+        Files.delete(outOfRange);
+        assertThrows(IllegalStateException.class, () -> loaded.addEdge(1, 2, 1.0d));
+    }
+
+    /***
+     * a clique of weight 1 edges and a clique of weight 10.5 edges, joined by a bridge of weight 0.25
+     */
+    private static Path writeWeightedCliques() throws IOException {
+        return TestGraphs.write(TestGraphs.cliques(30, 1.0d, 10.5d, 0.25d), Files.createTempFile("weighted", ".txt"));
+    }
+
+    private static List<String> getEdges(EdgeList edges) {
+        List<String> edgeStrings = new ArrayList<>();
+        for(int edge=0; edge<edges.size(); edge++) {
+            edgeStrings.add(edges.getSource(edge) + " " + edges.getTarget(edge) + " " + edges.getWeight(edge));
+        }
+        Collections.sort(edgeStrings);
+        return edgeStrings;
+    }
+}
@@ -0,0 +1,82 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.NodeSketches;
+import rc.graphalgos.sparsifiers.utils.SpanningForest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SketchShardsTest {
+
+    @Test
+    void mergeShards() throws IOException {
+        // random insertions, a third of them deleted again later in the stream
+        int numNodes = 300;
+        Random random = new Random(8);
+        File edgeFile = File.createTempFile("shards", ".txt");
+        edgeFile.deleteOnExit();
+        List<String> deletions = new ArrayList<>();
+        try(PrintWriter writer = new PrintWriter(edgeFile)) {
+            writer.println("# FromNodeId\tToNodeId");
+            for(int i=0; i<600; i++) {
+                String edge = random.nextInt(numNodes) + " " + random.nextInt(numNodes);
+                writer.println(edge);
+                if(i % 3 == 0) {
+                    deletions.add(edge);
+                }
+            }
+            for(String edge: deletions) {
+                writer.println("-" + edge);
+            }
+        }
+        EdgeStream edgeStream = new EdgeStream(numNodes);
+        NodeSketches expected = new NodeSketches(numNodes, 13L);
+        edgeStream.streamEdges(edgeFile.getPath(), expected);
+
+        List<String> shardFiles = new ArrayList<>();
+        for(int shard=0; shard<5; shard++) {
+            File shardFile = File.createTempFile("shard", ".sketch");
+            shardFile.deleteOnExit();
+            SketchShards.sketchShard(edgeFile.getPath(), numNodes, 13L, shard, 5, shardFile.getPath());
+            shardFiles.add(shardFile.getPath());
+        }
+        SketchShards sketchShards = new SketchShards();
+        NodeSketches merged = sketchShards.mergeShards(shardFiles);
+        assertEquals(edgeStream.getInsertionCount(), sketchShards.getInsertionCount());
+        assertEquals(edgeStream.getDeletionCount(), sketchShards.getDeletionCount());
+        SpanningForest spanningForest = new SpanningForest(numNodes, 13L);
+        assertEquals(spanningForest.findSpanningForest(expected), spanningForest.findSpanningForest(merged));
+    }
+
+    @Test
+    void mismatchedShards() throws IOException {
+        File first = File.createTempFile("shard", ".sketch");
+        File second = File.createTempFile("shard", ".sketch");
+        first.deleteOnExit();
+        second.deleteOnExit();
+        File edgeFile = File.createTempFile("shards", ".txt");
+        edgeFile.deleteOnExit();
+        SketchShards.sketchShard(edgeFile.getPath(), 50, 1L, 0, 2, first.getPath());
+        SketchShards.sketchShard(edgeFile.getPath(), 50, 2L, 1, 2, second.getPath());
+        List<String> shardFiles = new ArrayList<>();
+        shardFiles.add(first.getPath());
+        shardFiles.add(second.getPath());
+        assertThrows(IllegalArgumentException.class, () -> new SketchShards().mergeShards(shardFiles));
+    }
+
+    @Test
+    void missingEdgeFile() throws IOException {
+        File shardFile = File.createTempFile("shard", ".sketch");
+        assertTrue(shardFile.delete());
+        assertThrows(IOException.class, () -> SketchShards.sketchShard(shardFile.getPath() + ".missing", 50, 1L, 0,
+                2, shardFile.getPath()));
+        assertFalse(shardFile.exists());
+    }
+}
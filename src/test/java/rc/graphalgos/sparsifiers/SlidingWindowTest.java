@@ -0,0 +1,106 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowTest {
+
+    @Test
+    void expireSlices() {
+        // 4 slices of 10 time units
+        SlidingWindow slidingWindow = new SlidingWindow(10, 40, 4, 5L);
+        slidingWindow.setSketchOptions(3, ForkJoinPool.commonPool());
+        List<Long> endedSlices = new ArrayList<>();
+        slidingWindow.setSliceHandler((window, slice) -> endedSlices.add(slice));
+        for(int node=1; node<5; node++) {
+            assertTrue(slidingWindow.addEdge(node, node+1, node-1));
+        }
+        for(int node=6; node<10; node++) {
+            assertTrue(slidingWindow.addEdge(node, node+1, 19 + node));
+        }
+        assertEquals(2, slidingWindow.findComponents().size());
+        assertEquals(8, slidingWindow.getEdgeCount());
+        // slice 0 falls out of the window, leaving nodes 1..5 isolated
+        slidingWindow.advanceTo(45);
+        assertEquals(Arrays.asList(0L, 2L), endedSlices);
+        assertEquals(6, slidingWindow.findComponents().size());
+        assertEquals(4, slidingWindow.getEdgeCount());
+        assertFalse(slidingWindow.addEdge(1, 2, 5));
+        assertEquals(1, slidingWindow.getDroppedCount());
+        // an edge of a live slice may still come late
+        assertTrue(slidingWindow.addEdge(1, 6, 15));
+        assertEquals(5, slidingWindow.findComponents().size());
+        slidingWindow.advanceTo(1000);
+        assertEquals(10, slidingWindow.findComponents().size());
+        assertEquals(0, slidingWindow.getEdgeCount());
+        assertEquals(100, slidingWindow.getCurrentSlice());
+    }
+
+    @Test
+    void sparsify() {
+        SlidingWindow slidingWindow = new SlidingWindow(16, 20, 2, 9L);
+        slidingWindow.setSketchOptions(3, ForkJoinPool.commonPool());
+        slidingWindow.enableSparsifier(1.0d, 4);
+        // a clique on nodes 1..8 in slice 0, then a path over all nodes in slice 1
+        for(int i=1; i<=8; i++) {
+            for(int j=i+1; j<=8; j++) {
+                slidingWindow.addEdge(i, j, 0);
+            }
+        }
+        for(int node=1; node<16; node++) {
+            slidingWindow.addEdge(node, node+1, 10);
+        }
+        assertFalse(slidingWindow.sparsify().size() == 0);
+        // once the clique expires, the path is its own sparsifier: every edge is a bridge
+        slidingWindow.advanceTo(25);
+        EdgeList sparsifier = slidingWindow.sparsify();
+        Set<String> edges = new HashSet<>();
+        for(int edge=0; edge<sparsifier.size(); edge++) {
+            assertEquals(1.0d, sparsifier.getWeight(edge));
+            edges.add(Math.min(sparsifier.getSource(edge), sparsifier.getTarget(edge)) + "-" +
+                    Math.max(sparsifier.getSource(edge), sparsifier.getTarget(edge)));
+        }
+        for(int node=1; node<16; node++) {
+            assertTrue(edges.contains(node + "-" + (node+1)));
+        }
+        assertEquals(15, edges.size());
+        assertThrows(IllegalStateException.class, () -> slidingWindow.enableSparsifier(1.0d));
+        assertThrows(IllegalStateException.class, () -> new SlidingWindow(16, 20, 2, 9L).sparsify());
+        // 20 time units don't split into 3 slices of equal length
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindow(16, 20, 3, 9L));
+    }
+
+    @Test
+    void sparsifyDuplicatedBridge() {
+        SlidingWindow slidingWindow = new SlidingWindow(16, 20, 2, 9L);
+        slidingWindow.setSketchOptions(3, ForkJoinPool.commonPool());
+        // k = 2 forests
+        slidingWindow.enableSparsifier(1.5d, 4);
+        // cliques on nodes 1..8 and 9..16, joined by a bridge that arrives three times
+        for(int i=1; i<=16; i++) {
+            for(int j=i+1; j<=16; j++) {
+                if((i <= 8) == (j <= 8)) {
+                    slidingWindow.addEdge(i, j, 0);
+                }
+            }
+        }
+        for(int time=1; time<=3; time++) {
+            slidingWindow.addEdge(8, 9, time);
+        }
+        // the three parallel edges are a single edge of the first forest, so the bridge has connectivity 1 < k in
+        // G0 and is kept there with their total weight
+        EdgeList sparsifier = slidingWindow.sparsify();
+        double bridgeWeight = 0;
+        for(int edge=0; edge<sparsifier.size(); edge++) {
+            if((sparsifier.getSource(edge) <= 8) != (sparsifier.getTarget(edge) <= 8)) {
+                bridgeWeight += sparsifier.getWeight(edge);
+            }
+        }
+        assertEquals(3.0d, bridgeWeight);
+    }
+}
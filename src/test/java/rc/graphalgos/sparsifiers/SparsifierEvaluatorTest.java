@@ -0,0 +1,49 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparsifierEvaluatorTest {
+
+    @Test
+    void identical() {
+        EdgeList graph = TestGraphs.cliques(10, 1.0d, true);
+        SparsifierEvaluator evaluator = new SparsifierEvaluator(20, graph, graph, 3L, new ForkJoinPool(2));
+        assertEquals(0.0d, evaluator.evaluateRandomCuts(200).getMax());
+        assertEquals(0.0d, evaluator.evaluateBallCuts(200).getMax());
+        assertEquals(0.0d, evaluator.evaluateQuadraticForms(20).getMax());
+        assertTrue(evaluator.haveSameComponents());
+    }
+
+    @Test
+    void distorted() {
+        EdgeList graph = TestGraphs.cliques(10, 1.0d, true);
+        // every weight halved, so every cut and quadratic form is off by exactly one half
+        SparsifierEvaluator halved = new SparsifierEvaluator(20, graph, TestGraphs.cliques(10, 0.5d, true), 3L,
+                ForkJoinPool.commonPool());
+        assertEquals(0.5d, halved.evaluateRandomCuts(100).getMean(), 1e-12);
+        assertEquals(0.5d, halved.evaluateQuadraticForms(10).getMax(), 1e-12);
+        // without the bridge, the cut between the cliques is lost
+        SparsifierEvaluator bridgeless = new SparsifierEvaluator(20, graph, TestGraphs.cliques(10, 1.0d, false), 3L,
+                ForkJoinPool.commonPool());
+        assertEquals(1.0d, bridgeless.evaluateBallCuts(500).getMax());
+        assertFalse(bridgeless.haveSameComponents());
+    }
+
+    @Test
+    void components() {
+        SparsifierEvaluator evaluator = new SparsifierEvaluator(21, TestGraphs.cliques(10, 1.0d, false),
+                TestGraphs.cliques(10, 1.0d, false), 3L, ForkJoinPool.commonPool());
+        assertTrue(evaluator.isComponentsOf(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10),
+                Arrays.asList(11, 12, 13, 14, 15, 16, 17, 18, 19, 20), Arrays.asList(21))));
+        assertFalse(evaluator.isComponentsOf(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 11),
+                Arrays.asList(10, 12, 13, 14, 15, 16, 17, 18, 19, 20), Arrays.asList(21))));
+        assertFalse(evaluator.isComponentsOf(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12,
+                13, 14, 15, 16, 17, 18, 19, 20), Arrays.asList(21))));
+    }
+}
@@ -0,0 +1,79 @@
+package rc.graphalgos.sparsifiers;
+
+import org.junit.jupiter.api.Test;
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectralSparsifierTest {
+
+    private GraphStream buildCliques() throws IOException {
+        // two 40-node cliques joined by a single bridge
+        Path graphFile = TestGraphs.write(TestGraphs.cliques(40, 1.0d, true), Files.createTempFile("cliques", ".txt"));
+        GraphStream graphStream = new GraphStream("cliques");
+        graphStream.buildGraph(graphFile.toString());
+        Files.delete(graphFile);
+        return graphStream;
+    }
+
+    private static double getQuadraticForm(EdgeList edges, double[] x) {
+        double sum = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            double difference = x[edges.getSource(edge)] - x[edges.getTarget(edge)];
+            sum += edges.getWeight(edge) * difference * difference;
+        }
+        return sum;
+    }
+
+    @Test
+    void estimateResistances() throws IOException {
+        GraphStream graphStream = buildCliques();
+        SpectralSparsifier spectralSparsifier = new SpectralSparsifier(graphStream, 5L, ForkJoinPool.commonPool());
+        double[] resistances = spectralSparsifier.estimateResistances(400);
+        EdgeList edges = graphStream.getEdges();
+        double total = 0;
+        for(int edge=0; edge<edges.size(); edge++) {
+            // the bridge has resistance 1, clique edges 2 / 40; a single estimate is typically off by
+            // sqrt(2 / 400) = 7%
+            boolean bridge = (edges.getSource(edge) <= 40) != (edges.getTarget(edge) <= 40);
+            assertEquals(bridge ? 1.0d : 0.05d, resistances[edge], bridge ? 0.4d : 0.02d);
+            total += resistances[edge];
+        }
+        // Foster's theorem: resistances of a connected graph's unit edges add up to n - 1
+        assertEquals(79.0d, total, 79.0d * 0.02d);
+    }
+
+    @Test
+    void sparsify() throws IOException {
+        GraphStream graphStream = buildCliques();
+        SpectralSparsifier spectralSparsifier = new SpectralSparsifier(graphStream, 5L, new ForkJoinPool(2));
+        spectralSparsifier.sparsify(2.0d);
+        EdgeList sparsifier = spectralSparsifier.getSparsifier();
+        EdgeList edges = graphStream.getEdges();
+        assertTrue(sparsifier.size() < edges.size() / 2);
+        // the bridge alone spans its cut, so it is kept as is
+        int bridges = 0;
+        for(int edge=0; edge<sparsifier.size(); edge++) {
+            if((sparsifier.getSource(edge) <= 40) != (sparsifier.getTarget(edge) <= 40)) {
+                bridges++;
+                assertEquals(1.0d, sparsifier.getWeight(edge));
+            }
+        }
+        assertEquals(1, bridges);
+        Random random = new Random(9);
+        for(int trial=0; trial<20; trial++) {
+            double[] x = new double[graphStream.getNodeCount()+1];
+            for(int node=1; node<x.length; node++) {
+                x[node] = random.nextGaussian();
+            }
+            double ratio = getQuadraticForm(sparsifier, x) / getQuadraticForm(edges, x);
+            assertTrue(ratio > 0.5d && ratio < 1.5d, "quadratic form ratio " + ratio);
+        }
+    }
+}
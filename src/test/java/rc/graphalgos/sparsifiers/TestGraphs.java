@@ -0,0 +1,59 @@
+package rc.graphalgos.sparsifiers;
+
+import rc.graphalgos.sparsifiers.utils.EdgeList;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+
+/***
+ * graphs shared by the tests
+ */
+final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /***
+     * two cliques of equal weight, joined by a bridge of that weight if asked for
+     */
+    static EdgeList cliques(int size, double weight, boolean bridge) {
+        return cliques(size, weight, weight, bridge ? weight : 0.0d);
+    }
+
+    /***
+     * two cliques of size nodes each, nodes 1..size and size+1..2*size, joined by the bridge (1, size+1)
+     * @param firstWeight weight of the edges of the first clique
+     * @param secondWeight weight of the edges of the second clique
+     * @param bridgeWeight weight of the bridge, 0 for none
+     */
+    static EdgeList cliques(int size, double firstWeight, double secondWeight, double bridgeWeight) {
+        EdgeList edges = new EdgeList();
+        for(int clique=0; clique<2; clique++) {
+            for(int i=1; i<=size; i++) {
+                for(int j=i+1; j<=size; j++) {
+                    edges.add(clique*size + i, clique*size + j, clique == 0 ? firstWeight : secondWeight);
+                }
+            }
+        }
+        if(bridgeWeight > 0) {
+            edges.add(1, size + 1, bridgeWeight);
+        }
+        return edges;
+    }
+
+    /***
+     * write edges as a weighted edge list with 0-based ids, node number - 1; ids first appear in increasing order for
+     * cliques(), so a GraphStream loading the file numbers the nodes as the edge list does
+     * @return file
+     */
+    static Path write(EdgeList edges, Path file) throws IOException {
+        try(PrintWriter writer = new PrintWriter(file.toFile(), "US-ASCII")) {
+            for(int edge=0; edge<edges.size(); edge++) {
+                writer.println((edges.getSource(edge) - 1) + " " + (edges.getTarget(edge) - 1) + " " +
+                        edges.getWeight(edge));
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,36 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisjointSetTest {
+
+    @Test
+    void union() {
+        DisjointSet disjointSet = new DisjointSet(10);
+        assertEquals(10, disjointSet.getSetCount());
+        assertNotEquals(-1, disjointSet.union(0, 1));
+        assertNotEquals(-1, disjointSet.union(2, 3));
+        assertNotEquals(-1, disjointSet.union(1, 3));
+        assertEquals(-1, disjointSet.union(0, 2));
+        assertEquals(7, disjointSet.getSetCount());
+        assertTrue(disjointSet.isConnected(0, 3));
+        assertFalse(disjointSet.isConnected(0, 4));
+        assertEquals(disjointSet.find(0), disjointSet.find(2));
+    }
+
+    @Test
+    void chain() {
+        int numElements = 100000;
+        DisjointSet disjointSet = new DisjointSet(numElements);
+        for(int i=1; i<numElements; i++) {
+            disjointSet.union(i-1, i);
+        }
+        assertEquals(1, disjointSet.getSetCount());
+        int root = disjointSet.find(numElements-1);
+        for(int i=0; i<numElements; i++) {
+            assertEquals(root, disjointSet.find(i));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KWiseHashTest {
+    private static final BigInteger PRIME = BigInteger.valueOf(KWiseHash.PRIME);
+
+    @Test
+    void mulMod() {
+        Random random = new Random(7);
+        for(int i=0; i<100000; i++) {
+            long a = KWiseHash.toField(random.nextLong());
+            long b = i%2==0 ? KWiseHash.toField(random.nextLong()) : KWiseHash.PRIME - 1 - random.nextInt(4);
+            long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(PRIME).longValue();
+            assertEquals(expected, KWiseHash.mulMod(a, b));
+        }
+    }
+
+    @Test
+    void toField() {
+        assertEquals(KWiseHash.PRIME - 1, KWiseHash.toField(-1));
+        assertEquals(0, KWiseHash.toField(KWiseHash.PRIME));
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE).mod(PRIME).longValue(), KWiseHash.toField(Long.MIN_VALUE));
+        assertEquals(KWiseHash.addMod(KWiseHash.toField(-5), KWiseHash.toField(5)), 0);
+    }
+
+    @Test
+    void hash() {
+        KWiseHash first = new KWiseHash(4, new Random(3));
+        KWiseHash second = new KWiseHash(4, new Random(3));
+        int[] trailingZeros = new int[64];
+        for(long x=0; x<100000; x++) {
+            long value = first.hash(x);
+            assertEquals(value, second.hash(x));
+            assertTrue(value >= 0 && value < KWiseHash.PRIME);
+            trailingZeros[Long.numberOfTrailingZeros(value)]++;
+        }
+        // levels should halve in size, roughly
+        assertTrue(Math.abs(trailingZeros[0] - 50000) < 2000);
+        assertTrue(Math.abs(trailingZeros[1] - 25000) < 2000);
+    }
+}
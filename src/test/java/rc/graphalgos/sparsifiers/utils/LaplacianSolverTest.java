@@ -0,0 +1,48 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LaplacianSolverTest {
+
+    @Test
+    void multiplyLaplacian() {
+        // path 1 - 2 - 3 with weights 2 and 3, and an isolated node 4
+        EdgeList edges = new EdgeList();
+        edges.add(1, 2, 2.0d);
+        edges.add(2, 3, 3.0d);
+        edges.add(3, 3, 5.0d);
+        CsrGraph graph = new CsrGraph(4, edges);
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(5.0d, graph.getWeightedDegree(1));
+        double[] y = new double[4];
+        graph.multiplyLaplacian(new double[]{1, 0, 0, 7}, y, ForkJoinPool.commonPool());
+        assertArrayEquals(new double[]{2, -2, 0, 0}, y);
+    }
+
+    @Test
+    void effectiveResistance() {
+        // on a cycle of n unit edges the resistance between neighbors is 1 * (n-1) / n
+        int n = 500;
+        EdgeList edges = new EdgeList();
+        for(int node=1; node<=n; node++) {
+            edges.add(node, node % n + 1);
+        }
+        // a second component, a path 501 - 502, must not disturb the first
+        edges.add(n+1, n+2);
+        LaplacianSolver solver = new LaplacianSolver(new CsrGraph(n+2, edges), 1e-10, 10000, new ForkJoinPool(3));
+        double[] b = new double[n+2];
+        b[0] = 1;
+        b[1] = -1;
+        b[n] = 1;
+        b[n+1] = -1;
+        double[] x = new double[n+2];
+        int iterations = solver.solve(b, x);
+        assertTrue(iterations > 0 && iterations < 10000);
+        assertEquals((n - 1.0d) / n, x[0] - x[1], 1e-8);
+        assertEquals(1.0d, x[n] - x[n+1], 1e-8);
+    }
+}
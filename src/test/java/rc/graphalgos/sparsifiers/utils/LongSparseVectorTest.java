@@ -0,0 +1,48 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongSparseVectorTest {
+
+    @Test
+    void addToEntry() {
+        LongSparseVector vector = new LongSparseVector(1L << 60);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(5);
+        for(int i=0; i<200000; i++) {
+            // small index range forces collisions, cancellations and backward shift deletes
+            long index = (random.nextInt(5000) * 1_000_003L) << 20;
+            long value = random.nextBoolean() ? 1 : -1;
+            vector.addToEntry(index, value);
+            expected.merge(index, value, Long::sum);
+            expected.remove(index, 0L);
+        }
+        assertEquals(expected.size(), vector.getNonZeroCount());
+        for(Map.Entry<Long, Long> entry: expected.entrySet()) {
+            assertEquals((long)entry.getValue(), vector.getEntry(entry.getKey()));
+        }
+        vector.forEachNonZero((index, value) -> assertEquals((long)expected.get(index), value));
+    }
+
+    @Test
+    void add() {
+        LongSparseVector first = new LongSparseVector(100);
+        LongSparseVector second = new LongSparseVector(100);
+        first.addToEntry(3, 1);
+        first.addToEntry(7, 1);
+        second.addToEntry(3, -1);
+        second.addToEntry(9, -1);
+        first.add(second);
+        assertEquals(2, first.getNonZeroCount());
+        assertEquals(0, first.getEntry(3));
+        assertEquals(1, first.getEntry(7));
+        assertEquals(-1, first.getEntry(9));
+        assertEquals(100, first.getDimension());
+    }
+}
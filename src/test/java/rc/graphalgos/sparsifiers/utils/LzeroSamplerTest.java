@@ -4,6 +4,11 @@ import org.apache.commons.math3.linear.OpenMapRealMatrix;
 import org.apache.commons.math3.linear.OpenMapRealVector;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 
 class LzeroSamplerTest {
     private int numRows = 20;
@@ -52,4 +57,65 @@ class LzeroSamplerTest {
         OpenMapRealMatrix sketchMatrix = sampler.buildSketch(vector, hashingMatrix);
         System.out.println(sampler.sampleItem(sketchMatrix));
     }
-}
\ No newline at end of file
+
+    @Test
+    void sampleItemHashed() {
+        LzeroSampler sampler = new LzeroSampler(numRows, numColumns, 42L);
+        LongSparseVector vector = new LongSparseVector(numColumns);
+        for(int i =0; i<numColumns; i++) {
+            vector.addToEntry(i, i%7==0?1:0);
+        }
+        long[] sketch = sampler.buildSketch(vector);
+        assertEquals(numRows * LzeroSampler.CELLS_PER_ROW, sketch.length);
+        long item = sampler.sampleItem(sketch);
+        assertNotEquals(-1, item);
+        assertEquals(1, vector.getEntry(item));
+    }
+
+    @Test
+    void mergeHashed() {
+        LzeroSampler sampler = new LzeroSampler(numRows, numColumns, 42L);
+        long[] first = new long[sampler.getSketchSize()];
+        long[] second = new long[sampler.getSketchSize()];
+        // edge 10 is shared with opposite signs and must cancel, leaving edge 20 as the only item
+        sampler.update(first, 0, 10, 1);
+        sampler.update(second, 0, 10, -1);
+        sampler.update(second, 0, 20, -1);
+        sampler.merge(first, 0, second, 0);
+        assertEquals(20, sampler.sampleItem(first));
+        sampler.update(first, 0, 20, 1);
+        assertEquals(-1, sampler.sampleItem(first));
+    }
+
+    @Test
+    void repetitions() {
+        assertEquals(1, LzeroSampler.getRepetitions(0.5));
+        assertEquals(7, LzeroSampler.getRepetitions(0.01));
+        assertThrows(IllegalArgumentException.class, () -> LzeroSampler.getRepetitions(0));
+        LzeroSampler single = new LzeroSampler(numRows, numColumns, 42L);
+        LzeroSampler repeated = new LzeroSampler(numRows, numColumns, 42L, 7);
+        assertEquals(7 * single.getSketchSize(), repeated.getSketchSize());
+        SamplerStats singleStats = new SamplerStats();
+        SamplerStats repeatedStats = new SamplerStats();
+        Random random = new Random(5);
+        for(int trial=0; trial<500; trial++) {
+            LongSparseVector vector = new LongSparseVector(numColumns);
+            for(int i=0; i<1+random.nextInt(200); i++) {
+                vector.addToEntry(random.nextInt(numColumns), random.nextBoolean() ? 1 : -1);
+            }
+            long[] singleSketch = single.buildSketch(vector);
+            long[] repeatedSketch = repeated.buildSketch(vector);
+            // the first repetition is the single repetition sketch
+            assertArrayEquals(singleSketch, Arrays.copyOf(repeatedSketch, singleSketch.length));
+            single.sampleItem(singleSketch, 0, singleStats);
+            long item = repeated.sampleItem(repeatedSketch, 0, repeatedStats);
+            if(item != -1) {
+                assertNotEquals(0, vector.getEntry(item));
+            }
+        }
+        assertEquals(500, repeatedStats.getSuccessCount() + repeatedStats.getFailureCount() +
+                repeatedStats.getEmptyCount());
+        assertTrue(repeatedStats.getFailureCount() <= singleStats.getFailureCount());
+        assertTrue(repeatedStats.getSuccessRate() > 0.98);
+    }
+}
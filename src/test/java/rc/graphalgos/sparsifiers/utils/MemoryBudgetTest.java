@@ -0,0 +1,66 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+    private static final int NODES = 1000;
+    private static final long HEAP = 1L << 40;
+
+    private long getHeapBytes(int reps, int rows) {
+        return NODES * (MemoryBudget.OVERHEAD_PER_NODE + 2 * NodeSketches.getBytesPerNode(NODES, reps, rows));
+    }
+
+    @Test
+    void plan() {
+        int defaultRows = NodeSketches.getDefaultRowCount(NODES);
+        MemoryBudget memoryBudget = new MemoryBudget(getHeapBytes(7, defaultRows), HEAP);
+        memoryBudget.plan(NODES, 7, null);
+        assertEquals(7, memoryBudget.getRepetitionCount());
+        assertEquals(defaultRows, memoryBudget.getRowCount());
+        assertFalse(memoryBudget.isSpilled());
+
+        memoryBudget = new MemoryBudget(getHeapBytes(3, defaultRows) + 1, HEAP);
+        memoryBudget.plan(NODES, 7, null);
+        assertEquals(3, memoryBudget.getRepetitionCount());
+
+        int minRows = NodeSketches.getMinRowCount(NODES);
+        memoryBudget = new MemoryBudget(getHeapBytes(1, minRows), HEAP);
+        memoryBudget.plan(NODES, 7, null);
+        assertEquals(1, memoryBudget.getRepetitionCount());
+        assertEquals(minRows, memoryBudget.getRowCount());
+    }
+
+    @Test
+    void spill(@TempDir File spillDir) throws IOException {
+        long budget = getHeapBytes(1, NodeSketches.getMinRowCount(NODES)) - 1;
+        assertThrows(IllegalStateException.class, () -> new MemoryBudget(budget, HEAP).plan(NODES, 7, null));
+        MemoryBudget memoryBudget = new MemoryBudget(budget, HEAP);
+        NodeSketches nodeSketches = memoryBudget.createNodeSketches(NODES, 3L, 7, spillDir);
+        assertTrue(memoryBudget.isSpilled());
+        assertTrue(memoryBudget.getCachedPageCount() >= 2);
+        assertEquals(NodeSketches.getDefaultRowCount(NODES), nodeSketches.getRowCount());
+        nodeSketches.update(1, 2, 1);
+        assertEquals(PairCodec.encode(1, 2, NODES), nodeSketches.sample(1, 0));
+        nodeSketches.close();
+    }
+
+    @Test
+    void failFast() {
+        assertThrows(IllegalStateException.class, () -> new MemoryBudget(2L << 30, 1L << 30).plan(NODES, 1, null));
+        assertThrows(IllegalStateException.class, () -> new MemoryBudget(NODES * MemoryBudget.OVERHEAD_PER_NODE, HEAP)
+                .plan(NODES, 1, null));
+    }
+
+    @Test
+    void parseSize() {
+        assertEquals(512L << 20, MemoryBudget.parseSize("512m"));
+        assertEquals(4L << 30, MemoryBudget.parseSize("4G"));
+        assertEquals(1000, MemoryBudget.parseSize("1000"));
+    }
+}
@@ -0,0 +1,55 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void phasesAndCounters() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        try(Metrics.Phase phase = metrics.startPhase("ingest")) {
+            Thread.sleep(5);
+            phase.count("edges", 100);
+        }
+        try(Metrics.Phase phase = metrics.startPhase("ingest")) {
+            phase.count("edges", 50);
+        }
+        assertTrue(metrics.getPhaseNanos("ingest") >= 5000000L);
+        assertEquals(150, metrics.getCounter("ingest.edges"));
+        assertEquals(0, metrics.getCounter("missing"));
+        Map<String, Number> snapshot = metrics.snapshot();
+        assertEquals(2L, snapshot.get("ingest.runs"));
+        assertEquals(150 * 1e9 / metrics.getPhaseNanos("ingest"), snapshot.get("ingest.edges_per_sec").doubleValue(),
+                1e-6);
+        assertNotNull(snapshot.get("ingest.allocated_bytes"));
+    }
+
+    @Test
+    void spanningForest() {
+        Metrics metrics = new Metrics();
+        NodeSketches nodeSketches = new NodeSketches(50, 3L);
+        for(int node=2; node<=50; node++) {
+            nodeSketches.update(node - 1, node, 1);
+        }
+        SpanningForest spanningForest = new SpanningForest(50, 3L);
+        spanningForest.setMetrics(metrics);
+        spanningForest.findSpanningForest(nodeSketches);
+        Map<String, Number> snapshot = metrics.snapshot();
+        assertEquals(spanningForest.getRoundStats().size(), snapshot.get("rounds"));
+        assertEquals(50, snapshot.get("round.1.super_nodes"));
+        assertEquals(spanningForest.getForestEdges().length, metrics.getCounter("spanning_forest.forest_edges"));
+        assertEquals(spanningForest.getSamplerStats().getSuccessRate(), snapshot.get("sampler.success_rate"));
+    }
+
+    @Test
+    void dump() {
+        Metrics metrics = new Metrics();
+        metrics.count("load.edges", 7);
+        assertEquals("metric,value\nload.edges,7\n", metrics.toCsv());
+        assertEquals("{\n  \"load.edges\": 7\n}\n", metrics.toJson());
+    }
+}
@@ -0,0 +1,113 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeSketchesTest {
+
+    @Test
+    void update() {
+        NodeSketches nodeSketches = new NodeSketches(100, 7L);
+        nodeSketches.update(3, 40, 1);
+        // edge (3, 40): index of (3, 4) is 99 + 98, then 36 further along
+        long edgeIndex = 99 + 98 + 36;
+        for(int sketchId=0; sketchId<nodeSketches.getSketchCount(); sketchId++) {
+            assertEquals(edgeIndex, nodeSketches.sample(3, sketchId));
+            assertEquals(edgeIndex, nodeSketches.sample(40, sketchId));
+        }
+    }
+
+    @Test
+    void insertAndDelete() {
+        NodeSketches nodeSketches = new NodeSketches(100, 7L);
+        for(int node=2; node<=100; node++) {
+            nodeSketches.update(1, node, 1);
+        }
+        for(int node=2; node<=100; node++) {
+            nodeSketches.update(node, 1, -1);
+        }
+        for(int node=1; node<=100; node++) {
+            for(long cell: nodeSketches.getSketches(node)) {
+                assertEquals(0, cell);
+            }
+        }
+    }
+
+    @Test
+    void seeds() {
+        NodeSketches first = new NodeSketches(50, 11L);
+        NodeSketches second = new NodeSketches(50, 11L);
+        first.update(5, 6, 1);
+        second.update(6, 5, 1);
+        assertArrayEquals(first.getSketches(5), second.getSketches(5));
+        assertArrayEquals(first.getSketches(6), second.getSketches(6));
+    }
+
+    @Test
+    void merge() {
+        // merging the endpoints of a path 1-2-3 leaves only the outgoing edge (2, 3), the shared edge cancels out
+        NodeSketches nodeSketches = new NodeSketches(64, 3L);
+        nodeSketches.update(1, 2, 1);
+        nodeSketches.update(2, 3, 1);
+        NodeSketches copy = nodeSketches.copy();
+        copy.merge(1, 2, 0);
+        for(int sketchId=0; sketchId<copy.getSketchCount(); sketchId++) {
+            assertEquals(PairCodec.encode(2, 3, 64), copy.sample(1, sketchId));
+        }
+        // the original is untouched
+        assertEquals(PairCodec.encode(1, 2, 64), nodeSketches.sample(1, 0));
+    }
+
+    @Test
+    void mergeDifferentDepths() {
+        NodeSketches deep = new NodeSketches(64, 3L, 1);
+        NodeSketches shallow = new NodeSketches(64, 3L, 1, NodeSketches.getMinRowCount(64));
+        deep.update(1, 2, 1);
+        shallow.update(2, 3, 1);
+        assertThrows(IllegalArgumentException.class, () -> deep.add(shallow));
+        assertThrows(IllegalArgumentException.class, () -> shallow.subtract(deep));
+        // neither was changed
+        assertEquals(PairCodec.encode(1, 2, 64), deep.sample(2, 0));
+        assertEquals(PairCodec.encode(2, 3, 64), shallow.sample(2, 0));
+    }
+
+    @Test
+    void mergeDifferentPages() {
+        NodeSketches heap = new NodeSketches(64, 3L, 1);
+        int stride = heap.getSketches(1).length;
+        // a page of 5 slots, so a node's cells sit at another offset than in the single page of heap
+        NodeSketches paged = new NodeSketches(64, 3L, 1, heap.getRowCount(), new SketchStore(64, stride, 5 * stride));
+        heap.update(1, 2, 1);
+        paged.update(40, 50, 1);
+        heap.add(paged);
+        assertEquals(PairCodec.encode(40, 50, 64), heap.sample(40, 0));
+        paged.add(heap);
+        paged.subtract(heap);
+        assertEquals(PairCodec.encode(40, 50, 64), paged.sample(50, 0));
+        assertEquals(-1, paged.sample(1, 0));
+    }
+
+    @Test
+    void subtractAndClear() {
+        // a window that saw (1, 2) and (2, 3), with the part that saw (1, 2) expired, is the sketch of (2, 3) alone
+        NodeSketches window = new NodeSketches(64, 5L, 2);
+        NodeSketches expired = new NodeSketches(64, 5L, 2);
+        NodeSketches live = new NodeSketches(64, 5L, 2);
+        window.update(1, 2, 1);
+        expired.update(1, 2, 1);
+        window.update(2, 3, 1);
+        live.update(2, 3, 1);
+        window.subtract(expired);
+        for(int node=1; node<=64; node++) {
+            assertArrayEquals(live.getSketches(node), window.getSketches(node));
+        }
+        window.clear();
+        for(int node=1; node<=64; node++) {
+            for(long cell: window.getSketches(node)) {
+                assertEquals(0, cell);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> window.subtract(new NodeSketches(64, 6L, 2)));
+    }
+}
@@ -0,0 +1,84 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairCodecTest {
+
+    /***
+     * loop based edge index of GraphStream.computeEdgeIndex, kept as the reference ordering
+     */
+    private static long loopEncode(int node1, int node2, int numNodes) {
+        long index = 0;
+        int limit = node1>node2?(numNodes-node2):(numNodes-node1);
+        for(long i=numNodes-1; i>limit; i--) {
+            index+=i;
+        }
+        return index+Math.abs(node1-node2)-1;
+    }
+
+    /***
+     * loop based inverse of SpanningForest.getEdgeFromIndex, kept as the reference ordering
+     */
+    private static int[] loopDecode(long edgeIndex, int numNodes) {
+        long nMinusK=0;
+        int index=0;
+        int[] nodes = new int[2];
+        for(int i=numNodes-1; i>0; i--) {
+            if(nMinusK+i>edgeIndex)
+                break;
+            nMinusK+=i;
+            index=numNodes-i;
+        }
+        nodes[0] = index+1;
+        nodes[1] = (int)(edgeIndex - nMinusK) + 1 + nodes[0];
+        return nodes;
+    }
+
+    @Test
+    void exhaustiveSmallGraphs() {
+        for(int numNodes=2; numNodes<=120; numNodes++) {
+            long expectedIndex = 0;
+            for(int first=1; first<numNodes; first++) {
+                for(int second=first+1; second<=numNodes; second++) {
+                    long index = PairCodec.encode(first, second, numNodes);
+                    assertEquals(expectedIndex++, index);
+                    assertEquals(loopEncode(first, second, numNodes), index);
+                    assertEquals(index, PairCodec.encode(second, first, numNodes));
+                    assertArrayEquals(loopDecode(index, numNodes), PairCodec.decode(index, numNodes));
+                    assertArrayEquals(new int[]{first, second}, PairCodec.decode(index, numNodes));
+                }
+            }
+            assertEquals(expectedIndex, PairCodec.getPairCount(numNodes));
+        }
+    }
+
+    @Test
+    void randomLargeGraphs() {
+        Random random = new Random(31);
+        for(int i=0; i<200000; i++) {
+            long numNodes = i%100==0 ? (1L << 31) : 2 + (long)(random.nextDouble() * ((1L << 31) - 1));
+            long first = 1 + (long)(random.nextDouble() * (numNodes - 1));
+            long second = first + 1 + (long)(random.nextDouble() * (numNodes - first));
+            long index = PairCodec.encode(first, second, numNodes);
+            assertTrue(index >= 0 && index < PairCodec.getPairCount(numNodes));
+            long decodedFirst = PairCodec.getFirstNode(index, numNodes);
+            assertEquals(first, decodedFirst);
+            assertEquals(second, PairCodec.getSecondNode(index, decodedFirst, numNodes));
+        }
+    }
+
+    @Test
+    void boundaries() {
+        long numNodes = 1L << 31;
+        long lastIndex = PairCodec.getPairCount(numNodes) - 1;
+        assertEquals(0, PairCodec.encode(1, 2, numNodes));
+        assertEquals(lastIndex, PairCodec.encode(numNodes - 1, numNodes, numNodes));
+        assertEquals(numNodes - 1, PairCodec.getFirstNode(lastIndex, numNodes));
+        assertEquals(1, PairCodec.getFirstNode(numNodes - 2, numNodes));
+        assertEquals(2, PairCodec.getFirstNode(numNodes - 1, numNodes));
+    }
+}
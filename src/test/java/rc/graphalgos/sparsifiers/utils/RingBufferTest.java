@@ -0,0 +1,54 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    @Test
+    void offerAndPoll() {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(3);
+        assertEquals(4, ringBuffer.getCapacity());
+        assertNull(ringBuffer.poll());
+        for(int i=0; i<4; i++) {
+            assertTrue(ringBuffer.offer(i));
+        }
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(4, ringBuffer.size());
+        assertEquals(0, (int)ringBuffer.poll());
+        assertTrue(ringBuffer.offer(4));
+        for(int i=1; i<=4; i++) {
+            assertEquals(i, (int)ringBuffer.poll());
+        }
+        assertEquals(0, ringBuffer.size());
+    }
+
+    @Test
+    void twoThreads() throws InterruptedException {
+        // the consumer sees every item exactly once and in order, though the queue is far smaller than the stream
+        RingBuffer<Long> ringBuffer = new RingBuffer<>(16);
+        int numItems = 200000;
+        long[] sum = new long[1];
+        Thread consumer = new Thread(() -> {
+            long expected = 0;
+            while(expected < numItems) {
+                Long item = ringBuffer.poll();
+                if(item == null) {
+                    Thread.yield();
+                    continue;
+                }
+                assertEquals(expected++, (long)item);
+                sum[0] += item;
+            }
+        });
+        consumer.start();
+        for(long i=0; i<numItems; i++) {
+            while(!ringBuffer.offer(i)) {
+                Thread.yield();
+            }
+        }
+        consumer.join();
+        assertEquals((long)numItems * (numItems - 1) / 2, sum[0]);
+    }
+}
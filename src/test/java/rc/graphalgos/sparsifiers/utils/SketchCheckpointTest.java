@@ -0,0 +1,53 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SketchCheckpointTest {
+
+    @Test
+    void writeAndRead() throws IOException {
+        int numNodes = 500;
+        Random random = new Random(3);
+        NodeSketches uninterrupted = new NodeSketches(numNodes, 21L);
+        NodeSketches interrupted = new NodeSketches(numNodes, 21L);
+        int[][] edges = new int[2000][];
+        for(int i=0; i<edges.length; i++) {
+            edges[i] = new int[]{1 + random.nextInt(numNodes), 1 + random.nextInt(numNodes)};
+        }
+        File file = File.createTempFile("sketches", ".ckpt");
+        file.deleteOnExit();
+        for(int i=0; i<edges.length; i++) {
+            uninterrupted.update(edges[i][0], edges[i][1], 1);
+            if(i < 1000) {
+                interrupted.update(edges[i][0], edges[i][1], 1);
+            }
+        }
+        new SketchCheckpoint(interrupted, 1000, 1000, 0).write(file.getPath());
+        SketchCheckpoint checkpoint = SketchCheckpoint.read(file.getPath());
+        assertEquals(1000, checkpoint.getPosition());
+        assertEquals(1000, checkpoint.getInsertionCount());
+        assertEquals(21L, checkpoint.getNodeSketches().getSeed());
+        NodeSketches resumed = checkpoint.getNodeSketches();
+        for(int i=1000; i<edges.length; i++) {
+            resumed.update(edges[i][0], edges[i][1], 1);
+        }
+        for(int node=1; node<=numNodes; node++) {
+            assertArrayEquals(uninterrupted.getSketches(node), resumed.getSketches(node));
+        }
+        assertEquals(new SpanningForest(numNodes, 21L).findSpanningForest(uninterrupted),
+                new SpanningForest(numNodes, 21L).findSpanningForest(resumed));
+    }
+
+    @Test
+    void invalidFile() throws IOException {
+        File file = File.createTempFile("sketches", ".ckpt");
+        file.deleteOnExit();
+        assertThrows(IOException.class, () -> SketchCheckpoint.read(file.getPath()));
+    }
+}
@@ -0,0 +1,73 @@
+package rc.graphalgos.sparsifiers.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SketchStoreTest {
+
+    @Test
+    void paging() {
+        // 4 slots of 5 cells per page, 10 slots in 3 pages
+        SketchStore store = new SketchStore(10, 5, 20);
+        for(int slot=0; slot<10; slot++) {
+            assertEquals((slot % 4) * 5, store.getOffset(slot));
+            store.getPage(slot)[store.getOffset(slot) + 4] = slot + 1;
+        }
+        assertNotSame(store.getPage(3), store.getPage(4));
+        assertSame(store.getPage(8), store.getPage(9));
+        for(int slot=0; slot<10; slot++) {
+            assertArrayEquals(new long[]{0, 0, 0, 0, slot + 1}, store.getSlot(slot));
+        }
+        assertEquals(10 * 5 * Long.BYTES, store.getSizeInBytes());
+    }
+
+    @Test
+    void copy() {
+        SketchStore store = new SketchStore(10, 5, 20);
+        store.getPage(9)[store.getOffset(9)] = 7;
+        SketchStore copy = store.copy();
+        store.getPage(9)[store.getOffset(9)] = 8;
+        assertEquals(7, copy.getSlot(9)[0]);
+        assertEquals(store.getOffset(9), copy.getOffset(9));
+    }
+
+    @Test
+    void spilled(@TempDir File spillDir) throws IOException {
+        int numNodes = 200;
+        int rows = NodeSketches.getDefaultRowCount(numNodes);
+        int stride = (int)(NodeSketches.getBytesPerNode(numNodes, 1, rows) / Long.BYTES);
+        // 2 nodes per page and only 2 pages on the heap, so nearly every update evicts a page
+        SpilledSketchStore store = new SpilledSketchStore(numNodes, stride, 2 * stride, 2, spillDir);
+        NodeSketches spilled = new NodeSketches(numNodes, 5L, 1, rows, store);
+        NodeSketches onHeap = new NodeSketches(numNodes, 5L, 1, rows);
+        Random random = new Random(3);
+        for(int i=0; i<600; i++) {
+            int u = random.nextInt(numNodes) + 1;
+            int v = random.nextInt(numNodes) + 1;
+            if(u != v) {
+                spilled.update(u, v, 1);
+                onHeap.update(u, v, 1);
+            }
+        }
+        assertTrue(store.getCachedBytes() <= 2L * 2 * stride * Long.BYTES);
+        for(int node=1; node<=numNodes; node++) {
+            assertArrayEquals(onHeap.getSketches(node), spilled.getSketches(node));
+        }
+        List<List<Integer>> spilledComponents = new SpanningForest(numNodes, 5L).findSpanningForest(spilled);
+        List<List<Integer>> heapComponents = new SpanningForest(numNodes, 5L).findSpanningForest(onHeap);
+        assertEquals(heapComponents.size(), spilledComponents.size());
+        // the spanning forest works on a copy, the spilled sketches are unchanged
+        for(int node=1; node<=numNodes; node++) {
+            assertArrayEquals(onHeap.getSketches(node), spilled.getSketches(node));
+        }
+        spilled.close();
+        assertEquals(0, spillDir.listFiles().length);
+    }
+}
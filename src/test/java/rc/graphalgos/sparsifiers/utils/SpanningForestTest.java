@@ -1,13 +1,15 @@
 package rc.graphalgos.sparsifiers.utils;
 
-import org.apache.commons.math3.linear.OpenMapRealVector;
 import org.junit.jupiter.api.Test;
 import rc.graphalgos.sparsifiers.GraphStream;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 
 class SpanningForestTest {
 
@@ -24,7 +26,7 @@ class SpanningForestTest {
         graphStream.buildGraph("/home/ramji/IdeaProjects/graph_sparsification/src/main" +
                 "/resources/graphs/test_graph.txt");
         SpanningForest spanningForest = new SpanningForest(graphStream);
-        List<OpenMapRealVector> graphMatrix = graphStream.buildGraphMatrix();
+        List<LongSparseVector> graphMatrix = graphStream.buildGraphMatrix();
         for(int i=0; i<graphStream.getNodeCount(); i++) {
             int[] nodes = spanningForest.getEdgeFromIndex(spanningForest.sampleEdge2(graphMatrix.get(i)), graphStream
                             .getNodeCount());
@@ -39,7 +41,7 @@ class SpanningForestTest {
                 "/resources/graphs/web-Google1.txt");
 //        graphStream.printGraphStats();
         SpanningForest spanningForestObj = new SpanningForest(graphStream);
-        List<OpenMapRealVector> nodeVectors = graphStream.buildGraphMatrix();
+        List<LongSparseVector> nodeVectors = graphStream.buildGraphMatrix();
         Runtime runtime = Runtime.getRuntime();
         runtime.gc();
         long memUsage = runtime.totalMemory() - runtime.freeMemory();
@@ -60,12 +62,12 @@ class SpanningForestTest {
         graphStream.buildGraph("/home/ramji/IdeaProjects/graph_sparsification/src/main" +
                 "/resources/graphs/facebook_combined.txt");
         SpanningForest spanningForest = new SpanningForest(graphStream);
-        List<OpenMapRealVector> graphMatrix = graphStream.buildGraphMatrix();
+        List<LongSparseVector> graphMatrix = graphStream.buildGraphMatrix();
         Runtime runtime = Runtime.getRuntime();
         runtime.gc();
         long memUsage = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
-        spanningForest.getSketches(graphMatrix);
+        spanningForest.getNodeSketches(graphMatrix);
         runtime.gc();
         memUsage = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("Memory usage: " + bytesToMegabytes(memUsage) + " MiB");
@@ -74,4 +76,83 @@ class SpanningForestTest {
     private static long bytesToMegabytes(long bytes) {
         return bytes / MiB;
     }
-}
\ No newline at end of file
+
+    @Test
+    void findSpanningForestFromSketches() {
+        // two cycles, 1..60 and 61..100, streamed straight into the node sketches; with repetitions, a Boruvka round
+        // rarely fails to sample, so the O(log n) rounds contract both cycles
+        int numNodes = 100;
+        Set<Long> edges = new HashSet<>();
+        NodeSketches nodeSketches = new NodeSketches(numNodes, 99L, 3);
+        for(int node=1; node<=numNodes; node++) {
+            int next = node == 60 ? 1 : node == 100 ? 61 : node + 1;
+            nodeSketches.update(node, next, 1);
+            edges.add(PairCodec.encode(node, next, numNodes));
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, 99L);
+        List<List<Integer>> components = spanningForest.findSpanningForest(nodeSketches);
+        long[] forestEdges = spanningForest.getForestEdges();
+        assertEquals(2, components.size());
+        assertEquals(numNodes - components.size(), forestEdges.length);
+        for(long edge: forestEdges) {
+            assertTrue(edges.contains(edge));
+        }
+        for(List<Integer> component: components) {
+            // no component may mix the two cycles
+            for(int node: component) {
+                assertEquals(component.get(0) <= 60, node <= 60);
+            }
+        }
+    }
+
+    @Test
+    void parallelism() {
+        // random graph with 3000 nodes; results must not depend on the number of threads
+        int numNodes = 3000;
+        Random random = new Random(17);
+        List<LongSparseVector> graphMatrix = new ArrayList<>();
+        for(int node=1; node<=numNodes; node++) {
+            graphMatrix.add(new LongSparseVector(PairCodec.getPairCount(numNodes)));
+        }
+        for(int i=0; i<4000; i++) {
+            int first = 1 + random.nextInt(numNodes - 1);
+            int second = first + 1 + random.nextInt(numNodes - first);
+            long edgeIndex = PairCodec.encode(first, second, numNodes);
+            graphMatrix.get(first-1).addToEntry(edgeIndex, 1);
+            graphMatrix.get(second-1).addToEntry(edgeIndex, -1);
+        }
+        SpanningForest sequential = new SpanningForest(numNodes, 5L, new ForkJoinPool(1));
+        SpanningForest parallel = new SpanningForest(numNodes, 5L, new ForkJoinPool(4));
+        assertEquals(sequential.findSpanningForest(graphMatrix, numNodes),
+                parallel.findSpanningForest(graphMatrix, numNodes));
+        assertArrayEquals(sequential.getForestEdges(), parallel.getForestEdges());
+        NodeSketches sequentialSketches = sequential.getNodeSketches(graphMatrix);
+        NodeSketches parallelSketches = parallel.getNodeSketches(graphMatrix);
+        for(int node=1; node<=numNodes; node+=97) {
+            assertArrayEquals(sequentialSketches.getSketches(node), parallelSketches.getSketches(node));
+        }
+    }
+
+    @Test
+    void errorProbability() {
+        // random graph with 2000 nodes; with 1% failure probability per sample the components must be exact
+        int numNodes = 2000;
+        Random random = new Random(23);
+        NodeSketches nodeSketches = new NodeSketches(numNodes, 31L, LzeroSampler.getRepetitions(0.01));
+        DisjointSet exact = new DisjointSet(numNodes);
+        for(int i=0; i<1800; i++) {
+            int first = 1 + random.nextInt(numNodes);
+            int second = 1 + random.nextInt(numNodes);
+            if(first != second) {
+                nodeSketches.update(first, second, 1);
+                exact.union(exact.find(first-1), exact.find(second-1));
+            }
+        }
+        SpanningForest spanningForest = new SpanningForest(numNodes, 99L);
+        List<List<Integer>> components = spanningForest.findSpanningForest(nodeSketches);
+        assertEquals(exact.getSetCount(), components.size());
+        SamplerStats stats = spanningForest.getSamplerStats();
+        assertTrue(stats.getSuccessRate() > 0.99, stats.toString());
+        assertEquals(numNodes - components.size(), spanningForest.getForestEdges().length);
+    }
+}